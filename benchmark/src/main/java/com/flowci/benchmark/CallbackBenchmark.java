@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flowci.core.agent.domain.CmdIn;
+import com.flowci.core.agent.domain.CmdOut;
+import com.flowci.core.agent.domain.ShellOut;
+import com.flowci.core.common.helper.JacksonHelper;
+import com.flowci.core.job.domain.Executed;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.manager.CmdManager;
+import com.flowci.core.job.manager.CmdManagerImpl;
+import com.flowci.sm.Action;
+import com.flowci.sm.Context;
+import com.flowci.sm.StateMachine;
+import com.flowci.sm.Status;
+import com.flowci.sm.Transition;
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.StepNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steps of handling a step callback from agent
+ * - decode: read ShellOut from callback queue message
+ * - createShellCmd: create cmd of next step, which merges job context and step envs
+ * - execute: state machine transition with empty action
+ *
+ * @author yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CallbackBenchmark {
+
+    private static final Status Running = new Status("RUNNING");
+
+    private static final Transition RunningToRunning = new Transition(Running, Running);
+
+    private final ObjectMapper objectMapper = JacksonHelper.create();
+
+    private final CmdManager cmdManager = new CmdManagerImpl();
+
+    private final StateMachine<EmptyContext> sm = new StateMachine<>("BENCHMARK");
+
+    private byte[] callback;
+
+    private NodeTree tree;
+
+    private Job job;
+
+    private Step step;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        ShellOut out = new ShellOut();
+        out.setId("c3RlcC0x");
+        out.setProcessId(1024);
+        out.setContainerId("5c3a8f2e9d1b");
+        out.setStatus(Executed.Status.SUCCESS);
+        out.setCode(0);
+        out.setStartAt(new Date());
+        out.setFinishAt(new Date());
+        out.setLogSize(4096);
+        out.getOutput().put("OUTPUT_VERSION", "1.0");
+        out.getOutput().put("OUTPUT_COMMIT", "c3f8a9e");
+
+        callback = toCallback(objectMapper, out);
+
+        tree = Flows.tree(10);
+        StepNode node = tree.getSteps().get(1);
+
+        job = new Job();
+        job.setId("job");
+        job.setFlowId("flow");
+        job.getContext().put("FLOWCI_GIT_BRANCH", "master");
+        job.getContext().put("FLOWCI_JOB_BUILD_NUM", "10");
+
+        step = new Step()
+                .setId("c3RlcC0x")
+                .setJobId(job.getId())
+                .setNodePath(node.getPathAsString());
+
+        sm.add(RunningToRunning, new Action<EmptyContext>() {
+            @Override
+            public void accept(EmptyContext context) {
+                // empty action
+            }
+        });
+    }
+
+    @Benchmark
+    public ShellOut decode() throws IOException {
+        byte ind = callback[0];
+        if (ind != CmdOut.ShellOutInd) {
+            throw new IllegalStateException();
+        }
+
+        byte[] body = Arrays.copyOfRange(callback, 1, callback.length);
+        return objectMapper.readValue(body, ShellOut.class);
+    }
+
+    @Benchmark
+    public CmdIn createShellCmd() {
+        return cmdManager.createShellCmd(job, step, tree);
+    }
+
+    @Benchmark
+    public Context execute() {
+        EmptyContext context = new EmptyContext();
+        sm.execute(Running, Running, context);
+        return context;
+    }
+
+    private static class EmptyContext extends Context {
+
+    }
+
+    /**
+     * Callback message from agent, which is indicator byte with json of cmd out
+     */
+    static byte[] toCallback(ObjectMapper objectMapper, ShellOut out) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(out);
+        byte[] callback = new byte[json.length + 1];
+        callback[0] = CmdOut.ShellOutInd;
+        System.arraycopy(json, 0, callback, 1, json.length);
+        return callback;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.flowci.core.agent.domain.CmdIn;
+import com.flowci.core.agent.domain.ShellIn;
+import com.flowci.core.job.manager.ConditionManager;
+import com.flowci.core.job.manager.ConditionManagerImpl;
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import groovy.util.ScriptException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Step condition evaluations per second
+ * - cached: compiled script class cached by condition, evaluated on caller thread
+ * - shell: new GroovyShell to evaluate condition on executor for each step, which was used before
+ * <p>
+ * Run in single thread, since the shell mode exceeds the 2 seconds timeout with concurrent evaluations
+ *
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(1)
+@Fork(1)
+public class ConditionBenchmark {
+
+    private static final String Condition = "return FLOWCI_GIT_BRANCH == \"master\" && FLOWCI_JOB_BUILD_NUM != \"0\"";
+
+    @Param({"cached", "shell"})
+    public String mode;
+
+    private ConditionManager manager;
+
+    private ShellIn in;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        in = new ShellIn();
+        in.setCondition(Condition);
+        in.getInputs().put("FLOWCI_GIT_BRANCH", "master");
+        in.getInputs().put("FLOWCI_JOB_BUILD_NUM", "10");
+
+        if ("cached".equals(mode)) {
+            manager = new ConditionManagerImpl();
+            return;
+        }
+
+        manager = new ShellConditionManager();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        if (manager instanceof ConditionManagerImpl) {
+            ((ConditionManagerImpl) manager).close();
+        }
+
+        if (manager instanceof ShellConditionManager) {
+            ((ShellConditionManager) manager).executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public boolean evaluate() throws ScriptException {
+        return manager.run(in);
+    }
+
+    /**
+     * Evaluate condition by GroovyShell on executor with 2 seconds timeout
+     */
+    private static class ShellConditionManager implements ConditionManager {
+
+        private final ExecutorService executor = new ThreadPoolExecutor(20, 20, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(100));
+
+        @Override
+        public boolean run(CmdIn in) throws ScriptException {
+            ShellIn shell = (ShellIn) in;
+
+            Future<Boolean> submit = executor.submit(() -> {
+                Binding binding = new Binding();
+                shell.getInputs().forEach(binding::setVariable);
+
+                GroovyShell groovy = new GroovyShell(binding);
+                return (Boolean) groovy.evaluate(shell.getCondition());
+            });
+
+            try {
+                return submit.get(2, TimeUnit.SECONDS);
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                throw new ScriptException(e.toString());
+            }
+        }
+    }
+}
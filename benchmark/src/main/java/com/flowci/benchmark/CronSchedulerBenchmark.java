@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.cronutils.model.CronType;
+import com.cronutils.model.definition.CronDefinitionBuilder;
+import com.cronutils.model.time.ExecutionTime;
+import com.cronutils.parser.CronParser;
+import com.flowci.core.common.manager.TimingWheel;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crons of 10k flows with mixed expressions and 5 seconds jitter, as CronServiceImpl
+ * - load: schedule next fire time of all flows into timing wheel, which is done when leadership acquired
+ * - minute: advance the wheel tick by tick for one minute on simulated clock, each expired flow
+ * computes next fire time and schedules again
+ * - taskScheduler: schedule all flows with spring cron trigger then cancel, which was done on every server node
+ *
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(1)
+@Fork(1)
+public class CronSchedulerBenchmark {
+
+    private static final String[] Expressions = {"* * * * *", "*/5 * * * *", "0 * * * *", "30 2 * * *"};
+
+    private static final long TickInMillis = 1000;
+
+    private static final long JitterInMillis = 5000;
+
+    private final CronParser parser = new CronParser(CronDefinitionBuilder.instanceDefinitionFor(CronType.UNIX));
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    @Param({"10000"})
+    public int flows;
+
+    private ExecutionTime[] executionTimes;
+
+    private long[] jitters;
+
+    private long[] nextFireAt;
+
+    private TimingWheel<Integer> wheel;
+
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    // simulated clock
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executionTimes = new ExecutionTime[flows];
+        jitters = new long[flows];
+        nextFireAt = new long[flows];
+
+        for (int i = 0; i < flows; i++) {
+            String flowId = "flow-" + i;
+            executionTimes[i] = ExecutionTime.forCron(parser.parse(Expressions[i % Expressions.length]));
+            jitters[i] = Math.floorMod(flowId.hashCode(), JitterInMillis);
+        }
+
+        now = System.currentTimeMillis();
+        wheel = new TimingWheel<>(TickInMillis, 512, now, Runnable::run, this::fire);
+        load();
+
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(1);
+        taskScheduler.initialize();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        taskScheduler.shutdown();
+    }
+
+    @Benchmark
+    public int load() {
+        wheel.clear();
+
+        for (int i = 0; i < flows; i++) {
+            nextFireAt[i] = nextFireAt(i, now);
+            wheel.schedule(i, nextFireAt[i]);
+        }
+
+        return wheel.size();
+    }
+
+    @Benchmark
+    public long minute() {
+        long expired = 0;
+        for (int i = 0; i < 60; i++) {
+            now += TickInMillis;
+            expired += wheel.advance(now);
+        }
+        return expired;
+    }
+
+    @Benchmark
+    public int taskScheduler() {
+        List<ScheduledFuture<?>> futures = new ArrayList<>(flows);
+
+        for (int i = 0; i < flows; i++) {
+            String expression = "0 " + Expressions[i % Expressions.length];
+            futures.add(taskScheduler.schedule(() -> {
+            }, new CronTrigger(expression)));
+        }
+
+        for (ScheduledFuture<?> future : futures) {
+            future.cancel(true);
+        }
+
+        return futures.size();
+    }
+
+    private void fire(int i) {
+        nextFireAt[i] = nextFireAt(i, Math.max(now, nextFireAt[i]));
+        wheel.schedule(i, nextFireAt[i]);
+    }
+
+    private long nextFireAt(int i, long after) {
+        ZonedDateTime from = ZonedDateTime.ofInstant(Instant.ofEpochMilli(after - jitters[i]), zone);
+        return executionTimes[i].nextExecution(from).get().toInstant().toEpochMilli() + jitters[i];
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.flowci.store.FileManager;
+import com.flowci.store.MinioFileManager;
+import com.flowci.store.Pathable;
+import io.minio.MinioClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload to minio compatible local server, with 64KB and 32MB data
+ * - sized: save with size of data
+ * - unknown: save without size, data read in memory or spooled to temp file by part size
+ * - client-unknown: put object without size by minio client, which was used before
+ *
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class FileManagerBenchmark {
+
+    private static final String Bucket = "benchmark";
+
+    private static final Pathable[] Dir = {() -> "flow", () -> "1", () -> "artifacts"};
+
+    @Param({"sized", "unknown", "client-unknown"})
+    public String mode;
+
+    @Param({"65536", "33554432"})
+    public int size;
+
+    private LocalS3Server server;
+
+    private MinioClient client;
+
+    private FileManager fileManager;
+
+    private byte[] data;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new LocalS3Server();
+        client = new MinioClient(server.endpoint(), "minio", "minio123");
+        fileManager = new MinioFileManager(client, Bucket);
+        fileManager.create(Dir);
+
+        data = new byte[size];
+        new Random(0).nextBytes(data);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        server.close();
+    }
+
+    @Benchmark
+    public String save() throws Exception {
+        InputStream stream = new UploadStream(data);
+
+        switch (mode) {
+            case "sized":
+                return fileManager.save("artifact.bin", stream, data.length, Dir);
+            case "unknown":
+                return fileManager.save("artifact.bin", stream, Dir);
+            default:
+                client.putObject(Bucket, "flow/1/artifacts/artifact.bin", stream, null, null, null, null);
+                return Bucket;
+        }
+    }
+
+    /**
+     * Stream without mark support as uploaded file stream
+     */
+    private static class UploadStream extends FilterInputStream {
+
+        UploadStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.YmlParser;
+
+/**
+ * Flow yml with N steps for benchmarks
+ *
+ * @author yang
+ */
+abstract class Flows {
+
+    static final String Condition = "return FLOWCI_GIT_BRANCH == \"master\"";
+
+    static String yml(int numOfSteps) {
+        StringBuilder builder = new StringBuilder()
+                .append("envs:\n")
+                .append("  FLOWCI_GIT_BRANCH: \"master\"\n")
+                .append("  FLOW_VERSION: \"1.0\"\n")
+                .append("docker:\n")
+                .append("  image: \"ubuntu:18.04\"\n")
+                .append("steps:\n");
+
+        for (int i = 0; i < numOfSteps; i++) {
+            builder.append("- name: step-").append(i).append("\n")
+                    .append("  condition: |\n")
+                    .append("    ").append(Condition).append("\n")
+                    .append("  envs:\n")
+                    .append("    STEP_INDEX: \"").append(i).append("\"\n")
+                    .append("  script: |\n")
+                    .append("    echo step ").append(i).append("\n");
+        }
+
+        return builder.toString();
+    }
+
+    static NodeTree tree(int numOfSteps) {
+        return NodeTree.create(YmlParser.load("flow", yml(numOfSteps)));
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flowci.core.agent.domain.CmdIn;
+import com.flowci.core.agent.domain.ShellOut;
+import com.flowci.core.agent.service.AgentService;
+import com.flowci.core.common.helper.CacheHelper;
+import com.flowci.core.common.helper.JacksonHelper;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.job.dao.ExecutedCmdDao;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Executed;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.manager.*;
+import com.flowci.core.job.service.LocalTaskService;
+import com.flowci.core.job.service.StepService;
+import com.flowci.core.job.service.StepServiceImpl;
+import com.flowci.domain.Agent;
+import com.flowci.tree.NodePath;
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.StepNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.BeanUtils;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated agent callbacks per second for flows with 10, 100 and 1000 steps,
+ * each callback is handled as JobEventServiceImpl by the real JobActionManagerImpl and StepServiceImpl:
+ * decode callback, lock job, record step, update job context, find next step,
+ * create cmd of next step, run condition and encode cmd for agent.
+ * <p>
+ * Mongo, Zookeeper and RabbitMQ are replaced by in memory daos returning copies as db reads,
+ * local job lock and byte array, the job starts from the first step again after it finished.
+ * Run in single thread since the date format of Job is not thread safe
+ *
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(1)
+@Fork(1)
+public class JobCallbackBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int steps;
+
+    private final ObjectMapper objectMapper = JacksonHelper.create();
+
+    private final ConditionManagerImpl conditionManager = new ConditionManagerImpl();
+
+    private final Cache<String, List<Step>> jobStepCache = CacheHelper.createLocalCache(100, 60);
+
+    // stand-in of job collection, key as job id
+    private final Map<String, Job> jobs = new HashMap<>();
+
+    // stand-in of step collection, key as step id in node order
+    private final Map<String, Step> stepTable = new LinkedHashMap<>();
+
+    private JobActionManager jobActionManager;
+
+    private StepService stepService;
+
+    private NodeTree tree;
+
+    // callback message of each step in node order
+    private byte[][] callbacks;
+
+    // cmd encoded for agent by the latest dispatch
+    private byte[] dispatched;
+
+    private Job job;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tree = Flows.tree(steps);
+
+        Agent agent = new Agent("benchmark");
+        agent.setId("agent");
+
+        job = new Job();
+        job.setId("job");
+        job.setKey("flow-10");
+        job.setFlowId("flow");
+        job.setBuildNumber(10L);
+        job.setAgentId(agent.getId());
+        job.setStatus(Job.Status.RUNNING);
+        job.setCurrentPath(tree.getSteps().get(0).getPathAsString());
+        job.getContext().put("FLOWCI_GIT_BRANCH", "master");
+        job.getContext().put("FLOWCI_JOB_BUILD_NUM", "10");
+        jobs.put(job.getId(), job);
+
+        callbacks = new byte[steps][];
+
+        for (int i = 0; i < steps; i++) {
+            StepNode node = tree.getSteps().get(i);
+            String stepId = Base64.getEncoder().encodeToString((job.getId() + node.getPathAsString()).getBytes());
+
+            stepTable.put(stepId, new Step()
+                    .setId(stepId)
+                    .setFlowId(job.getFlowId())
+                    .setBuildNumber(job.getBuildNumber())
+                    .setJobId(job.getId())
+                    .setNodePath(node.getPathAsString())
+                    .setStatus(Executed.Status.PENDING)
+                    .setDockers(new LinkedList<>(node.getDockers())));
+
+            ShellOut out = new ShellOut();
+            out.setId(stepId);
+            out.setProcessId(1024 + i);
+            out.setStatus(Executed.Status.SUCCESS);
+            out.setCode(0);
+            out.setStartAt(new Date());
+            out.setFinishAt(new Date());
+            out.getOutput().put("OUTPUT_STEP", Integer.toString(i));
+
+            callbacks[i] = CallbackBenchmark.toCallback(objectMapper, out);
+        }
+
+        JobDao jobDao = Stubs.of(JobDao.class)
+                .on("findById", args -> Optional.ofNullable(jobs.get((String) args[0])))
+                .on("saveChanges", args -> true)
+                .build();
+
+        ExecutedCmdDao executedCmdDao = Stubs.of(ExecutedCmdDao.class)
+                .on("findById", args -> Optional.ofNullable(stepTable.get((String) args[0])).map(this::copy))
+                .on("findByJobIdAndNodePath", args -> stepTable.values().stream()
+                        .filter(s -> s.getJobId().equals(args[0]) && s.getNodePath().equals(args[1]))
+                        .findFirst()
+                        .map(this::copy))
+                .on("findByFlowIdAndBuildNumber", args -> {
+                    List<Step> list = new ArrayList<>(stepTable.size());
+                    stepTable.values().forEach(s -> list.add(copy(s)));
+                    return list;
+                })
+                .on("save", args -> {
+                    Step step = (Step) args[0];
+                    stepTable.put(step.getId(), copy(step));
+                    return step;
+                })
+                .build();
+
+        YmlManager ymlManager = Stubs.of(YmlManager.class)
+                .on("getTree", args -> tree)
+                .build();
+
+        AgentService agentService = Stubs.of(AgentService.class)
+                .on("get", args -> agent)
+                .on("tryRelease", args -> null)
+                .on("dispatch", args -> {
+                    dispatched = encode((CmdIn) args[0]);
+                    return null;
+                })
+                .build();
+
+        LocalTaskService localTaskService = Stubs.of(LocalTaskService.class)
+                .on("executeAsync", args -> null)
+                .build();
+
+        SpringEventManager eventManager = Stubs.of(SpringEventManager.class)
+                .on("publish", args -> args[0])
+                .build();
+
+        JobStateWriter jobStateWriter = new JobStateWriterImpl();
+        Stubs.inject(jobStateWriter, "jobDao", jobDao);
+        Stubs.inject(jobStateWriter, "eventManager", eventManager);
+
+        CmdManager cmdManager = new CmdManagerImpl();
+        Stubs.inject(cmdManager, "eventManager", eventManager);
+
+        stepService = new StepServiceImpl();
+        Stubs.inject(stepService, "jobStepCache", jobStepCache);
+        Stubs.inject(stepService, "executedCmdDao", executedCmdDao);
+        Stubs.inject(stepService, "ymlManager", ymlManager);
+        Stubs.inject(stepService, "eventManager", eventManager);
+
+        JobActionManagerImpl manager = new JobActionManagerImpl();
+        Stubs.inject(manager, "jobLockManager", new LocalJobLockManager());
+        Stubs.inject(manager, "jobDao", jobDao);
+        Stubs.inject(manager, "jobStateWriter", jobStateWriter);
+        Stubs.inject(manager, "cmdManager", cmdManager);
+        Stubs.inject(manager, "eventManager", eventManager);
+        Stubs.inject(manager, "ymlManager", ymlManager);
+        Stubs.inject(manager, "conditionManager", conditionManager);
+        Stubs.inject(manager, "localTaskService", localTaskService);
+        Stubs.inject(manager, "agentService", agentService);
+        Stubs.inject(manager, "stepService", stepService);
+        manager.init(null);
+
+        jobActionManager = manager;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        conditionManager.close();
+    }
+
+    @Benchmark
+    public byte[] callback() throws IOException {
+        if (job.getStatus() != Job.Status.RUNNING) {
+            restart();
+        }
+
+        int index = tree.get(NodePath.create(job.getCurrentPath())).getOrder();
+        byte[] raw = callbacks[index];
+
+        // decode and load step as JobEventServiceImpl
+        byte[] body = Arrays.copyOfRange(raw, 1, raw.length);
+        ShellOut out = objectMapper.readValue(body, ShellOut.class);
+
+        Step step = stepService.get(out.getId());
+        step.setFrom(out);
+        jobActionManager.toContinue(job, step);
+
+        if (job.getStatus() == Job.Status.FAILURE) {
+            throw new IllegalStateException(job.getMessage());
+        }
+
+        return dispatched;
+    }
+
+    /**
+     * Start job from the first step again after job finished
+     */
+    private void restart() {
+        job.setStatus(Job.Status.RUNNING);
+        job.setCurrentPath(tree.getSteps().get(0).getPathAsString());
+        stepTable.values().forEach(s -> s.setStatus(Executed.Status.PENDING));
+        jobStepCache.invalidate(job.getId());
+    }
+
+    private byte[] encode(CmdIn cmd) {
+        try {
+            return objectMapper.writeValueAsBytes(cmd);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Step copy(Step step) {
+        Step copy = new Step();
+        BeanUtils.copyProperties(step, copy);
+        return copy;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.flowci.core.job.domain.JobLock;
+import com.flowci.core.job.manager.JobLockManager;
+import com.flowci.core.job.manager.LocalJobLockManager;
+import com.flowci.core.job.manager.ZookeeperJobLockManager;
+import com.flowci.zookeeper.InterLock;
+import com.flowci.zookeeper.ZookeeperClient;
+import org.apache.curator.test.TestingServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Step callbacks per second that lock and release job, which is done on every RUNNING to RUNNING transition
+ * - local: striped in process lock
+ * - zookeeper: zookeeper lease reused across steps of the same job
+ * - zookeeper-mutex: InterProcessMutex per callback, which was used before
+ *
+ * @author yang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(8)
+@Fork(1)
+public class JobLockBenchmark {
+
+    private static final String Root = "/job-locks";
+
+    @Param({"local", "zookeeper", "zookeeper-mutex"})
+    public String mode;
+
+    private TestingServer server;
+
+    private ZookeeperClient zk;
+
+    private JobLockManager manager;
+
+    /**
+     * Jobs handled by a benchmark thread, callbacks of different jobs are locked concurrently
+     */
+    @State(Scope.Thread)
+    public static class Jobs {
+
+        @Param({"10"})
+        public int jobsPerThread;
+
+        private String[] ids;
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ids = new String[jobsPerThread];
+            for (int i = 0; i < jobsPerThread; i++) {
+                ids[i] = UUID.randomUUID().toString();
+            }
+        }
+
+        String next() {
+            return ids[next++ % ids.length];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if ("local".equals(mode)) {
+            manager = new LocalJobLockManager();
+            return;
+        }
+
+        server = new TestingServer(true);
+        zk = new ZookeeperClient(server.getConnectString(), 3, 10, Runnable::run);
+        zk.start();
+
+        if ("zookeeper".equals(mode)) {
+            manager = new ZookeeperJobLockManager(zk, Root);
+            return;
+        }
+
+        manager = new MutexJobLockManager(zk);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        if (zk != null) {
+            zk.close();
+        }
+
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Benchmark
+    public boolean callback(Jobs jobs) {
+        String jobId = jobs.next();
+
+        Optional<JobLock> lock = manager.lock(jobId, 10);
+        if (!lock.isPresent()) {
+            return false;
+        }
+
+        manager.release(lock.get());
+        return true;
+    }
+
+    /**
+     * Lock job by InterProcessMutex and delete lock node on release
+     */
+    private static class MutexJobLockManager implements JobLockManager {
+
+        private final ZookeeperClient zk;
+
+        private final Map<String, InterLock> locks = new ConcurrentHashMap<>();
+
+        MutexJobLockManager(ZookeeperClient zk) {
+            this.zk = zk;
+        }
+
+        @Override
+        public Optional<JobLock> lock(String jobId, int timeoutInSeconds) {
+            Optional<InterLock> lock = zk.lock(zk.makePath(Root, jobId), timeoutInSeconds);
+            if (!lock.isPresent()) {
+                return Optional.empty();
+            }
+
+            locks.put(jobId, lock.get());
+            return Optional.of(new JobLock(jobId, 0L));
+        }
+
+        @Override
+        public void release(JobLock lock) {
+            zk.release(locks.remove(lock.getJobId()));
+        }
+
+        @Override
+        public boolean isValid(JobLock lock) {
+            return locks.containsKey(lock.getJobId());
+        }
+
+        @Override
+        public boolean isLocked(String jobId) {
+            return zk.exist(zk.makePath(Root, jobId));
+        }
+
+        @Override
+        public void finish(String jobId) {
+
+        }
+    }
+}
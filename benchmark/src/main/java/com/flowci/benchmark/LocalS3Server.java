@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory S3 compatible server which is enough for MinioClient to
+ * create bucket, put object (single or multipart), stat, get with range and remove object,
+ * authentication is not verified.
+ *
+ * @author yang
+ */
+class LocalS3Server implements Closeable {
+
+    private static final String Namespace = "http://s3.amazonaws.com/doc/2006-03-01/";
+
+    private final HttpServer server;
+
+    private final Set<String> buckets = ConcurrentHashMap.newKeySet();
+
+    // key as bucket/object
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    // key as upload id, value as parts by part number
+    private final Map<String, SortedMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    private final AtomicLong uploadId = new AtomicLong();
+
+    LocalS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath().substring(1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            int slash = path.indexOf('/');
+            if (slash < 0 || slash == path.length() - 1) {
+                onBucket(exchange, method, slash < 0 ? path : path.substring(0, slash), query);
+                return;
+            }
+
+            onObject(exchange, method, path, query);
+        } catch (RuntimeException e) {
+            send(exchange, 500, e.toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void onBucket(HttpExchange exchange, String method, String bucket, Map<String, String> query) throws IOException {
+        if (query.containsKey("location")) {
+            sendXml(exchange, 200, "<LocationConstraint xmlns=\"" + Namespace + "\">us-east-1</LocationConstraint>");
+            return;
+        }
+
+        switch (method) {
+            case "HEAD":
+                send(exchange, buckets.contains(bucket) ? 200 : 404, null);
+                return;
+            case "PUT":
+                buckets.add(bucket);
+                send(exchange, 200, null);
+                return;
+            default:
+                send(exchange, 405, null);
+        }
+    }
+
+    private void onObject(HttpExchange exchange, String method, String key, Map<String, String> query) throws IOException {
+        String id = query.get("uploadId");
+
+        switch (method) {
+            case "POST":
+                if (query.containsKey("uploads")) {
+                    String newId = Long.toString(uploadId.incrementAndGet());
+                    uploads.put(newId, new TreeMap<>());
+                    sendXml(exchange, 200, "<InitiateMultipartUploadResult xmlns=\"" + Namespace + "\">"
+                            + "<Bucket>" + key.substring(0, key.indexOf('/')) + "</Bucket>"
+                            + "<Key>" + key.substring(key.indexOf('/') + 1) + "</Key>"
+                            + "<UploadId>" + newId + "</UploadId>"
+                            + "</InitiateMultipartUploadResult>");
+                    return;
+                }
+
+                ByteStreams.exhaust(exchange.getRequestBody());
+                objects.put(key, concat(uploads.remove(id).values()));
+                sendXml(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"" + Namespace + "\">"
+                        + "<Key>" + key + "</Key><ETag>\"" + id + "\"</ETag>"
+                        + "</CompleteMultipartUploadResult>");
+                return;
+
+            case "PUT":
+                byte[] body = ByteStreams.toByteArray(exchange.getRequestBody());
+                if (id != null) {
+                    uploads.get(id).put(Integer.parseInt(query.get("partNumber")), body);
+                } else {
+                    objects.put(key, body);
+                }
+
+                exchange.getResponseHeaders().set("ETag", "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"");
+                send(exchange, 200, null);
+                return;
+
+            case "HEAD":
+            case "GET":
+                byte[] data = objects.get(key);
+                if (data == null) {
+                    sendNotFound(exchange, key, "HEAD".equals(method));
+                    return;
+                }
+
+                onGetObject(exchange, method, data);
+                return;
+
+            case "DELETE":
+                if (id != null) {
+                    uploads.remove(id);
+                } else {
+                    objects.remove(key);
+                }
+                send(exchange, 204, null);
+                return;
+
+            default:
+                send(exchange, 405, null);
+        }
+    }
+
+    private void onGetObject(HttpExchange exchange, String method, byte[] data) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        exchange.getResponseHeaders().set("Last-Modified", format.format(new Date()));
+        exchange.getResponseHeaders().set("ETag", "\"" + Integer.toHexString(Arrays.hashCode(data)) + "\"");
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+
+        if ("HEAD".equals(method)) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(data.length));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range == null) {
+            send(exchange, 200, data);
+            return;
+        }
+
+        String[] startEnd = range.substring("bytes=".length()).split("-", -1);
+        int start = Integer.parseInt(startEnd[0]);
+        int end = startEnd[1].isEmpty() ? data.length - 1 : Math.min(Integer.parseInt(startEnd[1]), data.length - 1);
+
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+        send(exchange, 206, Arrays.copyOfRange(data, start, end + 1));
+    }
+
+    private static void sendNotFound(HttpExchange exchange, String key, boolean isHead) throws IOException {
+        if (isHead) {
+            send(exchange, 404, null);
+            return;
+        }
+
+        sendXml(exchange, 404, "<Error><Code>NoSuchKey</Code><Message>The specified key does not exist.</Message>"
+                + "<Key>" + key + "</Key><RequestId>0</RequestId><HostId>0</HostId></Error>");
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        send(exchange, status, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null || body.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] concat(Collection<byte[]> parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                params.put(pair, "");
+                continue;
+            }
+            params.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import com.flowci.tree.NodePath;
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.StepNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node tree lookups done on every step callback
+ * - path: NodePath from the node path string of step
+ * - get: step node by path
+ * - next: next step node by path
+ *
+ * @author yang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class NodeTreeBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int steps;
+
+    private NodeTree tree;
+
+    private String[] pathsInStr;
+
+    private NodePath[] paths;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        tree = Flows.tree(steps);
+        pathsInStr = new String[steps];
+        paths = new NodePath[steps];
+
+        for (int i = 0; i < steps; i++) {
+            StepNode node = tree.getSteps().get(i);
+            pathsInStr[i] = node.getPathAsString();
+            paths[i] = node.getPath();
+        }
+    }
+
+    @Benchmark
+    public NodePath path() {
+        return NodePath.create(pathsInStr[nextIndex()]);
+    }
+
+    @Benchmark
+    public StepNode get() {
+        return tree.get(paths[nextIndex()]);
+    }
+
+    @Benchmark
+    public StepNode next() {
+        return tree.next(paths[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next++;
+        if (next == steps) {
+            next = 0;
+        }
+        return index;
+    }
+}
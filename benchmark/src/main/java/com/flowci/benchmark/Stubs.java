@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * In memory stand-in of beans for benchmarks
+ * - stub of interface by dynamic proxy, methods not given throw UnsupportedOperationException
+ * - inject stand-in to autowired field of real bean
+ *
+ * @author yang
+ */
+final class Stubs<T> {
+
+    private final Class<T> type;
+
+    // key as method name
+    private final Map<String, Function<Object[], Object>> methods = new HashMap<>();
+
+    private Stubs(Class<T> type) {
+        this.type = type;
+    }
+
+    static <T> Stubs<T> of(Class<T> type) {
+        return new Stubs<>(type);
+    }
+
+    static <T> T inject(T bean, String fieldName, Object value) {
+        for (Class<?> c = bean.getClass(); c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(bean, value);
+                return bean;
+            } catch (NoSuchFieldException ignore) {
+                // try super class
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        throw new IllegalArgumentException("Field " + fieldName + " not found in " + bean.getClass());
+    }
+
+    /**
+     * Implement all methods with the name
+     */
+    Stubs<T> on(String method, Function<Object[], Object> impl) {
+        methods.put(method, impl);
+        return this;
+    }
+
+    T build() {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return self == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    default:
+                        return type.getSimpleName() + " stub";
+                }
+            }
+
+            Function<Object[], Object> impl = methods.get(method.getName());
+            if (impl == null) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+
+            return impl.apply(args);
+        });
+
+        return type.cast(proxy);
+    }
+}
@@ -21,6 +21,7 @@ import com.flowci.domain.Agent.Status;
 import java.util.List;
 import java.util.Set;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -37,6 +38,9 @@ public interface AgentDao extends MongoRepository<Agent, String> {
 
     Agent findByToken(String token);
 
+    @Query(value = "{}", fields = "{'token' : 1}")
+    List<Agent> findAllTokens();
+
     Agent findByName(String name);
 
     boolean existsAgentByToken(String token);
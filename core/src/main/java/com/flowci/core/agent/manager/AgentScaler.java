@@ -0,0 +1,241 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.agent.manager;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Decide num of agents to start for each selector label set, by
+ * - jobs waiting for an agent, reported by NoIdleAgentEvent
+ * - arrival rate of waiting jobs, as exponentially weighted moving average, for agents needed in prewarm window
+ * - idle agents, and agents started but not online yet
+ * <p>
+ * Labels matches agent if labels is empty or any label is in agent tags, which is same as IdleAgentIndex
+ *
+ * @author yang
+ */
+public class AgentScaler {
+
+    // weight of latest arrival rate
+    private static final double Alpha = 0.3;
+
+    // min interval to sample arrival rate, avoid burst rate if plan right after arrival
+    private static final long RateIntervalInMillis = 10 * 1000;
+
+    // drop the rate if less than one arrival in 100 windows
+    private static final double MinRatePerWindow = 0.01;
+
+    private final long waitingExpireInMillis;
+
+    private final long startingExpireInMillis;
+
+    private final long prewarmWindowInMillis;
+
+    // key as job id
+    private final Map<String, Waiting> waiting = new HashMap<>();
+
+    // key as selector label set
+    private final Map<Set<String>, Group> groups = new HashMap<>();
+
+    private int lastDesired;
+
+    /**
+     * @param waitingExpireInMillis  job not waiting anymore if not reported within
+     * @param startingExpireInMillis started agent counted as available until it's online or expired
+     * @param prewarmWindowInMillis  agents for jobs expected to arrive within the window will be started
+     */
+    public AgentScaler(long waitingExpireInMillis, long startingExpireInMillis, long prewarmWindowInMillis) {
+        this.waitingExpireInMillis = waitingExpireInMillis;
+        this.startingExpireInMillis = startingExpireInMillis;
+        this.prewarmWindowInMillis = prewarmWindowInMillis;
+    }
+
+    public static boolean matches(Set<String> labels, Set<String> tags) {
+        if (labels.isEmpty()) {
+            return true;
+        }
+        return tags != null && !Collections.disjoint(labels, tags);
+    }
+
+    /**
+     * Report job is waiting for agent
+     *
+     * @return true if job is new arrival
+     */
+    public synchronized boolean onWaiting(String jobId, Set<String> labels, long now) {
+        Waiting w = waiting.get(jobId);
+        if (w != null) {
+            w.lastSeen = now;
+            return false;
+        }
+
+        Set<String> copy = labels == null ? Collections.emptySet() : ImmutableSet.copyOf(labels);
+        waiting.put(jobId, new Waiting(copy, now));
+        group(copy, now).arrivals++;
+        return true;
+    }
+
+    /**
+     * Record num of agents been started for labels
+     */
+    public synchronized void onStarted(Set<String> labels, int num, long now) {
+        Group group = group(labels, now);
+        for (int i = 0; i < num; i++) {
+            group.starting.add(now + startingExpireInMillis);
+        }
+    }
+
+    /**
+     * Remove num of agents from starting since failed to start
+     */
+    public synchronized void onStartFailed(Set<String> labels, int num) {
+        Group group = groups.get(labels);
+        if (group == null) {
+            return;
+        }
+
+        for (int i = 0; i < num && !group.starting.isEmpty(); i++) {
+            group.starting.pollLast();
+        }
+    }
+
+    /**
+     * Num of agents to start for each labels
+     *
+     * @param available num of idle agents matched labels
+     */
+    public synchronized Map<Set<String>, Integer> plan(long now, ToIntFunction<Set<String>> available) {
+        waiting.values().removeIf(w -> now - w.lastSeen > waitingExpireInMillis);
+
+        Map<Set<String>, Integer> numOfWaiting = new HashMap<>();
+        for (Waiting w : waiting.values()) {
+            numOfWaiting.merge(w.labels, 1, Integer::sum);
+        }
+
+        Map<Set<String>, Integer> plan = new HashMap<>();
+        int desired = 0;
+
+        Iterator<Map.Entry<Set<String>, Group>> iterator = groups.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Set<String>, Group> entry = iterator.next();
+            Set<String> labels = entry.getKey();
+            Group group = entry.getValue();
+
+            group.updateRate(now);
+            while (!group.starting.isEmpty() && group.starting.peekFirst() < now) {
+                group.starting.pollFirst();
+            }
+
+            int jobs = numOfWaiting.getOrDefault(labels, 0);
+            double predicted = group.rate * prewarmWindowInMillis;
+
+            if (jobs == 0 && group.starting.isEmpty() && predicted < MinRatePerWindow) {
+                iterator.remove();
+                continue;
+            }
+
+            int need = jobs + (int) Math.ceil(predicted - MinRatePerWindow);
+            desired += need;
+
+            int toStart = need - available.applyAsInt(labels) - group.starting.size();
+            if (toStart > 0) {
+                plan.put(labels, toStart);
+            }
+        }
+
+        lastDesired = desired;
+        return plan;
+    }
+
+    /**
+     * Is any waiting or expected job can be run on agent with tags
+     */
+    public synchronized boolean hasDemand(Set<String> tags) {
+        for (Waiting w : waiting.values()) {
+            if (matches(w.labels, tags)) {
+                return true;
+            }
+        }
+
+        for (Map.Entry<Set<String>, Group> entry : groups.entrySet()) {
+            double predicted = entry.getValue().rate * prewarmWindowInMillis;
+            if (predicted >= 1 && matches(entry.getKey(), tags)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public synchronized int numOfWaiting() {
+        return waiting.size();
+    }
+
+    /**
+     * Num of agents needed from last plan
+     */
+    public synchronized int numOfDesired() {
+        return lastDesired;
+    }
+
+    private Group group(Set<String> labels, long now) {
+        return groups.computeIfAbsent(labels, k -> new Group(now));
+    }
+
+    private static class Waiting {
+
+        private final Set<String> labels;
+
+        private long lastSeen;
+
+        Waiting(Set<String> labels, long lastSeen) {
+            this.labels = labels;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    private static class Group {
+
+        // expire time of agents been started
+        private final Deque<Long> starting = new ArrayDeque<>();
+
+        private int arrivals;
+
+        // arrivals per millisecond
+        private double rate;
+
+        private long updatedAt;
+
+        Group(long now) {
+            this.updatedAt = now;
+        }
+
+        void updateRate(long now) {
+            long elapsed = now - updatedAt;
+            if (elapsed < RateIntervalInMillis) {
+                return;
+            }
+
+            rate = Alpha * arrivals / elapsed + (1 - Alpha) * rate;
+            arrivals = 0;
+            updatedAt = now;
+        }
+    }
+}
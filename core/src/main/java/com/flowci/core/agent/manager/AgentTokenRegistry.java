@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.agent.manager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * In memory registry of agent tokens to verify agent request without db query
+ * - tokens are loaded by reload, and kept by add and remove on agent created and deleted
+ * - unknown token is looked up from the loader once, concurrent lookups of same token are merged
+ * - token not found is cached for a while, so guessing tokens will not flood the db
+ * <p>
+ * Reload on agent deleted by other nodes, tokens added or removed while loading are applied to the loaded tokens
+ *
+ * @author yang
+ */
+public class AgentTokenRegistry {
+
+    private final Predicate<String> loader;
+
+    // result of lookups by loader, only negative results are kept
+    private final Cache<String, Boolean> lookups;
+
+    private volatile Set<String> tokens = ConcurrentHashMap.newKeySet();
+
+    // changes while reloading, guarded by this
+    private final Set<String> addedOnReload = new HashSet<>();
+
+    private final Set<String> removedOnReload = new HashSet<>();
+
+    private boolean reloading;
+
+    private final Object reloadLock = new Object();
+
+    /**
+     * @param loader          check token existed from db on miss
+     * @param maxMisses       max num of tokens not found to be cached
+     * @param missTtlInMillis expiry of the cached not found token
+     */
+    public AgentTokenRegistry(Predicate<String> loader, long maxMisses, long missTtlInMillis) {
+        this.loader = loader;
+        this.lookups = Caffeine.newBuilder()
+                .maximumSize(maxMisses)
+                .expireAfterWrite(missTtlInMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public boolean contains(String token) {
+        if (tokens.contains(token)) {
+            return true;
+        }
+
+        Boolean found = lookups.get(token, loader::test);
+        if (found == null || !found) {
+            return false;
+        }
+
+        lookups.invalidate(token);
+        tokens.add(token);
+        return true;
+    }
+
+    public synchronized void add(String token) {
+        tokens.add(token);
+        lookups.invalidate(token);
+
+        if (reloading) {
+            addedOnReload.add(token);
+            removedOnReload.remove(token);
+        }
+    }
+
+    public synchronized void remove(String token) {
+        tokens.remove(token);
+
+        if (reloading) {
+            removedOnReload.add(token);
+            addedOnReload.remove(token);
+        }
+    }
+
+    /**
+     * Replace all tokens by loaded tokens
+     */
+    public void reload(Supplier<Collection<String>> loader) {
+        synchronized (reloadLock) {
+            synchronized (this) {
+                reloading = true;
+            }
+
+            try {
+                Collection<String> all = loader.get();
+                Set<String> loaded = ConcurrentHashMap.newKeySet(all.size());
+                loaded.addAll(all);
+
+                synchronized (this) {
+                    loaded.addAll(addedOnReload);
+                    loaded.removeAll(removedOnReload);
+                    tokens = loaded;
+                }
+            } finally {
+                synchronized (this) {
+                    reloading = false;
+                    addedOnReload.clear();
+                    removedOnReload.clear();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    public long numOfMisses() {
+        return lookups.estimatedSize();
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.agent.manager;
+
+import com.flowci.domain.Agent;
+import com.google.common.collect.ImmutableSet;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In memory index of idle agents and jobs waiting for an agent
+ * - idle agents are indexed by tag, agent without tags only matches waiters without selector label
+ * - the agent idle longest is matched first, offer an agent already idle keeps its idle order
+ * - waiters are grouped by selector label set, and ordered by job priority then arrival (FIFO)
+ * <p>
+ * Offer a waiter or an idle agent returns a match if the counterpart is available,
+ * the matched pair is removed from index, caller should lock agent and complete the waiter
+ *
+ * @author yang
+ */
+public class IdleAgentIndex {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    private final AtomicLong idleSequence = new AtomicLong(0);
+
+    // key as agent id, ordered by idle time
+    private final Map<String, IdleAgent> idle = new LinkedHashMap<>();
+
+    // key as agent tag, value as idle agents ordered by idle time
+    private final Map<String, NavigableSet<IdleAgent>> idleByTag = new HashMap<>();
+
+    // key as selector label set
+    private final Map<Set<String>, NavigableSet<Waiter>> waitersByLabels = new HashMap<>();
+
+    // key as job id
+    private final Map<String, Waiter> waitersByJob = new HashMap<>();
+
+    //====================================================================
+    //        %% Waiters
+    //====================================================================
+
+    /**
+     * Create waiter for job, it will not be added to index until offer
+     */
+    public Waiter newWaiter(String jobId, String flowId, Set<String> labels, Integer priority,
+                            Function<String, Boolean> canContinue) {
+        Set<String> copy = labels == null ? Collections.emptySet() : ImmutableSet.copyOf(labels);
+        int p = priority == null ? 0 : priority;
+        return new Waiter(jobId, flowId, copy, p, sequence.incrementAndGet(), canContinue);
+    }
+
+    /**
+     * Offer waiter to index
+     *
+     * @return matched idle agent which removed from index, or empty if waiter been queued
+     */
+    public Optional<Agent> offer(Waiter waiter) {
+        lock.lock();
+        try {
+            Optional<Agent> agent = pollIdle(waiter.labels);
+            if (agent.isPresent()) {
+                return agent;
+            }
+
+            waitersByLabels.computeIfAbsent(waiter.labels, k -> new TreeSet<>()).add(waiter);
+            waitersByJob.put(waiter.jobId, waiter);
+            return Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove waiter by job id
+     */
+    public Optional<Waiter> remove(String jobId) {
+        lock.lock();
+        try {
+            Waiter waiter = waitersByJob.remove(jobId);
+            if (waiter == null) {
+                return Optional.empty();
+            }
+
+            removeFromGroup(waiter);
+            return Optional.of(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all waiters of flow
+     */
+    public List<Waiter> removeByFlow(String flowId) {
+        return removeIf(waiter -> Objects.equals(flowId, waiter.flowId));
+    }
+
+    public List<Waiter> removeIf(Predicate<Waiter> predicate) {
+        lock.lock();
+        try {
+            List<Waiter> removed = new LinkedList<>();
+            Iterator<Waiter> iterator = waitersByJob.values().iterator();
+
+            while (iterator.hasNext()) {
+                Waiter waiter = iterator.next();
+                if (predicate.test(waiter)) {
+                    iterator.remove();
+                    removeFromGroup(waiter);
+                    removed.add(waiter);
+                }
+            }
+
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Snapshot of waiters in priority order
+     */
+    public List<Waiter> waiters() {
+        lock.lock();
+        try {
+            List<Waiter> list = new ArrayList<>(waitersByJob.values());
+            Collections.sort(list);
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int numOfWaiters() {
+        lock.lock();
+        try {
+            return waitersByJob.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //====================================================================
+    //        %% Idle agents
+    //====================================================================
+
+    /**
+     * Offer idle agent to index
+     *
+     * @return matched waiter which removed from index, or empty if agent been indexed as idle
+     */
+    public Optional<Waiter> offer(Agent agent) {
+        lock.lock();
+        try {
+            Optional<Waiter> waiter = pollWaiter(agent);
+            if (waiter.isPresent()) {
+                removeIdle(agent.getId());
+                return waiter;
+            }
+
+            putIdle(agent);
+            return Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove agent from idle index, when agent status changed to busy or offline
+     */
+    public void removeIdle(String agentId) {
+        lock.lock();
+        try {
+            IdleAgent removed = idle.remove(agentId);
+            if (removed != null) {
+                removeFromTags(removed);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int numOfIdle() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //====================================================================
+    //        %% Private
+    //====================================================================
+
+    private void putIdle(Agent agent) {
+        IdleAgent previous = idle.get(agent.getId());
+        long sequence = previous == null ? idleSequence.incrementAndGet() : previous.sequence;
+
+        if (previous != null) {
+            removeFromTags(previous);
+        }
+
+        // replace value of existing key will not change the order
+        IdleAgent entry = new IdleAgent(agent, sequence);
+        idle.put(agent.getId(), entry);
+
+        for (String tag : tagsOf(agent)) {
+            idleByTag.computeIfAbsent(tag, k -> new TreeSet<>()).add(entry);
+        }
+    }
+
+    /**
+     * Find the agent idle longest from agents that have any of labels
+     */
+    private Optional<Agent> pollIdle(Set<String> labels) {
+        IdleAgent longest = null;
+
+        if (labels.isEmpty()) {
+            Iterator<IdleAgent> iterator = idle.values().iterator();
+            if (iterator.hasNext()) {
+                longest = iterator.next();
+            }
+        } else {
+            for (String label : labels) {
+                NavigableSet<IdleAgent> agents = idleByTag.get(label);
+                if (agents == null || agents.isEmpty()) {
+                    continue;
+                }
+
+                IdleAgent head = agents.first();
+                if (longest == null || head.compareTo(longest) < 0) {
+                    longest = head;
+                }
+            }
+        }
+
+        if (longest == null) {
+            return Optional.empty();
+        }
+
+        removeIdle(longest.agent.getId());
+        return Optional.of(longest.agent);
+    }
+
+    private void removeFromTags(IdleAgent entry) {
+        for (String tag : tagsOf(entry.agent)) {
+            NavigableSet<IdleAgent> agents = idleByTag.get(tag);
+            if (agents == null) {
+                continue;
+            }
+
+            agents.remove(entry);
+            if (agents.isEmpty()) {
+                idleByTag.remove(tag);
+            }
+        }
+    }
+
+    /**
+     * Find the first waiter by priority and arrival from label groups that matched agent tags
+     */
+    private Optional<Waiter> pollWaiter(Agent agent) {
+        Set<String> tags = tagsOf(agent);
+        Waiter first = null;
+
+        for (Map.Entry<Set<String>, NavigableSet<Waiter>> entry : waitersByLabels.entrySet()) {
+            Set<String> labels = entry.getKey();
+            if (!labels.isEmpty() && Collections.disjoint(labels, tags)) {
+                continue;
+            }
+
+            Waiter head = entry.getValue().first();
+            if (first == null || head.compareTo(first) < 0) {
+                first = head;
+            }
+        }
+
+        if (first == null) {
+            return Optional.empty();
+        }
+
+        waitersByJob.remove(first.jobId);
+        removeFromGroup(first);
+        return Optional.of(first);
+    }
+
+    private void removeFromGroup(Waiter waiter) {
+        NavigableSet<Waiter> group = waitersByLabels.get(waiter.labels);
+        if (group == null) {
+            return;
+        }
+
+        group.remove(waiter);
+        if (group.isEmpty()) {
+            waitersByLabels.remove(waiter.labels);
+        }
+    }
+
+    private static Set<String> tagsOf(Agent agent) {
+        return agent.getTags() == null ? Collections.emptySet() : agent.getTags();
+    }
+
+    @RequiredArgsConstructor
+    private static class IdleAgent implements Comparable<IdleAgent> {
+
+        private final Agent agent;
+
+        private final long sequence;
+
+        @Override
+        public int compareTo(IdleAgent o) {
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Waiter implements Comparable<Waiter> {
+
+        private final String jobId;
+
+        private final String flowId;
+
+        private final Set<String> labels;
+
+        private final int priority;
+
+        private final long sequence;
+
+        private final Function<String, Boolean> canContinue;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private final CompletableFuture<Optional<Agent>> future = new CompletableFuture<>();
+
+        /**
+         * Higher priority first, then first in first out
+         */
+        @Override
+        public int compareTo(Waiter o) {
+            int c = Integer.compare(o.priority, priority);
+            if (c != 0) {
+                return c;
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+}
@@ -53,6 +53,11 @@ public interface AgentHostService {
      */
     void collect(AgentHost host);
 
+    /**
+     * Start agents for waiting and expected jobs
+     */
+    void scale();
+
     /**
      * Remove all docker container
      */
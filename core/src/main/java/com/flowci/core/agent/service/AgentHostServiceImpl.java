@@ -23,6 +23,7 @@ import com.flowci.core.agent.domain.LocalUnixAgentHost;
 import com.flowci.core.agent.domain.SshAgentHost;
 import com.flowci.core.agent.event.AgentCreatedEvent;
 import com.flowci.core.agent.event.AgentHostStatusEvent;
+import com.flowci.core.agent.manager.AgentScaler;
 import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.helper.CacheHelper;
 import com.flowci.core.common.manager.SpringEventManager;
@@ -45,8 +46,10 @@ import com.flowci.zookeeper.ZookeeperException;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.model.Container;
 import com.google.common.base.Preconditions;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.apache.curator.utils.ZKPaths;
@@ -60,9 +63,12 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.flowci.core.agent.domain.Variables.*;
 import static com.flowci.core.secret.domain.Secret.Category.SSH_RSA;
@@ -79,11 +85,20 @@ public class AgentHostServiceImpl implements AgentHostService {
 
     private static final String ContainerNamePrefix = "ci-agent";
 
+    // job not waiting if NoIdleAgentEvent not received in 3 intervals
+    private static final long WaitingExpireInMillis = 30 * 1000;
+
+    private static final long ScaleIntervalInMillis = 5 * 1000;
+
     private final Map<Class<?>, OnCreateAndInit> mapping = new HashMap<>(3);
 
     private final Cache<AgentHost, DockerManager> poolManagerCache =
             CacheHelper.createLocalCache(10, 600, new PoolManagerRemover());
 
+    private final ReentrantLock scaleLock = new ReentrantLock();
+
+    private AgentScaler scaler;
+
     private String collectTaskZkPath;
 
     @Autowired
@@ -116,11 +131,29 @@ public class AgentHostServiceImpl implements AgentHostService {
     @Autowired
     private AgentService agentService;
 
+    @Autowired
+    private AppProperties.Agent agentProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     {
         mapping.put(LocalUnixAgentHost.class, new OnLocalSocketHostCreate());
         mapping.put(SshAgentHost.class, new OnSshHostCreate());
     }
 
+    @PostConstruct
+    private void initScaler() {
+        scaler = new AgentScaler(
+                WaitingExpireInMillis,
+                TimeUnit.SECONDS.toMillis(agentProperties.getStartTimeout()),
+                TimeUnit.SECONDS.toMillis(agentProperties.getPrewarmWindow())
+        );
+
+        meterRegistry.gauge("flowci.agent.scale.waiting", scaler, AgentScaler::numOfWaiting);
+        meterRegistry.gauge("flowci.agent.scale.desired", scaler, AgentScaler::numOfDesired);
+    }
+
     //====================================================================
     //        %% Public functions
     //====================================================================
@@ -176,6 +209,11 @@ public class AgentHostServiceImpl implements AgentHostService {
             return;
         }
 
+        Map<String, Container> containerMap = new HashMap<>(containerList.size());
+        for (Container container : containerList) {
+            containerMap.put(container.getNames()[0], container);
+        }
+
         Set<AgentItemWrapper> containerSet = AgentItemWrapper.toSet(containerList);
         List<Agent> agentList = agentDao.findAllByHostId(host.getId());
         Set<AgentItemWrapper> agentSet = AgentItemWrapper.toSet(agentList);
@@ -185,10 +223,7 @@ public class AgentHostServiceImpl implements AgentHostService {
 
         for (AgentItemWrapper item : containerSet) {
             try {
-                List<Container> list = cm.list(null, item.getName());
-                if (list.size() > 0) {
-                    cm.delete(list.get(0).getId());
-                }
+                cm.delete(containerMap.get(item.getName()).getId());
                 log.info("Agent {} has been cleaned up", item.getName());
             } catch (Exception ignore) {
             }
@@ -208,7 +243,7 @@ public class AgentHostServiceImpl implements AgentHostService {
 
         DockerManager dockerManager = manager.get();
         ContainerManager cm = dockerManager.getContainerManager();
-
+        Map<String, InspectContainerResponse> offlineContainers = inspectOfflineContainers(cm, agents);
 
         for (Agent agent : agents) {
             // add just created agent to list to start later
@@ -219,16 +254,15 @@ public class AgentHostServiceImpl implements AgentHostService {
 
             // try to resume, add to start list if failed
             if (agent.getStatus() == Agent.Status.OFFLINE) {
-                try {
-                    List<Container> list = cm.list(null, getContainerName(agent));
+                InspectContainerResponse container = offlineContainers.get(getContainerName(agent));
 
-                    // container not exist
-                    if (list.isEmpty()) {
-                        startList.add(agent);
-                        continue;
-                    }
+                // container not exist
+                if (container == null) {
+                    startList.add(agent);
+                    continue;
+                }
 
-                    Container container = list.get(0);
+                try {
                     cm.resume(container.getId());
                     log.info("Agent {} been resumed", agent.getName());
                     return true;
@@ -298,16 +332,90 @@ public class AgentHostServiceImpl implements AgentHostService {
         appTaskExecutor.execute(() -> getDockerManager(host));
     }
 
+    /**
+     * Stop containers of agents idle longer than idle ttl, and no job waiting for it.
+     * The container is kept, so it can be resumed when needed
+     */
     @Override
     public void collect(AgentHost host) {
-        // TODO: not implemented
+        Optional<DockerManager> optional = getDockerManager(host);
+        if (!optional.isPresent()) {
+            log.warn("Fail to get pool manager of host: {}", host.getName());
+            return;
+        }
+
+        ContainerManager cm = optional.get().getContainerManager();
+        long expire = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(agentProperties.getIdleTtl());
+
+        for (Agent agent : agentDao.findAllByHostId(host.getId())) {
+            if (!agent.isIdle() || agent.getStatusUpdatedAt() == null) {
+                continue;
+            }
+
+            if (agent.getStatusUpdatedAt().getTime() > expire || scaler.hasDemand(agent.getTags())) {
+                continue;
+            }
+
+            // lock agent, so it will not be assigned to job while stopping
+            if (!agentService.tryLock(null, agent.getId()).isPresent()) {
+                continue;
+            }
+
+            try {
+                cm.stop(getContainerName(agent));
+                meterRegistry.counter("flowci.agent.scale.reaped", "host", host.getName()).increment();
+                log.info("Idle agent {} been stopped", agent.getName());
+            } catch (Exception e) {
+                log.warn("Unable to stop idle agent {}: {}", agent.getName(), e.getMessage());
+                agentService.tryRelease(agent.getId());
+            }
+        }
+    }
+
+    /**
+     * Start agents planned by scaler, agents of different host are started in parallel
+     */
+    @Override
+    public void scale() {
+        if (!scaleLock.tryLock()) {
+            return;
+        }
+
+        try {
+            List<Agent> agents = agentDao.findAll();
+            Map<Set<String>, Integer> plan = scaler.plan(System.currentTimeMillis(), labels -> numOfIdle(agents, labels));
+            if (plan.isEmpty()) {
+                return;
+            }
+
+            Map<AgentHost, List<Set<String>>> startsOfHost = assign(plan, list(), agents);
+            for (Map.Entry<AgentHost, List<Set<String>>> entry : startsOfHost.entrySet()) {
+                AgentHost host = entry.getKey();
+                List<Set<String>> starts = entry.getValue();
+
+                starts.forEach(labels -> scaler.onStarted(labels, 1, System.currentTimeMillis()));
+                log.info("Start {} agents on host {}", starts.size(), host.getName());
+
+                appTaskExecutor.execute(() -> {
+                    for (Set<String> labels : starts) {
+                        if (start(host)) {
+                            meterRegistry.counter("flowci.agent.scale.started", "host", host.getName()).increment();
+                            continue;
+                        }
+                        scaler.onStartFailed(labels, 1);
+                    }
+                });
+            }
+        } finally {
+            scaleLock.unlock();
+        }
     }
 
     @Override
     public void removeAll(AgentHost host) {
         List<Agent> list = agentDao.findAllByHostId(host.getId());
         for (Agent agent : list) {
-            agentDao.delete(agent);
+            agentService.delete(agent);
         }
 
         Optional<DockerManager> optional = getDockerManager(host);
@@ -355,20 +463,18 @@ public class AgentHostServiceImpl implements AgentHostService {
         syncAgents();
     }
 
+    @Scheduled(fixedDelay = ScaleIntervalInMillis)
+    public void scheduleScale() {
+        scale();
+    }
+
     @EventListener
     public void onNoIdleAgent(NoIdleAgentEvent event) {
-        Set<String> agentTags = event.getSelector().getLabel();
-        List<AgentHost> hosts = agentTags.isEmpty() ? list() : agentHostDao.findAllByTagsIn(agentTags);
+        Set<String> labels = event.getSelector().getLabel();
 
-        if (hosts.isEmpty()) {
-            log.warn("Unable to find matched agent host for job {}", event.getJobId());
-            return;
-        }
-
-        for (AgentHost host : hosts) {
-            if (start(host)) {
-                return;
-            }
+        // scale immediately for new arrival, otherwise on schedule
+        if (scaler.onWaiting(event.getJobId(), labels, System.currentTimeMillis())) {
+            scale();
         }
     }
 
@@ -395,6 +501,104 @@ public class AgentHostServiceImpl implements AgentHostService {
         return String.format("%s.%s", ContainerNamePrefix, agent.getName());
     }
 
+    private static int numOfIdle(List<Agent> agents, Set<String> labels) {
+        int num = 0;
+        for (Agent agent : agents) {
+            if (agent.isIdle() && AgentScaler.matches(labels, agent.getTags())) {
+                num++;
+            }
+        }
+        return num;
+    }
+
+    /**
+     * Assign agents to start to matched hosts, host with most free capacity first.
+     * The free capacity is num of agent can be created plus num of agent can be resumed or restarted
+     *
+     * @return agent labels to start for each host
+     */
+    private Map<AgentHost, List<Set<String>>> assign(Map<Set<String>, Integer> plan, List<AgentHost> hosts, List<Agent> agents) {
+        Map<String, Integer> free = new HashMap<>(hosts.size());
+        for (AgentHost host : hosts) {
+            int total = 0;
+            int stopped = 0;
+
+            for (Agent agent : agents) {
+                if (!Objects.equals(agent.getHostId(), host.getId())) {
+                    continue;
+                }
+
+                total++;
+                if (agent.isOffline() || agent.getStatus() == Agent.Status.CREATED) {
+                    stopped++;
+                }
+            }
+
+            free.put(host.getId(), Math.max(0, host.getMaxSize() - total) + stopped);
+        }
+
+        Map<AgentHost, List<Set<String>>> starts = new HashMap<>();
+
+        for (Map.Entry<Set<String>, Integer> entry : plan.entrySet()) {
+            Set<String> labels = entry.getKey();
+            List<AgentHost> matched = new LinkedList<>();
+
+            for (AgentHost host : hosts) {
+                if (AgentScaler.matches(labels, host.getTags())) {
+                    matched.add(host);
+                }
+            }
+
+            if (matched.isEmpty()) {
+                log.warn("Unable to find matched agent host for labels {}", labels);
+                continue;
+            }
+
+            for (int i = 0; i < entry.getValue(); i++) {
+                AgentHost host = Collections.max(matched, Comparator.comparingInt(h -> free.get(h.getId())));
+                if (free.get(host.getId()) <= 0) {
+                    break;
+                }
+
+                free.merge(host.getId(), -1, Integer::sum);
+                starts.computeIfAbsent(host, h -> new LinkedList<>()).add(labels);
+            }
+        }
+
+        return starts;
+    }
+
+    /**
+     * Inspect containers of offline agents in one batch
+     *
+     * @return container name to inspected container
+     */
+    private Map<String, InspectContainerResponse> inspectOfflineContainers(ContainerManager cm, List<Agent> agents) {
+        List<String> names = new LinkedList<>();
+        for (Agent agent : agents) {
+            if (agent.getStatus() == Agent.Status.OFFLINE) {
+                names.add(getContainerName(agent));
+            }
+        }
+
+        Map<String, InspectContainerResponse> map = new HashMap<>(names.size());
+        if (names.isEmpty()) {
+            return map;
+        }
+
+        try {
+            for (InspectContainerResponse container : cm.inspect(names)) {
+                // name of inspected container starts with '/'
+                String name = container.getName();
+                map.put(name.startsWith("/") ? name.substring(1) : name, container);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to inspect offline agent containers: {}", e.getMessage());
+        }
+
+        return map;
+    }
+
     private void initZkNodeForCronTask() {
         collectTaskZkPath = ZKPaths.makePath(zkProperties.getCronRoot(), "agent-host-collect");
     }
@@ -598,14 +802,14 @@ public class AgentHostServiceImpl implements AgentHostService {
         }
     }
 
-    @Log4j2
-    private static class PoolManagerRemover implements RemovalListener<AgentHost, DockerManager> {
+    private class PoolManagerRemover implements RemovalListener<AgentHost, DockerManager> {
 
         @Override
         public void onRemoval(@Nullable AgentHost agentHost,
                               @Nullable DockerManager dockerManager,
                               @Nonnull RemovalCause removalCause) {
-            if (dockerManager != null) {
+            // the shared docker manager of local host is closed with application
+            if (dockerManager != null && dockerManager != AgentHostServiceImpl.this.dockerManager) {
                 try {
                     dockerManager.close();
                 } catch (Exception e) {
@@ -25,6 +25,7 @@ import com.flowci.domain.Settings;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -89,9 +90,12 @@ public interface AgentService {
     Agent setTags(String token, Set<String> tags);
 
     /**
-     * Find available agent and lock
+     * Find available agent and lock, it will not block the caller
+     *
+     * @return future completed with locked agent once an idle agent matched the job selector,
+     * or completed with empty if job cannot continue to wait
      */
-    Optional<Agent> acquire(Job job, Function<String, Boolean> canContinue);
+    CompletableFuture<Optional<Agent>> acquire(Job job, Function<String, Boolean> canContinue);
 
     /**
      * Try to lock agent resource, and set agent status to BUSY
@@ -23,12 +23,15 @@ import com.flowci.core.agent.domain.AgentInit;
 import com.flowci.core.agent.domain.CmdIn;
 import com.flowci.core.agent.event.AgentStatusEvent;
 import com.flowci.core.agent.event.CmdSentEvent;
+import com.flowci.core.agent.manager.AgentTokenRegistry;
+import com.flowci.core.agent.manager.IdleAgentIndex;
+import com.flowci.core.agent.manager.IdleAgentIndex.Waiter;
 import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.helper.CipherHelper;
-import com.flowci.core.common.helper.ThreadHelper;
 import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.common.rabbit.RabbitOperations;
 import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.event.JobStatusChangeEvent;
 import com.flowci.core.job.event.NoIdleAgentEvent;
 import com.flowci.core.job.event.StopJobConsumerEvent;
 import com.flowci.domain.Agent;
@@ -41,27 +44,35 @@ import com.flowci.util.ObjectsHelper;
 import com.flowci.zookeeper.ZookeeperClient;
 import com.flowci.zookeeper.ZookeeperException;
 import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.log4j.Log4j2;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent.Type;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.data.Stat;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
  * Manage agent from zookeeper nodes
  * - The ephemeral node present agent, path is /{root}/{agent id}
  * - The persistent node present agent of lock, path is /{root}/{agent id}-lock, managed by server side
+ * - The persistent node present agent deleted, path is /{root}/{agent id}-deleted, to evict token on all server nodes
+ * - Idle agents and jobs waiting for agent are matched in memory by {@code IdleAgentIndex}
+ * - Agent tokens are verified in memory by {@code AgentTokenRegistry}
  *
  * @author yang
  */
@@ -71,8 +82,16 @@ public class AgentServiceImpl implements AgentService {
 
     private static final String LockPathSuffix = "-lock";
 
+    private static final String DeletedPathSuffix = "-deleted";
+
     private static final long RetryIntervalOnNotFound = 10 * 1000; // 10 seconds
 
+    private static final long TokenReloadInterval = 30 * 1000; // 30 seconds
+
+    private static final long MaxTokenMisses = 10000;
+
+    private static final long TokenMissTtl = 10 * 1000; // 10 seconds
+
     @Autowired
     private AppProperties.Zookeeper zkProperties;
 
@@ -94,13 +113,22 @@ public class AgentServiceImpl implements AgentService {
     @Autowired
     private ObjectMapper objectMapper;
 
-    // key is flow id,
-    private final Map<String, AcquireLock> acquireLocks = new ConcurrentHashMap<>();
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final IdleAgentIndex idleAgentIndex = new IdleAgentIndex();
+
+    private AgentTokenRegistry tokenRegistry;
+
+    private Timer acquireWaitTimer;
 
     @PostConstruct
     private void init() {
         initRootNode();
         initAgentsFromZk();
+        initIdleAgentIndex();
+        initTokenRegistry();
+        initMetrics();
     }
 
     //====================================================================
@@ -149,7 +177,7 @@ public class AgentServiceImpl implements AgentService {
 
     @Override
     public boolean isExisted(String token) {
-        return agentDao.existsAgentByToken(token);
+        return tokenRegistry.contains(token);
     }
 
     @Override
@@ -186,7 +214,10 @@ public class AgentServiceImpl implements AgentService {
     @Override
     public void delete(Agent agent) {
         agentDao.delete(agent);
+        tokenRegistry.remove(agent.getToken());
+        idleAgentIndex.removeIdle(agent.getId());
         agentQueueManager.delete(agent.getQueueName());
+        markDeleted(agent);
         log.debug("{} has been deleted", agent);
     }
 
@@ -199,34 +230,19 @@ public class AgentServiceImpl implements AgentService {
     }
 
     @Override
-    public Optional<Agent> acquire(Job job, Function<String, Boolean> canContinue) {
-        String jobId = job.getId();
+    public CompletableFuture<Optional<Agent>> acquire(Job job, Function<String, Boolean> canContinue) {
         Selector selector = job.getAgentSelector();
+        Waiter waiter = idleAgentIndex.newWaiter(job.getId(), job.getFlowId(), selector.getLabel(),
+                job.getPriority(), canContinue);
 
-        for (; ; ) {
-            if (!canContinue.apply(jobId)) {
-                log.debug("Job {} cannot continue to wait agent", jobId);
-                acquireLocks.remove(job.getFlowId());
-                return Optional.empty();
-            }
-
-            Optional<Agent> optional = acquire(jobId, selector);
-            if (optional.isPresent()) {
-                acquireLocks.remove(job.getFlowId());
-                return optional;
-            }
-
-            eventManager.publish(new NoIdleAgentEvent(this, jobId, selector));
-
-            AcquireLock lock = acquireLocks.computeIfAbsent(job.getFlowId(), s -> new AcquireLock());
-            if (lock.stop) {
-                acquireLocks.remove(job.getFlowId());
-                return Optional.empty();
-            }
-
-            log.debug("Job {} is waiting for agent", jobId);
-            ThreadHelper.wait(lock, RetryIntervalOnNotFound);
+        if (!canContinue.apply(job.getId())) {
+            log.debug("Job {} cannot continue to wait agent", job.getId());
+            waiter.getFuture().complete(Optional.empty());
+            return waiter.getFuture();
         }
+
+        offer(waiter);
+        return waiter.getFuture();
     }
 
     @Override
@@ -283,6 +299,7 @@ public class AgentServiceImpl implements AgentService {
 
         try {
             agentDao.insert(agent);
+            tokenRegistry.add(agent.getToken());
             agentQueueManager.declare(agent.getQueueName(), false);
             return agent;
         } catch (DuplicateKeyException e) {
@@ -333,30 +350,72 @@ public class AgentServiceImpl implements AgentService {
     public void notifyToFindAvailableAgent(AgentStatusEvent event) {
         Agent agent = event.getAgent();
 
-        if (!agent.hasJob()) {
+        if (!agent.isIdle()) {
+            idleAgentIndex.removeIdle(agent.getId());
             return;
         }
 
-        if (!agent.isIdle()) {
+        offer(agent);
+    }
+
+    @EventListener
+    public void removeWaiterIfJobNotQueued(JobStatusChangeEvent event) {
+        Job job = event.getJob();
+        if (job.getStatus() == Job.Status.QUEUED) {
             return;
         }
 
-        // notify all consumer to find agent
-        acquireLocks.computeIfPresent(agent.getJobId(), (s, lock) -> {
-            ThreadHelper.notifyAll(lock);
-            return lock;
-        });
+        idleAgentIndex.remove(job.getId()).ifPresent(waiter -> waiter.getFuture().complete(Optional.empty()));
     }
 
     @EventListener
     public void stopJobsThatWaitingForAgent(StopJobConsumerEvent event) {
-        AcquireLock lock = acquireLocks.get(event.getFlowId());
-        if (Objects.isNull(lock)) {
+        for (Waiter waiter : idleAgentIndex.removeByFlow(event.getFlowId())) {
+            waiter.getFuture().complete(Optional.empty());
+        }
+    }
+
+    //====================================================================
+    //        %% Scheduler
+    //====================================================================
+
+    /**
+     * Check waiting jobs periodically
+     * - remove waiters that cannot continue, ex: job expired
+     * - re-sync idle agents from db in case status event missed
+     * - notify no idle agent for rest of waiters
+     */
+    @Scheduled(fixedDelay = RetryIntervalOnNotFound)
+    public void checkWaitingJobs() {
+        if (idleAgentIndex.numOfWaiters() == 0) {
             return;
         }
 
-        lock.stop = true;
-        ThreadHelper.notifyAll(lock);
+        for (Waiter waiter : idleAgentIndex.waiters()) {
+            if (waiter.getCanContinue().apply(waiter.getJobId())) {
+                continue;
+            }
+
+            log.debug("Job {} cannot continue to wait agent", waiter.getJobId());
+            idleAgentIndex.remove(waiter.getJobId()).ifPresent(w -> w.getFuture().complete(Optional.empty()));
+        }
+
+        for (Agent agent : find(Status.IDLE, null)) {
+            offer(agent);
+        }
+
+        for (Waiter waiter : idleAgentIndex.waiters()) {
+            eventManager.publish(new NoIdleAgentEvent(this, waiter.getJobId(), toSelector(waiter)));
+        }
+    }
+
+    /**
+     * Reload agent tokens, to remove agents deleted from other nodes in case the deleted node event missed
+     */
+    @Scheduled(fixedDelay = TokenReloadInterval, initialDelay = TokenReloadInterval)
+    public void reloadTokens() {
+        tokenRegistry.reload(this::loadTokens);
+        cleanDeletedNodes();
     }
 
     //====================================================================
@@ -389,6 +448,37 @@ public class AgentServiceImpl implements AgentService {
         }
     }
 
+    private void initIdleAgentIndex() {
+        for (Agent agent : find(Status.IDLE, null)) {
+            idleAgentIndex.offer(agent);
+        }
+    }
+
+    private void initTokenRegistry() {
+        tokenRegistry = new AgentTokenRegistry(agentDao::existsAgentByToken, MaxTokenMisses, TokenMissTtl);
+        tokenRegistry.reload(this::loadTokens);
+    }
+
+    private List<String> loadTokens() {
+        List<Agent> agents = agentDao.findAllTokens();
+        List<String> tokens = new ArrayList<>(agents.size());
+        for (Agent agent : agents) {
+            tokens.add(agent.getToken());
+        }
+        return tokens;
+    }
+
+    private void initMetrics() {
+        acquireWaitTimer = Timer.builder("flowci.agent.acquire.wait")
+                .description("Time of job waiting for an idle agent")
+                .register(meterRegistry);
+
+        meterRegistry.gauge("flowci.agent.acquire.waiting", idleAgentIndex, IdleAgentIndex::numOfWaiters);
+        meterRegistry.gauge("flowci.agent.idle", idleAgentIndex, IdleAgentIndex::numOfIdle);
+        meterRegistry.gauge("flowci.agent.tokens", tokenRegistry, AgentTokenRegistry::size);
+        meterRegistry.gauge("flowci.agent.tokens.missed", tokenRegistry, AgentTokenRegistry::numOfMisses);
+    }
+
     private void initAgentsFromZk() {
         for (Agent agent : agentDao.findAll()) {
             String zkPath = getPath(agent);
@@ -465,44 +555,111 @@ public class AgentServiceImpl implements AgentService {
         return getPath(agent) + LockPathSuffix;
     }
 
+    /**
+     * Notify other server nodes by the deleted node, which is watched by RootNodeListener
+     */
+    private void markDeleted(Agent agent) {
+        try {
+            zk.create(CreateMode.PERSISTENT, getPath(agent) + DeletedPathSuffix, null);
+        } catch (ZookeeperException e) {
+            log.warn("Unable to create deleted node of agent {}: {}", agent.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Deleted nodes are removed after they have been kept for a reload interval
+     */
+    private void cleanDeletedNodes() {
+        String root = zkProperties.getAgentRoot();
+        long expiredAt = System.currentTimeMillis() - TokenReloadInterval;
+
+        try {
+            for (String child : zk.children(root)) {
+                if (!child.endsWith(DeletedPathSuffix)) {
+                    continue;
+                }
+
+                String path = root + Agent.PATH_SLASH + child;
+                Optional<Stat> stat = zk.stat(path);
+
+                if (stat.isPresent() && stat.get().getCtime() < expiredAt) {
+                    zk.delete(path, false);
+                }
+            }
+        } catch (ZookeeperException e) {
+            log.warn("Unable to clean deleted nodes of agent: {}", e.getMessage());
+        }
+    }
+
     private Status getStatusFromZk(Agent agent) {
         byte[] statusInBytes = zk.get(getPath(agent));
         return Status.fromBytes(statusInBytes);
     }
 
-    private Optional<Agent> acquire(String jobId, Selector selector) {
-        List<Agent> agents = find(Agent.Status.IDLE, selector.getLabel());
+    /**
+     * Offer waiter to index, lock and complete it if idle agent matched
+     */
+    private void offer(Waiter waiter) {
+        for (; ; ) {
+            Optional<Agent> idle = idleAgentIndex.offer(waiter);
 
-        if (agents.isEmpty()) {
-            return Optional.empty();
+            if (!idle.isPresent()) {
+                log.debug("Job {} is waiting for agent", waiter.getJobId());
+                eventManager.publish(new NoIdleAgentEvent(this, waiter.getJobId(), toSelector(waiter)));
+                return;
+            }
+
+            if (complete(waiter, idle.get())) {
+                return;
+            }
         }
+    }
 
-        Iterator<Agent> availableList = agents.iterator();
+    /**
+     * Offer idle agent to index, lock and complete the matched waiter
+     */
+    private void offer(Agent agent) {
+        Optional<Waiter> waiter = idleAgentIndex.offer(agent);
+        if (!waiter.isPresent()) {
+            return;
+        }
 
-        // try to lock it
-        while (availableList.hasNext()) {
-            Agent agent = availableList.next();
-            Optional<Agent> locked = tryLock(jobId, agent.getId());
+        if (complete(waiter.get(), agent)) {
+            return;
+        }
 
-            if (locked.isPresent()) {
-                return locked;
-            }
+        // agent not available anymore, put waiter back with original order
+        offer(waiter.get());
+    }
+
+    private boolean complete(Waiter waiter, Agent agent) {
+        Optional<Agent> locked;
 
-            availableList.remove();
+        try {
+            locked = tryLock(waiter.getJobId(), agent.getId());
+        } catch (NotFoundException e) {
+            locked = Optional.empty();
         }
 
-        return Optional.empty();
+        if (!locked.isPresent()) {
+            return false;
+        }
+
+        acquireWaitTimer.record(System.nanoTime() - waiter.getEnqueuedAt(), TimeUnit.NANOSECONDS);
+        waiter.getFuture().complete(locked);
+        return true;
+    }
+
+    private static Selector toSelector(Waiter waiter) {
+        Selector selector = new Selector();
+        selector.setLabel(waiter.getLabels());
+        return selector;
     }
 
     //====================================================================
     //        %% Inner classes
     //====================================================================
 
-    private static class AcquireLock {
-
-        private boolean stop = false;
-    }
-
     private class RootNodeListener implements PathChildrenCacheListener {
 
         private final Set<Type> ChildOperations = ImmutableSet.of(
@@ -529,6 +686,17 @@ public class AgentServiceImpl implements AgentService {
                 return;
             }
 
+            // agent deleted from any server node
+            if (path.endsWith(DeletedPathSuffix)) {
+                if (event.getType() == Type.CHILD_ADDED) {
+                    String agentId = getAgentIdFromPath(path.substring(0, path.length() - DeletedPathSuffix.length()));
+                    idleAgentIndex.removeIdle(agentId);
+                    tokenRegistry.reload(AgentServiceImpl.this::loadTokens);
+                    log.debug("Agent '{}' deleted, tokens reloaded", agentId);
+                }
+                return;
+            }
+
             String agentId = getAgentIdFromPath(path);
             Agent agent = get(agentId);
 
@@ -20,6 +20,7 @@ package com.flowci.core.api;
 import com.flowci.core.api.domain.AddStatsItem;
 import com.flowci.core.api.domain.CreateJobArtifact;
 import com.flowci.core.api.domain.CreateJobReport;
+import com.flowci.core.api.domain.LinkJobArtifact;
 import com.flowci.core.api.service.OpenRestService;
 import com.flowci.core.config.domain.Config;
 import com.flowci.core.flow.domain.StatsCounter;
@@ -111,4 +112,14 @@ public class OpenRestController {
                                   @RequestPart("file") MultipartFile file) {
         openRestService.saveJobArtifact(name, number, meta, file);
     }
+
+    /**
+     * Returns true if artifact created from existing content, otherwise upload is required
+     */
+    @PostMapping("/flow/{name}/job/{number}/artifact/link")
+    public boolean linkJobArtifact(@PathVariable String name,
+                                   @PathVariable long number,
+                                   @Validated @RequestBody LinkJobArtifact meta) {
+        return openRestService.linkJobArtifact(name, number, meta);
+    }
 }
@@ -30,4 +30,9 @@ public class CreateJobArtifact {
 
     @NotEmpty
     private String md5;
+
+    /**
+     * Optional, verified with uploaded content if present
+     */
+    private String sha256;
 }
@@ -19,6 +19,7 @@ package com.flowci.core.api.service;
 
 import com.flowci.core.api.domain.CreateJobArtifact;
 import com.flowci.core.api.domain.CreateJobReport;
+import com.flowci.core.api.domain.LinkJobArtifact;
 import com.flowci.core.config.domain.Config;
 import com.flowci.core.secret.domain.Secret;
 import com.flowci.core.flow.domain.StatsCounter;
@@ -65,6 +66,13 @@ public interface OpenRestService {
      */
     void saveJobArtifact(String flowName, long buildNumber, CreateJobArtifact meta, MultipartFile file);
 
+    /**
+     * Create job artifact if content already uploaded
+     *
+     * @return false if content not existed and should be uploaded
+     */
+    boolean linkJobArtifact(String flowName, long buildNumber, LinkJobArtifact meta);
+
     /**
      * Add env vars to job context
      */
@@ -19,6 +19,7 @@ package com.flowci.core.api.service;
 
 import com.flowci.core.api.domain.CreateJobArtifact;
 import com.flowci.core.api.domain.CreateJobReport;
+import com.flowci.core.api.domain.LinkJobArtifact;
 import com.flowci.core.common.helper.DateHelper;
 import com.flowci.core.secret.domain.AndroidSign;
 import com.flowci.core.config.domain.Config;
@@ -130,7 +131,13 @@ public class OpenRestServiceImpl implements OpenRestService {
     @Override
     public void saveJobArtifact(String flowName, long buildNumber, CreateJobArtifact meta, MultipartFile file) {
         Job job = getJob(flowName, buildNumber);
-        artifactService.save(job, meta.getSrcDir(), meta.getMd5(), file);
+        artifactService.save(job, meta.getSrcDir(), meta.getMd5(), meta.getSha256(), file);
+    }
+
+    @Override
+    public boolean linkJobArtifact(String flowName, long buildNumber, LinkJobArtifact meta) {
+        Job job = getJob(flowName, buildNumber);
+        return artifactService.link(job, meta.getSrcDir(), meta.getMd5(), meta.getSha256(), meta.getFileName());
     }
 
     @Override
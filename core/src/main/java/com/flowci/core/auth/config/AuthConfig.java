@@ -19,6 +19,7 @@ package com.flowci.core.auth.config;
 import com.flowci.core.agent.domain.AgentAction;
 import com.flowci.core.agent.domain.AgentHostAction;
 import com.flowci.core.auth.domain.PermissionMap;
+import com.flowci.core.auth.domain.VerifiedToken;
 import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.config.domain.ConfigAction;
 import com.flowci.core.secret.domain.SecretAction;
@@ -27,6 +28,7 @@ import com.flowci.core.job.domain.JobAction;
 import com.flowci.core.user.domain.User;
 import com.flowci.core.user.domain.UserAction;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.caffeine.CaffeineCache;
@@ -47,6 +49,8 @@ public class AuthConfig {
 
     private static final long MaxCacheSize = 500;
 
+    private static final long MaxTokenCacheSize = 10000;
+
     @Autowired
     private AppProperties.Auth authProperties;
 
@@ -68,6 +72,33 @@ public class AuthConfig {
                         .build());
     }
 
+    /**
+     * Verified tokens by sha256 of token, each expires at the 'exp' of token
+     */
+    @Bean
+    public com.github.benmanes.caffeine.cache.Cache<String, VerifiedToken> verifiedTokenCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(MaxTokenCacheSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        long millis = value.getExpireAt() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     @Bean
     public PermissionMap actionMap() {
         PermissionMap permissionMap = new PermissionMap();
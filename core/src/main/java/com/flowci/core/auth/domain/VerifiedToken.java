@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.auth.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Token that has been verified, cached by token hash until it expired
+ *
+ * @author yang
+ */
+@Getter
+@AllArgsConstructor
+public class VerifiedToken {
+
+    private final String email;
+
+    /**
+     * Timestamp in millis from jwt 'exp'
+     */
+    private final long expireAt;
+}
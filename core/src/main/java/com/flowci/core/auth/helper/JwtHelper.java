@@ -26,9 +26,13 @@ import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.flowci.core.user.domain.User;
 import com.flowci.util.StringHelper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 import java.time.Instant;
 import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author yang
@@ -37,6 +41,12 @@ public class JwtHelper {
 
     private static final String issuer = "flow.ci";
 
+    // key as signing secret of user, verifier is thread safe
+    private static final Cache<String, JWTVerifier> Verifiers = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
     /**
      * Create jwt token, user email as JWT id
      */
@@ -65,10 +75,23 @@ public class JwtHelper {
         }
     }
 
+    /**
+     * Expired at of token, or empty if token cannot be decoded
+     */
+    public static Optional<Date> expiresAt(String token) {
+        try {
+            return Optional.ofNullable(JWT.decode(token).getExpiresAt());
+        } catch (JWTDecodeException e) {
+            return Optional.empty();
+        }
+    }
+
     public static boolean verify(String token, User user, boolean checkExpire) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(user.getPasswordOnMd5());
-            JWTVerifier verifier = JWT.require(algorithm).withIssuer(issuer).build();
+            JWTVerifier verifier = Verifiers.get(user.getPasswordOnMd5(), secret -> {
+                Algorithm algorithm = Algorithm.HMAC256(secret);
+                return JWT.require(algorithm).withIssuer(issuer).build();
+            });
 
             verifier.verify(token);
             return true;
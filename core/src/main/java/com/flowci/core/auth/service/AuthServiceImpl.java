@@ -20,18 +20,23 @@ package com.flowci.core.auth.service;
 import com.flowci.core.auth.annotation.Action;
 import com.flowci.core.auth.domain.PermissionMap;
 import com.flowci.core.auth.domain.Tokens;
+import com.flowci.core.auth.domain.VerifiedToken;
 import com.flowci.core.auth.helper.JwtHelper;
 import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.manager.SessionManager;
 import com.flowci.core.user.domain.User;
+import com.flowci.core.user.event.UserDeletedEvent;
+import com.flowci.core.user.event.UserPasswordChangedEvent;
 import com.flowci.core.user.service.UserService;
 import com.flowci.exception.AuthenticationException;
 import com.flowci.util.HashingHelper;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.util.Date;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -54,6 +59,9 @@ public class AuthServiceImpl implements AuthService {
     @Autowired
     private Cache refreshTokenCache;
 
+    @Autowired
+    private com.github.benmanes.caffeine.cache.Cache<String, VerifiedToken> verifiedTokenCache;
+
     @Autowired
     private PermissionMap permissionMap;
 
@@ -87,6 +95,7 @@ public class AuthServiceImpl implements AuthService {
         User user = sessionManager.remove();
         onlineUsersCache.evict(user.getEmail());
         refreshTokenCache.evict(user.getEmail());
+        revoke(user.getEmail());
     }
 
     @Override
@@ -139,6 +148,20 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public Optional<User> get(String token) {
+        String key = HashingHelper.sha256(token);
+
+        // verified token of online user
+        VerifiedToken verified = verifiedTokenCache.getIfPresent(key);
+        if (Objects.nonNull(verified)) {
+            User user = onlineUsersCache.get(verified.getEmail(), User.class);
+            if (Objects.nonNull(user)) {
+                return Optional.of(user);
+            }
+
+            verifiedTokenCache.invalidate(key);
+            return Optional.empty();
+        }
+
         String email = JwtHelper.decode(token);
 
         User user = onlineUsersCache.get(email, User.class);
@@ -148,9 +171,31 @@ public class AuthServiceImpl implements AuthService {
 
         boolean verify = JwtHelper.verify(token, user, true);
         if (verify) {
+            Optional<Date> expiresAt = JwtHelper.expiresAt(token);
+            expiresAt.ifPresent(date -> verifiedTokenCache.put(key, new VerifiedToken(email, date.getTime())));
             return Optional.of(user);
         }
 
         return Optional.empty();
     }
+
+    @EventListener
+    public void onPasswordChanged(UserPasswordChangedEvent event) {
+        revoke(event.getUser().getEmail());
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        String email = event.getUser().getEmail();
+        onlineUsersCache.evict(email);
+        refreshTokenCache.evict(email);
+        revoke(email);
+    }
+
+    /**
+     * Remove verified tokens of user, which are verified again on next request
+     */
+    private void revoke(String email) {
+        verifiedTokenCache.asMap().values().removeIf(token -> Objects.equals(token.getEmail(), email));
+    }
 }
@@ -16,9 +16,7 @@
 
 package com.flowci.core.common.config;
 
-import java.net.URI;
-import java.net.URL;
-import java.nio.file.Path;
+import com.flowci.store.MinioFileManager;
 import lombok.Data;
 import org.hibernate.validator.constraints.Length;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -29,6 +27,9 @@ import org.springframework.validation.annotation.Validated;
 
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
 
 /**
  * @author yang
@@ -78,6 +79,18 @@ public class AppProperties {
         return new Job();
     }
 
+    @Bean("agentProperties")
+    @ConfigurationProperties(prefix = "app.agent")
+    public Agent agent() {
+        return new Agent();
+    }
+
+    @Bean("webhookProperties")
+    @ConfigurationProperties(prefix = "app.webhook")
+    public Webhook webhook() {
+        return new Webhook();
+    }
+
     @Bean("pluginProperties")
     @ConfigurationProperties(prefix = "app.plugin")
     public Plugin plugin() {
@@ -105,13 +118,87 @@ public class AppProperties {
     @Data
     public static class Flow {
 
+        public enum CronCatchUp {
+
+            /**
+             * Skip fire times missed while no server node was leader
+             */
+            SKIP,
+
+            /**
+             * Fire once for all missed fire times
+             */
+            ONCE
+        }
+
         private String templatesUrl;
+
+        private CronCatchUp cronCatchUp = CronCatchUp.ONCE;
+
+        // max seconds delayed from cron fire time, spread by flow to avoid firing all flows at same second
+        private int cronJitter = 5;
     }
 
     @Data
     public static class Job {
 
+        public enum LockMode {
+
+            /**
+             * Lock job in process, for single server node
+             */
+            LOCAL,
+
+            /**
+             * Lock job by zookeeper lease, for clustered server nodes
+             */
+            ZOOKEEPER
+        }
+
         private int retryWaitingSeconds;
+
+        private LockMode lockMode = LockMode.ZOOKEEPER;
+
+        // max bytes of live log kept for each step
+        private int liveLogSize = 4 * 1024 * 1024;
+
+        // interval in millis to push buffered live log to web socket
+        private long liveLogPushInterval = 200;
+
+        // seconds after step timeout that job is timeout by server, if agent didn't report
+        private int stepTimeoutGrace = 60;
+
+        // num of jobs purged in one batch of retention
+        private int retentionChunkSize = 100;
+
+        // max num of jobs purged per second by retention
+        private double retentionRate = 50;
+    }
+
+    @Data
+    public static class Agent {
+
+        // stop idle agent container from host after seconds, if no job waiting for it
+        private int idleTtl = 600;
+
+        // start agents for jobs expected to arrive within seconds
+        private int prewarmWindow = 60;
+
+        // started agent counted as available until it's online or seconds elapsed
+        private int startTimeout = 60;
+    }
+
+    @Data
+    public static class Webhook {
+
+        // webhook will be rejected if num of pending webhooks over
+        private int maxPending = 10000;
+
+        // pushes to the same branch within millis are coalesced to the latest one
+        private long coalesceWindow = 3000;
+
+        // num of webhooks processed in parallel on each server node
+        private int concurrency = 4;
     }
 
     @Data
@@ -154,6 +241,16 @@ public class AppProperties {
         private String jobDlQueue; // job dead letter queue
 
         private String jobDlExchange; // job dead letter exchange
+
+        private int publishChannels = 4; // max channels for publishing of each operations
+
+        private int callbackConcurrency = 4; // consumers of callback queue
+
+        private int jobConcurrency = 1; // consumers of each flow job queue
+
+        private int jobPrefetch = 10; // unacked jobs of each consumer, which are waiting for agent
+
+        private int shellLogConcurrency = 1; // consumers of shell log queue, log may out of order if > 1
     }
 
     @Data
@@ -180,5 +277,8 @@ public class AppProperties {
         private String key;
 
         private String secret;
+
+        // data of unknown size smaller than it will be uploaded from memory, otherwise spooled to temp file
+        private long spoolThreshold = MinioFileManager.DefaultSpoolThreshold;
     }
 }
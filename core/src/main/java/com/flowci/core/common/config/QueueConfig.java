@@ -64,7 +64,7 @@ public class QueueConfig {
     @Bean("callbackQueueManager")
     public QueueOperations callbackQueueManager(Connection rabbitConnection) throws IOException {
         String queue = rabbitProperties.getCallbackQueue();
-        QueueOperations manager = new QueueOperations(rabbitConnection, 10, queue);
+        QueueOperations manager = new QueueOperations(rabbitConnection, 10, rabbitProperties.getPublishChannels(), queue);
         manager.declare(true);
         return manager;
     }
@@ -83,7 +83,7 @@ public class QueueConfig {
     public RabbitOperations logQueueManager(Connection rabbitConnection,
                                             String shellLogQueue,
                                             String ttyLogQueue) throws IOException {
-        RabbitOperations manager = new RabbitOperations(rabbitConnection, 10);
+        RabbitOperations manager = new RabbitOperations(rabbitConnection, 10, rabbitProperties.getPublishChannels());
         manager.declareTemp(shellLogQueue);
         manager.declareExchangeAndBind(
                 rabbitProperties.getShellLogEx(),
@@ -104,7 +104,7 @@ public class QueueConfig {
 
     @Bean("jobsQueueManager")
     public RabbitOperations jobsQueueManager(Connection rabbitConnection) throws IOException {
-        RabbitOperations manager = new RabbitOperations(rabbitConnection, 1);
+        RabbitOperations manager = new RabbitOperations(rabbitConnection, rabbitProperties.getJobPrefetch(), rabbitProperties.getPublishChannels());
 
         // setup dead letter queue
         String queue = rabbitProperties.getJobDlQueue();
@@ -119,6 +119,6 @@ public class QueueConfig {
 
     @Bean("agentQueueManager")
     public RabbitOperations agentQueueManager(Connection rabbitConnection) throws IOException {
-        return new RabbitOperations(rabbitConnection, 1);
+        return new RabbitOperations(rabbitConnection, 1, rabbitProperties.getPublishChannels());
     }
 }
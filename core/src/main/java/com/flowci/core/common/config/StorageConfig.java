@@ -52,7 +52,7 @@ public class StorageConfig {
     @Bean("fileManager")
     @ConditionalOnProperty(name = "app.minio.enabled", havingValue = "true")
     public FileManager minioFileManager(MinioClient client) {
-        return new MinioFileManager(client, minioProperties.getBucket());
+        return new MinioFileManager(client, minioProperties.getBucket(), minioProperties.getSpoolThreshold());
     }
 
     @Bean
@@ -96,6 +96,32 @@ public class GitClient {
         }
     }
 
+    /**
+     * Fetch all branches into bare repo, the repo will be created if not existed.
+     * Objects already in the repo will not be fetched again, and deleted branches are removed
+     */
+    public void fetch(Path bareDir) throws Exception {
+        if (!Files.exists(bareDir)) {
+            try (Git ignored = Git.init().setBare(true).setDirectory(bareDir.toFile()).call()) {
+
+            }
+        }
+
+        try (Git git = Git.open(bareDir.toFile())) {
+            FetchCommand fetchCommand = git.fetch()
+                    .setRemote(repoUrl)
+                    .setRefSpecs(new RefSpec("+" + RefPrefix + "*:" + RefPrefix + "*"))
+                    .setRemoveDeletedRefs(true)
+                    .setTagOpt(TagOpt.NO_TAGS)
+                    .setTimeout(timeoutInSecond)
+                    .setProgressMonitor(new GitProgressMonitor(repoUrl, bareDir.toFile()));
+
+            setupSecret(fetchCommand).call();
+        } catch (GitAPIException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
     private TransportCommand<?, ?> setupSecret(TransportCommand<?, ?> command) throws Exception {
         if (Objects.isNull(secret)) {
             return command;
@@ -0,0 +1,199 @@
+package com.flowci.core.common.git;
+
+import com.flowci.domain.SimpleSecret;
+import com.flowci.util.HashingHelper;
+import com.flowci.util.StringHelper;
+import lombok.extern.log4j.Log4j2;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Bare mirror of git repo for each repo url, to read file from commit without clone and checkout
+ * - branches are fetched incrementally into the mirror, fetch of the same repo runs one at a time
+ * - requests while fetching are merged to one fetch, which starts after the running one finished
+ * - fetch is skipped if commit id is given and it's already in the mirror
+ *
+ * @author yang
+ */
+@Log4j2
+public class GitRepoCache {
+
+    private static final String RefPrefix = "refs/heads/";
+
+    private final Path repoDir;
+
+    private final Path tmpDir;
+
+    // key as repo url
+    private final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+
+    public GitRepoCache(Path repoDir, Path tmpDir) {
+        this.repoDir = repoDir;
+        this.tmpDir = tmpDir;
+    }
+
+    public boolean exist(String url) {
+        return Files.exists(getMirror(url).dir);
+    }
+
+    /**
+     * Fetch branches into mirror, or wait for the fetch requested by others
+     */
+    public void fetch(String url, SimpleSecret secret) throws IOException {
+        Mirror mirror = getMirror(url);
+        CompletableFuture<Void> future;
+        boolean isOwner = false;
+
+        synchronized (mirror) {
+            if (mirror.next == null) {
+                mirror.next = new CompletableFuture<>();
+                isOwner = true;
+            }
+            future = mirror.next;
+        }
+
+        if (isOwner) {
+            mirror.lock.lock();
+            try {
+                // requests from now on wait for another fetch
+                synchronized (mirror) {
+                    mirror.next = null;
+                }
+
+                new GitClient(url, tmpDir, secret).fetch(mirror.dir);
+                log.debug("Git repo {} fetched into {}", url, mirror.dir);
+                future.complete(null);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            } finally {
+                mirror.lock.unlock();
+            }
+        }
+
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            throw new IOException(e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Branches in the mirror
+     */
+    public List<String> branches(String url) throws IOException {
+        try (Repository repo = open(url)) {
+            List<String> branches = new LinkedList<>();
+            for (Ref ref : repo.getRefDatabase().getRefsByPrefix(RefPrefix)) {
+                branches.add(ref.getName().substring(RefPrefix.length()));
+            }
+            return branches;
+        }
+    }
+
+    /**
+     * Read file from root dir of commit, or the latest commit of branch if commit id not given.
+     * Fetch branches if commit not found in mirror
+     *
+     * @param filter file name filter, the first matched file in name order will be read
+     * @return content of file, or empty if not found
+     */
+    public Optional<byte[]> read(String url, SimpleSecret secret, String branch, String commitId,
+                                 Predicate<String> filter) throws IOException {
+        if (!hasCommit(url, commitId)) {
+            fetch(url, secret);
+        }
+
+        try (Repository repo = open(url)) {
+            ObjectId id = hasCommit(repo, commitId) ? ObjectId.fromString(commitId) : null;
+            if (id == null) {
+                id = repo.resolve(RefPrefix + branch);
+            }
+
+            if (id == null) {
+                throw new IOException("Branch " + branch + " not found");
+            }
+
+            try (RevWalk walk = new RevWalk(repo)) {
+                RevCommit commit = walk.parseCommit(id);
+
+                try (TreeWalk treeWalk = new TreeWalk(repo)) {
+                    treeWalk.addTree(commit.getTree());
+                    treeWalk.setRecursive(false);
+
+                    while (treeWalk.next()) {
+                        if (treeWalk.isSubtree() || !filter.test(treeWalk.getNameString())) {
+                            continue;
+                        }
+
+                        ObjectLoader loader = repo.open(treeWalk.getObjectId(0), Constants.OBJ_BLOB);
+                        return Optional.of(loader.getBytes());
+                    }
+                }
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private boolean hasCommit(String url, String commitId) {
+        if (!StringHelper.hasValue(commitId) || !exist(url)) {
+            return false;
+        }
+
+        try (Repository repo = open(url)) {
+            return hasCommit(repo, commitId);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasCommit(Repository repo, String commitId) {
+        if (!StringHelper.hasValue(commitId) || !ObjectId.isId(commitId)) {
+            return false;
+        }
+        return repo.hasObject(ObjectId.fromString(commitId));
+    }
+
+    private Repository open(String url) throws IOException {
+        return new FileRepositoryBuilder()
+                .setGitDir(getMirror(url).dir.toFile())
+                .setMustExist(true)
+                .setBare()
+                .build();
+    }
+
+    private Mirror getMirror(String url) {
+        return mirrors.computeIfAbsent(url, key -> {
+            Path dir = Paths.get(repoDir.toString(), HashingHelper.sha256(key) + ".git");
+            return new Mirror(dir);
+        });
+    }
+
+    private static class Mirror {
+
+        private final Path dir;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // fetch not started yet, shared by requests
+        private CompletableFuture<Void> next;
+
+        Mirror(Path dir) {
+            this.dir = dir;
+        }
+    }
+}
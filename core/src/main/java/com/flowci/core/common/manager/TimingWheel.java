@@ -0,0 +1,221 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.common.manager;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel to hold large num of keyed timeouts with single thread
+ * - schedule and cancel by key in O(1), schedule again with same key replaces the previous one
+ * - each bucket holds timeouts of ticks with same index, timeout fires when its tick passed
+ * - expired keys are handed to the executor, so the consumer should not block the ticker
+ * <p>
+ * The wheel can be driven by its own ticker thread from start(), or by advance(now) for simulated clock
+ *
+ * @author yang
+ */
+@Log4j2
+public class TimingWheel<K> implements AutoCloseable {
+
+    private final long tickInMillis;
+
+    private final int mask;
+
+    private final List<Map<K, Timeout<K>>> buckets;
+
+    private final Map<K, Timeout<K>> timeouts = new HashMap<>();
+
+    private final Executor executor;
+
+    private final Consumer<K> consumer;
+
+    // last tick that has been processed
+    private long processed;
+
+    private volatile Thread ticker;
+
+    /**
+     * @param tickInMillis tick duration, timeouts are fired in accuracy of it
+     * @param wheelSize    num of buckets, round up to power of two
+     * @param startAt      timestamp in millis of the wheel start
+     * @param executor     executor to run consumer for expired key
+     * @param consumer     consume expired key
+     */
+    public TimingWheel(long tickInMillis, int wheelSize, long startAt, Executor executor, Consumer<K> consumer) {
+        if (tickInMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+
+        this.tickInMillis = tickInMillis;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        this.executor = executor;
+        this.consumer = consumer;
+        this.processed = startAt / tickInMillis;
+
+        for (int i = 0; i < size; i++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Schedule key to be expired at deadline, key expired on next tick if deadline is passed
+     */
+    public synchronized void schedule(K key, long deadline) {
+        cancel(key);
+
+        long tick = Math.max((deadline + tickInMillis - 1) / tickInMillis, processed + 1);
+        Timeout<K> timeout = new Timeout<>(key, deadline, tick);
+
+        timeouts.put(key, timeout);
+        buckets.get(index(tick)).put(key, timeout);
+    }
+
+    /**
+     * @return true if key was scheduled
+     */
+    public synchronized boolean cancel(K key) {
+        Timeout<K> timeout = timeouts.remove(key);
+        if (timeout == null) {
+            return false;
+        }
+
+        buckets.get(index(timeout.tick)).remove(key);
+        return true;
+    }
+
+    /**
+     * Deadline of key, or empty if not scheduled
+     */
+    public synchronized OptionalLong deadline(K key) {
+        Timeout<K> timeout = timeouts.get(key);
+        return timeout == null ? OptionalLong.empty() : OptionalLong.of(timeout.deadline);
+    }
+
+    public synchronized int size() {
+        return timeouts.size();
+    }
+
+    public synchronized void clear() {
+        timeouts.clear();
+        buckets.forEach(Map::clear);
+    }
+
+    /**
+     * Process ticks until now, expired keys will be handed to executor
+     *
+     * @return num of expired keys
+     */
+    public int advance(long now) {
+        List<K> expired = new LinkedList<>();
+
+        synchronized (this) {
+            long current = now / tickInMillis;
+            if (current <= processed) {
+                return 0;
+            }
+
+            // all buckets visited once if ticks over the wheel size
+            long last = Math.min(current, processed + buckets.size());
+
+            for (long tick = processed + 1; tick <= last; tick++) {
+                Iterator<Timeout<K>> iter = buckets.get(index(tick)).values().iterator();
+
+                while (iter.hasNext()) {
+                    Timeout<K> timeout = iter.next();
+                    if (timeout.tick > current) {
+                        continue;
+                    }
+
+                    iter.remove();
+                    timeouts.remove(timeout.key);
+                    expired.add(timeout.key);
+                }
+            }
+
+            processed = current;
+        }
+
+        for (K key : expired) {
+            executor.execute(() -> consumer.accept(key));
+        }
+
+        return expired.size();
+    }
+
+    /**
+     * Start ticker thread to advance the wheel by system clock
+     */
+    public synchronized void start(String name) {
+        if (ticker != null) {
+            return;
+        }
+
+        ticker = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    long now = System.currentTimeMillis();
+                    Thread.sleep(tickInMillis - now % tickInMillis);
+                    advance(System.currentTimeMillis());
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("Unable to advance timing wheel {}: {}", name, e.getMessage());
+                }
+            }
+        }, name);
+
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker = null;
+        }
+    }
+
+    private int index(long tick) {
+        return (int) (tick & mask);
+    }
+
+    private static class Timeout<K> {
+
+        private final K key;
+
+        private final long deadline;
+
+        private final long tick;
+
+        Timeout(K key, long deadline, long tick) {
+            this.key = key;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+    }
+}
@@ -17,6 +17,11 @@ public class QueueOperations extends RabbitOperations {
         this.queue = queue;
     }
 
+    public QueueOperations(Connection conn, int prefetch, int publishChannels, String queue) throws IOException {
+        super(conn, prefetch, publishChannels);
+        this.queue = queue;
+    }
+
     public void declare(boolean durable) throws IOException {
         this.getChannel().queueDeclare(queue, durable, false, false, null);
     }
@@ -29,6 +34,10 @@ public class QueueOperations extends RabbitOperations {
         super.startConsumer(queue, autoAck, onMessage);
     }
 
+    public void startConsumer(boolean autoAck, int concurrency, OnMessage onMessage) throws IOException {
+        super.startConsumer(queue, autoAck, concurrency, onMessage);
+    }
+
     public void purge() {
         super.purge(queue);
     }
@@ -20,30 +20,70 @@ package com.flowci.core.common.rabbit;
 import com.flowci.core.common.config.QueueConfig;
 import com.flowci.util.StringHelper;
 import com.rabbitmq.client.*;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Rabbit operations on a shared connection
+ * - channel: for declare, delete and purge queues
+ * - publishers: pool of channels in confirm mode, a channel is only used by one thread at a time,
+ * the confirm is handled async, and the nacked message will be published again once
+ * - consumers: each consumer of queue has its own channel, so deliveries of queue can be handled concurrently
+ * <p>
+ * Published, consumed and nacked messages are counted for each queue, and exposed by micrometer
+ */
 @Log4j2
-@Getter
-public class RabbitOperations implements AutoCloseable {
+public class RabbitOperations implements AutoCloseable, MeterBinder {
+
+    private static final int DefaultPublishChannels = 4;
+
+    private static final long BorrowTimeout = 10; // seconds
 
+    private static final long CloseTimeout = 5; // seconds
+
+    @Getter
     private final Connection conn;
 
+    @Getter
     private final Channel channel;
 
-    // key as queue name, value as consumer tag
-    private final ConcurrentHashMap<String, String> consumers = new ConcurrentHashMap<>();
+    private final int prefetch;
+
+    private final int maxPublishers;
+
+    private final AtomicInteger numOfPublishers = new AtomicInteger(0);
+
+    private final BlockingQueue<Publisher> idlePublishers;
+
+    // key as queue name, value as consumers of queue
+    private final ConcurrentHashMap<String, List<QueueConsumer>> consumers = new ConcurrentHashMap<>();
+
+    // key as queue name or routing key
+    private final ConcurrentHashMap<String, QueueStats> stats = new ConcurrentHashMap<>();
+
+    private MeterRegistry registry;
 
     public RabbitOperations(Connection conn, int prefetch) throws IOException {
+        this(conn, prefetch, DefaultPublishChannels);
+    }
+
+    public RabbitOperations(Connection conn, int prefetch, int publishChannels) throws IOException {
         this.conn = conn;
         this.channel = conn.createChannel();
-        this.channel.basicQos(prefetch, false);
+        this.prefetch = prefetch;
+        this.maxPublishers = Math.max(publishChannels, 1);
+        this.idlePublishers = new ArrayBlockingQueue<>(this.maxPublishers);
     }
 
     public void declareExchangeAndBind(String exchange, BuiltinExchangeType type, String queue, String routingKey) throws IOException {
@@ -100,63 +140,95 @@ public class RabbitOperations implements AutoCloseable {
      * Send to routing key with default exchange
      */
     public boolean send(String routingKey, byte[] body) {
-        try {
-            this.channel.basicPublish(StringHelper.EMPTY, routingKey, null, body);
-            return true;
-        } catch (IOException e) {
-            return false;
-        }
+        return publish(new Message(routingKey, null, body, false));
     }
 
     /**
      * Send to routing key with default exchange and priority
      */
     public boolean send(String routingKey, byte[] body, Integer priority, int expireInSecond) {
-        try {
-            AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
-                    .priority(priority)
-                    .expiration(Integer.toString(expireInSecond * 1000))
-                    .build();
+        AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
+                .priority(priority)
+                .expiration(Integer.toString(expireInSecond * 1000))
+                .build();
 
-            this.channel.basicPublish(StringHelper.EMPTY, routingKey, props, body);
-            return true;
-        } catch (IOException e) {
-            return false;
-        }
+        return publish(new Message(routingKey, props, body, false));
     }
 
     public void startConsumer(String queue, boolean autoAck, OnMessage onMessage) throws IOException {
-        Consumer consumer = new DefaultConsumer(channel) {
-            @Override
-            public void handleDelivery(String consumerTag,
-                                       Envelope envelope,
-                                       AMQP.BasicProperties properties,
-                                       byte[] body) {
-
-                boolean isSendAck = onMessage.on(properties.getHeaders(), body, envelope);
-                if (isSendAck) {
-                    try {
-                        getChannel().basicAck(envelope.getDeliveryTag(), false);
-                    } catch (Exception e) {
-                        log.warn(e);
+        startConsumer(queue, autoAck, 1, onMessage);
+    }
+
+    /**
+     * Start consumers on queue, the previous consumers of queue will be removed
+     *
+     * @param concurrency num of consumers, each consumer has own channel with prefetch
+     */
+    public void startConsumer(String queue, boolean autoAck, int concurrency, OnMessage onMessage) throws IOException {
+        consume(queue, autoAck, concurrency, (headers, body, envelope, ack) -> {
+            if (onMessage.on(headers, body, envelope)) {
+                ack.run();
+            }
+        });
+    }
+
+    /**
+     * Start consumers on queue with manual ack, the message can be acked later from other threads,
+     * unacked messages of each consumer are limited by prefetch
+     */
+    public void startConsumer(String queue, int concurrency, OnDelivery onDelivery) throws IOException {
+        consume(queue, false, concurrency, onDelivery);
+    }
+
+    private void consume(String queue, boolean autoAck, int concurrency, OnDelivery onDelivery) throws IOException {
+        QueueStats queueStats = getStats(queue);
+        List<QueueConsumer> list = new ArrayList<>(concurrency);
+
+        try {
+            for (int i = 0; i < Math.max(concurrency, 1); i++) {
+                Channel ch = conn.createChannel();
+                ch.basicQos(prefetch, false);
+
+                Consumer consumer = new DefaultConsumer(ch) {
+                    @Override
+                    public void handleDelivery(String consumerTag,
+                                               Envelope envelope,
+                                               AMQP.BasicProperties properties,
+                                               byte[] body) {
+
+                        queueStats.consumed.increment();
+                        onDelivery.on(properties.getHeaders(), body, envelope, new Ack(getChannel(), envelope));
                     }
-                }
+                };
+
+                String tag = ch.basicConsume(queue, autoAck, consumer);
+                list.add(new QueueConsumer(ch, tag));
             }
-        };
+        } catch (IOException e) {
+            list.forEach(QueueConsumer::cancel);
+            throw e;
+        }
+
+        List<QueueConsumer> previous = consumers.put(queue, list);
+        if (previous != null) {
+            previous.forEach(QueueConsumer::cancel);
+        }
 
-        String tag = getChannel().basicConsume(queue, autoAck, consumer);
-        consumers.put(queue, tag);
-        log.info("[Consumer STARTED] queue {} with tag {}", queue, tag);
+        log.info("[Consumer STARTED] queue {} with {} consumers", queue, list.size());
     }
 
     public void removeConsumer(String queue) {
-        String consumerTag = consumers.remove(queue);
-        if (consumerTag != null) {
-            try {
-                getChannel().basicCancel(consumerTag);
-            } catch (IOException e) {
-                log.warn(e);
-            }
+        List<QueueConsumer> list = consumers.remove(queue);
+        if (list != null) {
+            list.forEach(QueueConsumer::cancel);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        synchronized (stats) {
+            this.registry = registry;
+            stats.forEach((queue, queueStats) -> queueStats.register(queue, registry));
         }
     }
 
@@ -167,16 +239,87 @@ public class RabbitOperations implements AutoCloseable {
      */
     @Override
     public void close() throws Exception {
-        consumers.forEach((s, consumerTag) -> {
-            try {
-                getChannel().basicCancel(consumerTag);
-            } catch (IOException ignore) {
+        consumers.values().forEach(list -> list.forEach(QueueConsumer::cancel));
+        consumers.clear();
+
+        Publisher publisher;
+        while ((publisher = idlePublishers.poll()) != null) {
+            publisher.close();
+        }
 
-            }
-        });
         channel.close();
     }
 
+    private boolean publish(Message message) {
+        QueueStats queueStats = getStats(message.routingKey);
+        Publisher publisher = null;
+
+        try {
+            publisher = borrow();
+            publisher.publish(message);
+            queueStats.published.increment();
+            return true;
+        } catch (IOException | InterruptedException | TimeoutException e) {
+            log.warn("Unable to publish message to {}: {}", message.routingKey, e.getMessage());
+            return false;
+        } finally {
+            if (publisher != null) {
+                giveBack(publisher);
+            }
+        }
+    }
+
+    private Publisher borrow() throws IOException, InterruptedException, TimeoutException {
+        Publisher publisher = idlePublishers.poll();
+        if (publisher != null) {
+            return publisher;
+        }
+
+        if (numOfPublishers.incrementAndGet() <= maxPublishers) {
+            try {
+                return new Publisher(conn.createChannel());
+            } catch (IOException e) {
+                numOfPublishers.decrementAndGet();
+                throw e;
+            }
+        }
+
+        numOfPublishers.decrementAndGet();
+        publisher = idlePublishers.poll(BorrowTimeout, TimeUnit.SECONDS);
+
+        if (publisher == null) {
+            throw new TimeoutException("no idle channel for publishing");
+        }
+
+        return publisher;
+    }
+
+    private void giveBack(Publisher publisher) {
+        if (publisher.channel.isOpen() && idlePublishers.offer(publisher)) {
+            return;
+        }
+
+        numOfPublishers.decrementAndGet();
+        publisher.close();
+    }
+
+    private QueueStats getStats(String queue) {
+        QueueStats queueStats = stats.get(queue);
+        if (queueStats != null) {
+            return queueStats;
+        }
+
+        synchronized (stats) {
+            return stats.computeIfAbsent(queue, key -> {
+                QueueStats created = new QueueStats();
+                if (registry != null) {
+                    created.register(key, registry);
+                }
+                return created;
+            });
+        }
+    }
+
     public interface OnMessage {
 
         /**
@@ -185,4 +328,168 @@ public class RabbitOperations implements AutoCloseable {
          */
         boolean on(Map<String, Object> headers, byte[] body, Envelope envelope);
     }
+
+    public interface OnDelivery {
+
+        /**
+         * Action on message
+         * @param ack to ack the message, only the first run sends ack
+         */
+        void on(Map<String, Object> headers, byte[] body, Envelope envelope, Runnable ack);
+    }
+
+    /**
+     * Ack on the consumer channel, ack a delivery twice will close the channel
+     */
+    private static class Ack implements Runnable {
+
+        private final Channel channel;
+
+        private final long deliveryTag;
+
+        private final AtomicBoolean sent = new AtomicBoolean(false);
+
+        Ack(Channel channel, Envelope envelope) {
+            this.channel = channel;
+            this.deliveryTag = envelope.getDeliveryTag();
+        }
+
+        @Override
+        public void run() {
+            if (!sent.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                channel.basicAck(deliveryTag, false);
+            } catch (Exception e) {
+                log.warn(e);
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Message {
+
+        private final String routingKey;
+
+        private final AMQP.BasicProperties props;
+
+        private final byte[] body;
+
+        private final boolean retried;
+    }
+
+    private static class QueueStats {
+
+        private final LongAdder published = new LongAdder();
+
+        private final LongAdder consumed = new LongAdder();
+
+        private final LongAdder nacked = new LongAdder();
+
+        void register(String queue, MeterRegistry registry) {
+            FunctionCounter.builder("flowci.rabbit.published", published, LongAdder::doubleValue)
+                    .tag("queue", queue)
+                    .register(registry);
+
+            FunctionCounter.builder("flowci.rabbit.consumed", consumed, LongAdder::doubleValue)
+                    .tag("queue", queue)
+                    .register(registry);
+
+            FunctionCounter.builder("flowci.rabbit.nacked", nacked, LongAdder::doubleValue)
+                    .tag("queue", queue)
+                    .register(registry);
+        }
+    }
+
+    @AllArgsConstructor
+    private static class QueueConsumer {
+
+        private final Channel channel;
+
+        private final String tag;
+
+        void cancel() {
+            try {
+                channel.basicCancel(tag);
+                channel.close();
+            } catch (IOException | TimeoutException | ShutdownSignalException e) {
+                log.warn("Unable to cancel consumer {}: {}", tag, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Channel in confirm mode, the message is kept until confirmed by broker
+     */
+    private class Publisher implements ConfirmListener {
+
+        private final Channel channel;
+
+        // key as publish sequence number
+        private final ConcurrentNavigableMap<Long, Message> unconfirmed = new ConcurrentSkipListMap<>();
+
+        Publisher(Channel channel) throws IOException {
+            this.channel = channel;
+            this.channel.confirmSelect();
+            this.channel.addConfirmListener(this);
+        }
+
+        void publish(Message message) throws IOException {
+            long seq = channel.getNextPublishSeqNo();
+            unconfirmed.put(seq, message);
+
+            try {
+                channel.basicPublish(StringHelper.EMPTY, message.routingKey, message.props, message.body);
+            } catch (IOException e) {
+                unconfirmed.remove(seq);
+                throw e;
+            }
+        }
+
+        @Override
+        public void handleAck(long deliveryTag, boolean multiple) {
+            confirmed(deliveryTag, multiple);
+        }
+
+        @Override
+        public void handleNack(long deliveryTag, boolean multiple) {
+            for (Message message : confirmed(deliveryTag, multiple)) {
+                getStats(message.routingKey).nacked.increment();
+
+                if (message.retried) {
+                    log.warn("Message to {} is nacked by broker", message.routingKey);
+                    continue;
+                }
+
+                // not to block the confirm thread when waiting for idle publisher
+                Message retry = new Message(message.routingKey, message.props, message.body, true);
+                ForkJoinPool.commonPool().execute(() -> RabbitOperations.this.publish(retry));
+            }
+        }
+
+        void close() {
+            try {
+                if (channel.isOpen()) {
+                    channel.waitForConfirms(TimeUnit.SECONDS.toMillis(CloseTimeout));
+                    channel.close();
+                }
+            } catch (IOException | InterruptedException | TimeoutException | ShutdownSignalException e) {
+                log.warn("Unable to close publish channel: {}", e.getMessage());
+            }
+        }
+
+        private Collection<Message> confirmed(long deliveryTag, boolean multiple) {
+            if (!multiple) {
+                Message message = unconfirmed.remove(deliveryTag);
+                return message == null ? Collections.emptyList() : Collections.singletonList(message);
+            }
+
+            ConcurrentNavigableMap<Long, Message> head = unconfirmed.headMap(deliveryTag, true);
+            List<Message> messages = new ArrayList<>(head.values());
+            head.clear();
+            return messages;
+        }
+    }
 }
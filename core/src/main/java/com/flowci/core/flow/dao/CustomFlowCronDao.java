@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.flow.dao;
+
+import com.flowci.core.flow.domain.FlowCron;
+
+import java.util.Date;
+
+public interface CustomFlowCronDao {
+
+    /**
+     * Create or update expression and next fire time, the next fire time is kept if expression not changed
+     *
+     * @return cron after updated
+     */
+    FlowCron upsert(String flowId, String expression, Date nextFireAt);
+
+    /**
+     * Move next fire time from the expected one
+     *
+     * @return false if cron was deleted or fired by others
+     */
+    boolean advance(String flowId, Date expected, Date nextFireAt, Date firedAt);
+}
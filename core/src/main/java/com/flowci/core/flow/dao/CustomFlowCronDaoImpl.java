@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.flow.dao;
+
+import com.flowci.core.flow.domain.FlowCron;
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class CustomFlowCronDaoImpl implements CustomFlowCronDao {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public FlowCron upsert(String flowId, String expression, Date nextFireAt) {
+        Date now = new Date();
+
+        // only create or change expression, keep persisted next fire time for catch up
+        FlowCron updated = operations.findAndModify(
+                query(where("_id").is(flowId).and("expression").ne(expression)),
+                new Update()
+                        .set("expression", expression)
+                        .set("nextFireAt", nextFireAt)
+                        .set("updatedAt", now),
+                options().returnNew(true),
+                FlowCron.class
+        );
+
+        if (updated != null) {
+            return updated;
+        }
+
+        return operations.findAndModify(
+                query(where("_id").is(flowId)),
+                new Update()
+                        .setOnInsert("expression", expression)
+                        .setOnInsert("nextFireAt", nextFireAt)
+                        .setOnInsert("updatedAt", now),
+                options().upsert(true).returnNew(true),
+                FlowCron.class
+        );
+    }
+
+    @Override
+    public boolean advance(String flowId, Date expected, Date nextFireAt, Date firedAt) {
+        Update update = new Update()
+                .set("nextFireAt", nextFireAt)
+                .set("updatedAt", new Date());
+
+        if (firedAt != null) {
+            update.set("lastFireAt", firedAt);
+        }
+
+        UpdateResult result = operations.updateFirst(
+                query(where("_id").is(flowId).and("nextFireAt").is(expected)),
+                update,
+                FlowCron.class
+        );
+
+        return result.getModifiedCount() > 0;
+    }
+}
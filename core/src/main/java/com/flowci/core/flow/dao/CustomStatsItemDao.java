@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.flow.dao;
+
+import com.flowci.core.flow.domain.StatsCounter;
+import com.flowci.core.flow.domain.StatsItem;
+
+import java.util.Collection;
+
+public interface CustomStatsItemDao {
+
+    /**
+     * Atomic increase counter and num of today by (flowId, day, type), item will be created if not existed
+     *
+     * @return item after increased
+     */
+    StatsItem increase(String flowId, int day, String type, StatsCounter counter, int num);
+
+    /**
+     * Set total item on items of days
+     */
+    void setTotal(String flowId, Collection<Integer> days, String type, StatsItem total);
+}
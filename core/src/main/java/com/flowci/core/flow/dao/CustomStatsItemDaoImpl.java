@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.flow.dao;
+
+import com.flowci.core.flow.domain.StatsCounter;
+import com.flowci.core.flow.domain.StatsItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class CustomStatsItemDaoImpl implements CustomStatsItemDao {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public StatsItem increase(String flowId, int day, String type, StatsCounter counter, int num) {
+        Query q = query(where("flowId").is(flowId).and("day").is(day).and("type").is(type));
+
+        // id from key, so concurrent upsert from other node will be failed by duplicate id instead of duplicate item
+        Update update = new Update()
+                .setOnInsert("_id", String.format("%s_%d_%s", flowId, day, type))
+                .inc("numOfToday", num);
+
+        for (Map.Entry<String, Float> entry : counter.entrySet()) {
+            update.inc("counter." + entry.getKey(), entry.getValue().doubleValue());
+        }
+
+        try {
+            return operations.findAndModify(q, update, options().upsert(true).returnNew(true), StatsItem.class);
+        } catch (DuplicateKeyException e) {
+            return operations.findAndModify(q, update, options().upsert(true).returnNew(true), StatsItem.class);
+        }
+    }
+
+    @Override
+    public void setTotal(String flowId, Collection<Integer> days, String type, StatsItem total) {
+        Query q = query(where("flowId").is(flowId).and("day").in(days).and("type").is(type));
+        Update update = new Update()
+                .set("total", total.getCounter())
+                .set("numOfTotal", total.getNumOfToday());
+
+        operations.updateMulti(q, update, StatsItem.class);
+    }
+}
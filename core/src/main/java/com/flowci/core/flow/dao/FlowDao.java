@@ -33,4 +33,6 @@ public interface FlowDao extends MongoRepository<Flow, String> {
     List<Flow> findAllByStatusAndCreatedBy(Status status, String createdBy);
 
     List<Flow> findAllByIdInAndStatus(Iterable<String> id, Status status);
+
+    List<Flow> findAllByRetainBuildsGreaterThanOrRetainDaysGreaterThan(int builds, int days);
 }
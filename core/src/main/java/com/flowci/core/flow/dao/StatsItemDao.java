@@ -29,7 +29,7 @@ import java.util.Optional;
  * @author yang
  */
 @Repository
-public interface StatsItemDao extends MongoRepository<StatsItem, String> {
+public interface StatsItemDao extends MongoRepository<StatsItem, String>, CustomStatsItemDao {
 
     @Query("{'flowId':?0, 'type': ?1, 'day' : {$gte : ?2, $lte : ?3}}")
     List<StatsItem> findByFlowIdAndTypeDayBetween(String flowId, String type, int dayGT, int dayLT, Sort sort);
@@ -77,6 +77,10 @@ public final class Flow extends Mongoable implements Pathable {
 
     private int stepTimeout = 900; // job step timeout in second;
 
+    private int retainBuilds; // num of latest jobs to keep, 0 to keep all
+
+    private int retainDays; // days of jobs to keep, 0 to keep all
+
     private String cron;
 
     // variables from yml
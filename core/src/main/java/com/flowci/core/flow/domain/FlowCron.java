@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.flow.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Persisted cron schedule of flow, the next fire time is advanced by the leader server node only
+ * if it's not changed since loaded, so the schedule is fired once even if two nodes think they are leader
+ *
+ * @author yang
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@Document(collection = "flow_cron")
+public class FlowCron {
+
+    @Id
+    private String flowId;
+
+    private String expression;
+
+    private Date nextFireAt;
+
+    private Date lastFireAt;
+
+    @Indexed(name = "index_flow_cron_updated_at")
+    private Date updatedAt;
+}
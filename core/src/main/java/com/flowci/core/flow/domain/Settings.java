@@ -26,6 +26,12 @@ public final class Settings {
 
     private String cron;
 
+    @Min(value = 0) // 0 to keep all jobs
+    private Integer retainBuilds;
+
+    @Min(value = 0) // 0 to keep all jobs
+    private Integer retainDays;
+
     public boolean hasCron() {
         return StringHelper.hasValue(cron);
     }
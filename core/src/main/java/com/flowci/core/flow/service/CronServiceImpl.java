@@ -18,11 +18,17 @@ package com.flowci.core.flow.service;
 
 import com.cronutils.model.CronType;
 import com.cronutils.model.definition.CronDefinitionBuilder;
+import com.cronutils.model.time.ExecutionTime;
 import com.cronutils.parser.CronParser;
 import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.helper.ThreadHelper;
 import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.common.manager.TimingWheel;
+import com.flowci.core.flow.dao.FlowCronDao;
+import com.flowci.core.flow.dao.FlowDao;
 import com.flowci.core.flow.dao.YmlDao;
 import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.flow.domain.FlowCron;
 import com.flowci.core.flow.domain.Yml;
 import com.flowci.core.flow.event.FlowInitEvent;
 import com.flowci.core.job.domain.Job.Trigger;
@@ -30,44 +36,90 @@ import com.flowci.core.job.event.CreateNewJobEvent;
 import com.flowci.zookeeper.ZookeeperClient;
 import com.flowci.zookeeper.ZookeeperException;
 import lombok.extern.log4j.Log4j2;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import java.util.Base64;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledFuture;
 
 /**
+ * Cron of flows fired by the leader server node only
+ * - the leader elected by zookeeper leader latch, loads all crons into a timing wheel
+ * - next fire time persisted in flow_cron, and advanced conditionally before fire,
+ * so a fire time will not be fired twice even if other node is still running as leader
+ * - fire times missed while no leader are fired once or skipped by app.flow.cron-catch-up
+ * - fire time delayed by jitter of flow, to spread flows with same cron expression
+ *
  * @author yang
  */
 @Log4j2
 @Service
 public class CronServiceImpl implements CronService {
 
+    private static final String LeaderNode = "leader";
+
+    private static final long TickInMillis = 1000;
+
+    private static final int WheelSize = 512;
+
+    // load crons changed by other server nodes, from updated time with overlap for clock skew
+    private static final long SyncOverlapInMillis = 60 * 1000;
+
+    // fire time missed within threshold is fired, even if catch-up policy is skip
+    private static final long MisfireThresholdInMillis = 60 * 1000;
+
     private final CronParser parser = new CronParser(CronDefinitionBuilder.instanceDefinitionFor(CronType.UNIX));
 
-    private final Map<String, ScheduledFuture<?>> scheduled = new ConcurrentHashMap<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // loaded crons if leader, key as flow id
+    private final Map<String, Schedule> schedules = new ConcurrentHashMap<>();
+
+    private final ThreadPoolTaskExecutor fireExecutor = ThreadHelper.createTaskExecutor(4, 4, 100000, "cron-fire-");
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(
+            TickInMillis, WheelSize, System.currentTimeMillis(), fireExecutor, this::fire);
+
+    private volatile boolean isLeader;
+
+    private long lastSyncAt;
+
+    private LeaderLatch latch;
 
     @Autowired
-    private TaskScheduler taskScheduler;
+    private FlowDao flowDao;
 
     @Autowired
     private YmlDao ymlDao;
 
+    @Autowired
+    private FlowCronDao flowCronDao;
+
     @Autowired
     private SpringEventManager eventManager;
 
     @Autowired
     private AppProperties.Zookeeper zkProperties;
 
+    @Autowired
+    private AppProperties.Flow flowProperties;
+
     @Autowired
     private ZookeeperClient zk;
 
@@ -76,13 +128,33 @@ public class CronServiceImpl implements CronService {
     //====================================================================
 
     @EventListener(ContextRefreshedEvent.class)
-    public void initZkRoot() {
+    public synchronized void initZkRoot() {
+        if (latch != null) {
+            return;
+        }
+
+        String root = zkProperties.getCronRoot();
+
         try {
-            String root = zkProperties.getCronRoot();
             zk.create(CreateMode.PERSISTENT, root, null);
         } catch (ZookeeperException ignore) {
 
         }
+
+        wheel.start("cron-wheel");
+
+        String id = ManagementFactory.getRuntimeMXBean().getName();
+        latch = zk.leaderLatch(ZKPaths.makePath(root, LeaderNode), id, new LeaderLatchListener() {
+            @Override
+            public void isLeader() {
+                onLeader();
+            }
+
+            @Override
+            public void notLeader() {
+                onFollower();
+            }
+        });
     }
 
     @EventListener(FlowInitEvent.class)
@@ -92,6 +164,40 @@ public class CronServiceImpl implements CronService {
         }
     }
 
+    /**
+     * Load crons changed by other server nodes
+     */
+    @Scheduled(fixedDelay = 10 * 1000)
+    public void sync() {
+        if (!isLeader) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Date from = new Date(lastSyncAt - SyncOverlapInMillis);
+
+        for (FlowCron cron : flowCronDao.findAllByUpdatedAtAfter(from)) {
+            Schedule current = schedules.get(cron.getFlowId());
+            if (current != null && current.isSame(cron)) {
+                continue;
+            }
+            load(cron, false);
+        }
+
+        lastSyncAt = start;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        wheel.close();
+
+        if (latch != null) {
+            latch.close();
+        }
+
+        fireExecutor.shutdown();
+    }
+
     //====================================================================
     //         Interface Methods
     //====================================================================
@@ -103,75 +209,152 @@ public class CronServiceImpl implements CronService {
 
     @Override
     public void set(Flow flow) {
-        cancel(flow);
-
         if (!flow.hasCron()) {
+            cancel(flow);
             return;
         }
 
-        // schedule next cron task
-        String expression = "0 " + flow.getCron();
-        ScheduledFuture<?> schedule = taskScheduler.schedule(new CronRunner(flow), new CronTrigger(expression));
-        scheduled.put(flow.getId(), schedule);
+        ExecutionTime executionTime = ExecutionTime.forCron(parser.parse(flow.getCron()));
+        Optional<Date> next = nextFireAt(flow.getId(), executionTime, System.currentTimeMillis());
+
+        if (!next.isPresent()) {
+            log.warn("Cron '{}' of flow {} will never be fired", flow.getCron(), flow.getName());
+            cancel(flow);
+            return;
+        }
+
+        FlowCron cron = flowCronDao.upsert(flow.getId(), flow.getCron(), next.get());
+        if (isLeader) {
+            load(cron, false);
+        }
     }
 
     @Override
     public void cancel(Flow flow) {
-        ScheduledFuture<?> future = scheduled.get(flow.getId());
-        if (future != null && !future.isCancelled()) {
-            future.cancel(true);
-            scheduled.remove(flow.getId());
+        flowCronDao.deleteById(flow.getId());
+        schedules.remove(flow.getId());
+        wheel.cancel(flow.getId());
+    }
+
+    //====================================================================
+    //        %% Private functions
+    //====================================================================
+
+    private synchronized void onLeader() {
+        log.info("Cron leadership acquired");
+
+        isLeader = true;
+        lastSyncAt = System.currentTimeMillis();
+
+        for (FlowCron cron : flowCronDao.findAll()) {
+            load(cron, true);
         }
+
+        log.info("{} crons loaded", schedules.size());
     }
 
-    private class CronRunner implements Runnable {
+    private synchronized void onFollower() {
+        log.info("Cron leadership lost");
 
-        private final Flow flow;
+        isLeader = false;
+        wheel.clear();
+        schedules.clear();
+    }
 
-        private final String path;
+    private void load(FlowCron cron, boolean catchUp) {
+        String flowId = cron.getFlowId();
+        Date nextFireAt = cron.getNextFireAt();
 
-        CronRunner(Flow flow) {
-            this.flow = flow;
-            this.path = getFlowCronPath();
+        ExecutionTime executionTime;
+        try {
+            executionTime = ExecutionTime.forCron(parser.parse(cron.getExpression()));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid cron '{}' of flow {}", cron.getExpression(), flowId);
+            return;
         }
 
-        @Override
-        public void run() {
-            if (lock()) {
-                Optional<Yml> yml = ymlDao.findById(flow.getId());
-                yml.ifPresent((obj) -> {
-                    log.info("Start flow '{}' from cron task", flow.getName());
-                    eventManager.publish(new CreateNewJobEvent(this, flow, obj.getRaw(), Trigger.SCHEDULER, null));
-                });
-                clean();
+        long now = System.currentTimeMillis();
+        boolean isMissed = nextFireAt.getTime() < now - MisfireThresholdInMillis;
+
+        if (catchUp && isMissed && flowProperties.getCronCatchUp() == AppProperties.Flow.CronCatchUp.SKIP) {
+            Optional<Date> next = nextFireAt(flowId, executionTime, now);
+            if (!next.isPresent() || !flowCronDao.advance(flowId, nextFireAt, next.get(), null)) {
+                return;
             }
+
+            log.info("Cron of flow {} skipped from {} to {}", flowId, nextFireAt, next.get());
+            nextFireAt = next.get();
         }
 
-        /**
-         * check zk and lock
-         */
-        private boolean lock() {
-            try {
-                zk.create(CreateMode.EPHEMERAL, path, null);
-                return true;
-            } catch (ZookeeperException e) {
-                log.warn("Unable to init cron : {}", e.getMessage());
-                return false;
-            }
+        schedules.put(flowId, new Schedule(cron.getExpression(), executionTime, nextFireAt));
+        wheel.schedule(flowId, nextFireAt.getTime());
+    }
+
+    private void fire(String flowId) {
+        Schedule schedule = schedules.get(flowId);
+        if (!isLeader || schedule == null) {
+            return;
         }
 
-        private void clean() {
-            try {
-                zk.delete(path, false);
-            } catch (ZookeeperException ignore) {
+        try {
+            long now = System.currentTimeMillis();
+            long from = Math.max(now, schedule.nextFireAt.getTime());
+            Optional<Date> next = nextFireAt(flowId, schedule.executionTime, from);
+
+            // deleted, changed or fired by others
+            if (!next.isPresent() || !flowCronDao.advance(flowId, schedule.nextFireAt, next.get(), new Date(now))) {
+                schedules.remove(flowId);
+                flowCronDao.findById(flowId).ifPresent(cron -> load(cron, false));
+                return;
+            }
+
+            schedules.put(flowId, new Schedule(schedule.expression, schedule.executionTime, next.get()));
+            wheel.schedule(flowId, next.get().getTime());
+
+            Optional<Flow> flow = flowDao.findById(flowId);
+            Optional<Yml> yml = ymlDao.findById(flowId);
 
+            if (flow.isPresent() && yml.isPresent()) {
+                log.info("Start flow '{}' from cron task", flow.get().getName());
+                eventManager.publish(new CreateNewJobEvent(this, flow.get(), yml.get().getRaw(), Trigger.SCHEDULER, null));
             }
+        } catch (RuntimeException e) {
+            log.warn("Unable to fire cron of flow {}: {}", flowId, e.getMessage());
+        }
+    }
+
+    /**
+     * Next fire time after the given timestamp, which is cron execution time plus jitter of flow
+     */
+    private Optional<Date> nextFireAt(String flowId, ExecutionTime executionTime, long after) {
+        long jitter = jitter(flowId);
+        ZonedDateTime from = ZonedDateTime.ofInstant(Instant.ofEpochMilli(after - jitter), zone);
+
+        return executionTime.nextExecution(from)
+                .map(time -> new Date(time.toInstant().toEpochMilli() + jitter));
+    }
+
+    private long jitter(String flowId) {
+        long max = flowProperties.getCronJitter() * 1000L;
+        return max > 0 ? Math.floorMod(flowId.hashCode(), max) : 0;
+    }
+
+    private static class Schedule {
+
+        private final String expression;
+
+        private final ExecutionTime executionTime;
+
+        private final Date nextFireAt;
+
+        Schedule(String expression, ExecutionTime executionTime, Date nextFireAt) {
+            this.expression = expression;
+            this.executionTime = executionTime;
+            this.nextFireAt = nextFireAt;
         }
 
-        private String getFlowCronPath() {
-            String expression = flow.getCron();
-            String expressionBase64 = Base64.getEncoder().encodeToString(expression.getBytes());
-            return ZKPaths.makePath(zkProperties.getCronRoot(), flow.getName() + "-" + expressionBase64);
+        boolean isSame(FlowCron cron) {
+            return expression.equals(cron.getExpression()) && nextFireAt.equals(cron.getNextFireAt());
         }
     }
 }
@@ -80,6 +80,15 @@ public class FlowSettingServiceImpl implements FlowSettingService {
         flow.setJobTimeout(settings.getJobTimeout());
         flow.setStepTimeout(settings.getStepTimeout());
         flow.setCron(settings.getCron());
+
+        if (settings.getRetainBuilds() != null) {
+            flow.setRetainBuilds(settings.getRetainBuilds());
+        }
+
+        if (settings.getRetainDays() != null) {
+            flow.setRetainDays(settings.getRetainDays());
+        }
+
         flowDao.save(flow);
 
         cronService.set(flow);
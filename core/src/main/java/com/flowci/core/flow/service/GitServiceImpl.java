@@ -17,6 +17,7 @@
 package com.flowci.core.flow.service;
 
 import com.flowci.core.common.git.GitClient;
+import com.flowci.core.common.git.GitRepoCache;
 import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.flow.event.GitTestEvent;
@@ -37,6 +38,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
@@ -57,6 +59,9 @@ public class GitServiceImpl implements GitService {
     @Autowired
     private Cache<String, List<String>> gitBranchCache;
 
+    @Autowired
+    private GitRepoCache gitRepoCache;
+
     @Autowired
     private SpringEventManager eventManager;
 
@@ -103,8 +108,15 @@ public class GitServiceImpl implements GitService {
     @Override
     public List<String> listGitBranch(Flow flow) {
         final String credentialName = flow.getCredentialName();
-        return gitBranchCache.get(flow.getId(), (Function<String, List<String>>) flowId ->
-                fetchBranchFromGit(flow, flow.getGitUrl(), getSecret(credentialName)));
+        return gitBranchCache.get(flow.getId(), (Function<String, List<String>>) flowId -> {
+            Secret secret = getSecret(credentialName);
+
+            if (gitRepoCache.exist(flow.getGitUrl())) {
+                return fetchBranchFromRepoCache(flow, secret);
+            }
+
+            return fetchBranchFromGit(flow, flow.getGitUrl(), secret);
+        });
     }
 
     //====================================================================
@@ -119,6 +131,19 @@ public class GitServiceImpl implements GitService {
         return credentialService.get(name);
     }
 
+    /**
+     * Fetch the git repo cache incrementally if it's used by job, and list branches from it
+     */
+    private List<String> fetchBranchFromRepoCache(Flow flow, Secret credential) {
+        try {
+            gitRepoCache.fetch(flow.getGitUrl(), credential == null ? null : credential.toSimpleSecret());
+            return gitRepoCache.branches(flow.getGitUrl());
+        } catch (IOException e) {
+            log.warn(e.getMessage());
+            return fetchBranchFromGit(flow, flow.getGitUrl(), credential);
+        }
+    }
+
     private List<String> fetchBranchFromGit(Flow flow, String url, Secret credential) {
         if (Strings.isNullOrEmpty(url)) {
             eventManager.publish(new GitTestEvent(this, flow.getId(), "Git url is missing"));
@@ -51,8 +51,8 @@ public interface StatsService {
     StatsItem get(String flowId, String type, int day);
 
     /**
-     * Add statistic item
+     * Add statistic item, it will be saved asynchronously
      */
-    StatsItem add(String flowId, int day, String type, StatsCounter counter);
+    void add(String flowId, int day, String type, StatsCounter counter);
 
 }
@@ -32,17 +32,22 @@ import com.flowci.tree.FlowNode;
 import com.flowci.tree.StepNode;
 import com.flowci.tree.YmlParser;
 import com.flowci.util.StringHelper;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author yang
@@ -69,7 +74,13 @@ public class StatsServiceImpl implements StatsService {
     @Autowired
     private PluginService pluginService;
 
-    private final Object statsSync = new Object();
+    private static final long FlushIntervalInMillis = 500;
+
+    // key as flow id, day and type
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+
+    // key as flow id, ZERO_DAY and type, for total that not flushed after day items flushed
+    private final Map<Key, Pending> pendingTotals = new ConcurrentHashMap<>();
 
     private final Map<String, StatsType> defaultTypes = new HashMap<>(5);
 
@@ -105,7 +116,10 @@ public class StatsServiceImpl implements StatsService {
 
     @EventListener
     public void onFlowDelete(FlowDeletedEvent event) {
-        statsItemDao.deleteByFlowId(event.getFlow().getId());
+        String flowId = event.getFlow().getId();
+        pending.keySet().removeIf(key -> key.flowId.equals(flowId));
+        pendingTotals.keySet().removeIf(key -> key.flowId.equals(flowId));
+        statsItemDao.deleteByFlowId(flowId);
     }
 
     @Override
@@ -158,31 +172,117 @@ public class StatsServiceImpl implements StatsService {
         throw new NotFoundException("Statistic data cannot found");
     }
 
+    /**
+     * Add to local accumulator, which will be flushed to db in batch
+     */
     @Override
-    public StatsItem add(String flowId, int day, String type, StatsCounter counter) {
-        synchronized (statsSync) {
-            StatsItem totalItem = getItem(flowId, StatsItem.ZERO_DAY, type);
-            totalItem.plusDayCounter(counter);
-            totalItem.plusOneToday();
+    public void add(String flowId, int day, String type, StatsCounter counter) {
+        pending.compute(new Key(flowId, day, type), (k, v) -> {
+            Pending p = v == null ? new Pending() : v;
+            p.counter.add(counter);
+            p.num++;
+            return p;
+        });
+    }
 
-            StatsItem dayItem = getItem(flowId, day, type);
-            dayItem.plusDayCounter(counter);
-            dayItem.plusOneToday();
+    /**
+     * Flush accumulated counters by $inc on day items, then roll up the flushed days to total item of ZERO_DAY.
+     * Pending of failed day is put back with its total, and failed total is retried alone,
+     * so the total always equals to the sum of days
+     */
+    @Scheduled(fixedDelay = FlushIntervalInMillis)
+    @PreDestroy
+    public synchronized void flush() {
+        if (pending.isEmpty() && pendingTotals.isEmpty()) {
+            return;
+        }
 
-            dayItem.setTotal(totalItem.getCounter());
-            dayItem.setNumOfTotal(totalItem.getNumOfToday());
+        // key as flow id and type, value as pending of each day
+        Map<Key, Map<Key, Pending>> batch = new HashMap<>();
+        for (Key key : pending.keySet()) {
+            Pending p = pending.remove(key);
+            if (p != null) {
+                batch.computeIfAbsent(new Key(key.flowId, StatsItem.ZERO_DAY, key.type), k -> new HashMap<>()).put(key, p);
+            }
+        }
 
-            statsItemDao.saveAll(Arrays.asList(dayItem, totalItem));
-            return dayItem;
+        for (Key totalKey : pendingTotals.keySet()) {
+            batch.computeIfAbsent(totalKey, k -> new HashMap<>());
         }
+
+        for (Map.Entry<Key, Map<Key, Pending>> entry : batch.entrySet()) {
+            Key totalKey = entry.getKey();
+            Pending sum = pendingTotals.remove(totalKey);
+            if (sum == null) {
+                sum = new Pending();
+            }
+
+            for (Map.Entry<Key, Pending> day : entry.getValue().entrySet()) {
+                Key key = day.getKey();
+                Pending p = day.getValue();
+
+                try {
+                    statsItemDao.increase(key.flowId, key.day, key.type, p.counter, p.num);
+                    sum.add(p);
+                    sum.days.add(key.day);
+                } catch (Exception e) {
+                    log.warn("Unable to flush stats of flow {} on day {}, retry later: {}", key.flowId, key.day, e.getMessage());
+                    putBack(pending, key, p);
+                }
+            }
+
+            if (sum.num == 0) {
+                continue;
+            }
+
+            StatsItem total;
+            try {
+                total = statsItemDao.increase(totalKey.flowId, StatsItem.ZERO_DAY, totalKey.type, sum.counter, sum.num);
+            } catch (Exception e) {
+                log.warn("Unable to flush total stats of flow {}, retry later: {}", totalKey.flowId, e.getMessage());
+                putBack(pendingTotals, totalKey, sum);
+                continue;
+            }
+
+            try {
+                statsItemDao.setTotal(totalKey.flowId, sum.days, totalKey.type, total);
+            } catch (Exception e) {
+                log.warn("Unable to set total stats of flow {}: {}", totalKey.flowId, e.getMessage());
+            }
+        }
+    }
+
+    private static void putBack(Map<Key, Pending> map, Key key, Pending p) {
+        map.merge(key, p, (current, back) -> {
+            current.add(back);
+            return current;
+        });
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+
+        private final String flowId;
+
+        private final int day;
+
+        private final String type;
     }
 
-    private StatsItem getItem(String flowId, int day, String type) {
-        Optional<StatsItem> optional = statsItemDao.findByFlowIdAndDayAndType(flowId, day, type);
+    private static class Pending {
 
-        return optional.orElseGet(() -> new StatsItem()
-                .setDay(day)
-                .setFlowId(flowId)
-                .setType(type));
+        private final StatsCounter counter = new StatsCounter();
+
+        private int num;
+
+        // days flushed to day items, for pending of total
+        private final Set<Integer> days = new HashSet<>();
+
+        void add(Pending other) {
+            counter.add(other.counter);
+            num += other.num;
+            days.addAll(other.days);
+        }
     }
 }
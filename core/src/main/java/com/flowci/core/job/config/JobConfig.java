@@ -17,17 +17,21 @@
 package com.flowci.core.job.config;
 
 import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.git.GitRepoCache;
 import com.flowci.core.common.helper.CacheHelper;
-import com.flowci.core.common.helper.ThreadHelper;
 import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.manager.JobLockManager;
+import com.flowci.core.job.manager.LiveLogStore;
+import com.flowci.core.job.manager.LocalJobLockManager;
+import com.flowci.core.job.manager.ZookeeperJobLockManager;
 import com.flowci.tree.NodeTree;
 import com.flowci.util.FileHelper;
+import com.flowci.zookeeper.ZookeeperClient;
 import com.github.benmanes.caffeine.cache.Cache;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -45,11 +49,25 @@ public class JobConfig {
     @Autowired
     private AppProperties appProperties;
 
+    @Autowired
+    private AppProperties.Job jobProperties;
+
+    @Autowired
+    private Path tmpDir;
+
     @Bean("jobTreeCache")
     public Cache<String, NodeTree> jobTreeCache() {
         return CacheHelper.createLocalCache(50, 60);
     }
 
+    /**
+     * Parsed tree shared by jobs with the same yml, key as sha256 of flow name and yml
+     */
+    @Bean("ymlTreeCache")
+    public Cache<String, NodeTree> ymlTreeCache() {
+        return CacheHelper.createLocalCache(50, 600);
+    }
+
     @Bean("jobStepCache")
     public Cache<String, List<Step>> jobStepCache() {
         return CacheHelper.createLocalCache(100, 60);
@@ -62,8 +80,27 @@ public class JobConfig {
         return FileHelper.createDirectory(pluginDir);
     }
 
-    @Bean("jobConditionExecutor")
-    public ThreadPoolTaskExecutor jobConditionExecutor() {
-        return ThreadHelper.createTaskExecutor(20, 20, 100, "job-cond-");
+    @Bean("gitRepoCache")
+    public GitRepoCache gitRepoCache() throws IOException {
+        return new GitRepoCache(pluginDir(), tmpDir);
+    }
+
+    @Bean(name = "liveLogStore", destroyMethod = "close")
+    public LiveLogStore liveLogStore() throws IOException {
+        String workspace = appProperties.getWorkspace().toString();
+        Path logDir = FileHelper.createDirectory(Paths.get(workspace, "live-logs"));
+        return new LiveLogStore(logDir, jobProperties.getLiveLogSize());
+    }
+
+    @Bean("jobLockManager")
+    public JobLockManager jobLockManager(ZookeeperClient zk) {
+        AppProperties.Job.LockMode mode = jobProperties.getLockMode();
+        log.info("Job lock mode: {}", mode);
+
+        if (mode == AppProperties.Job.LockMode.LOCAL) {
+            return new LocalJobLockManager();
+        }
+
+        return new ZookeeperJobLockManager(zk, "/job-locks");
     }
 }
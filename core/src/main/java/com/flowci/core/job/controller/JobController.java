@@ -35,6 +35,8 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -98,6 +100,17 @@ public class JobController {
         return jobService.list(flow, page, size);
     }
 
+    @GetMapping("/{flow}/items")
+    @Action(JobAction.LIST)
+    public JobItemPage listByCursor(@PathVariable("flow") String name,
+                                    @RequestParam(required = false) Long before,
+                                    @RequestParam(required = false, defaultValue = DefaultSize) int size,
+                                    @RequestParam(required = false, defaultValue = "false") boolean count) {
+
+        Flow flow = flowService.get(name);
+        return jobService.list(flow, before, size, count);
+    }
+
     @GetMapping("/{flow}/{buildNumberOrLatest}")
     @Action(JobAction.GET)
     public Job get(@PathVariable("flow") String name, @PathVariable String buildNumberOrLatest) {
@@ -151,19 +164,57 @@ public class JobController {
         return loggingService.read(stepId);
     }
 
+    /**
+     * Read last lines of step log, or read log from offset if 'since' is specified
+     */
+    @GetMapping("/logs/{stepId}/tail")
+    @Action(JobAction.DOWNLOAD_STEP_LOG)
+    public LogChunk tailStepLog(@PathVariable String stepId,
+                                @RequestParam(required = false, defaultValue = "100") int lines,
+                                @RequestParam(required = false) Long since) {
+        if (since != null) {
+            return loggingService.read(stepId, since, Integer.MAX_VALUE);
+        }
+        return loggingService.tail(stepId, lines);
+    }
+
     @GetMapping("/logs/{stepId}/download")
     @Action(JobAction.DOWNLOAD_STEP_LOG)
-    public ResponseEntity<Resource> downloadStepLog(@PathVariable String stepId) {
+    public ResponseEntity<Resource> downloadStepLog(@PathVariable String stepId,
+                                                    @RequestHeader(value = HttpHeaders.RANGE, required = false)
+                                                            String range) {
         Step step = stepService.get(stepId);
-        Resource resource = loggingService.get(stepId);
         Flow flow = flowService.getById(step.getFlowId());
 
         NodePath path = NodePath.create(step.getNodePath());
         String fileName = String.format("%s-#%s-%s.log", flow.getName(), step.getBuildNumber(), path.name());
 
-        return ResponseEntity.ok()
+        if (!StringHelper.hasValue(range)) {
+            Resource resource = loggingService.get(stepId);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(MediaType.APPLICATION_OCTET_STREAM_VALUE))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                    .body(resource);
+        }
+
+        HttpRange httpRange = toSingleRange(range);
+        long size = loggingService.size(stepId);
+
+        if (!isSatisfiable(httpRange, size)) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                    .build();
+        }
+
+        long start = httpRange.getRangeStart(size);
+        long end = httpRange.getRangeEnd(size);
+        Resource resource = loggingService.get(stepId, start, end - start + 1);
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
                 .contentType(MediaType.parseMediaType(MediaType.APPLICATION_OCTET_STREAM_VALUE))
+                .contentLength(end - start + 1)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .header(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, size))
                 .body(resource);
     }
 
@@ -246,4 +297,24 @@ public class JobController {
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + artifact.getFileName() + "\"")
                 .body(new InputStreamResource(artifact.getSrc()));
     }
+
+    private static boolean isSatisfiable(HttpRange range, long size) {
+        try {
+            return range.getRangeStart(size) < size;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static HttpRange toSingleRange(String range) {
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            if (ranges.size() != 1) {
+                throw new ArgumentException("Only single range is supported");
+            }
+            return ranges.get(0);
+        } catch (IllegalArgumentException e) {
+            throw new ArgumentException("Invalid range {0}", range);
+        }
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.ArtifactBlob;
+
+/**
+ * Reference counting of artifact blob
+ *
+ * @author yang
+ */
+public interface CustomArtifactBlobDao {
+
+    /**
+     * Add a ref to blob which is in use
+     *
+     * @return blob after increased, or null if blob not existed or not referred
+     */
+    ArtifactBlob acquire(String sha256);
+
+    /**
+     * Add a ref to blob, create blob with new generation if not existed
+     *
+     * @return blob after increased
+     */
+    ArtifactBlob reserve(String sha256, String contentType, long size);
+
+    /**
+     * Set path after content saved
+     */
+    void setPath(String sha256, String path);
+
+    /**
+     * Remove a ref from blob
+     *
+     * @return blob after decreased, or null if blob not existed
+     */
+    ArtifactBlob release(String sha256);
+
+    /**
+     * Delete blob if not referred
+     *
+     * @return blob deleted, or null if blob is referred
+     */
+    ArtifactBlob deleteIfUnused(String sha256);
+}
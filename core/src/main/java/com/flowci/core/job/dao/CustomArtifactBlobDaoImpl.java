@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.ArtifactBlob;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class CustomArtifactBlobDaoImpl implements CustomArtifactBlobDao {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public ArtifactBlob acquire(String sha256) {
+        return operations.findAndModify(
+                query(where("_id").is(sha256).and("refs").gt(0)),
+                new Update().inc("refs", 1).set("updatedAt", new Date()),
+                options().returnNew(true),
+                ArtifactBlob.class);
+    }
+
+    @Override
+    public ArtifactBlob reserve(String sha256, String contentType, long size) {
+        return operations.findAndModify(
+                query(where("_id").is(sha256)),
+                new Update().inc("refs", 1)
+                        .set("updatedAt", new Date())
+                        .setOnInsert("contentType", contentType)
+                        .setOnInsert("size", size)
+                        .setOnInsert("generation", ObjectId.get().toHexString()),
+                options().returnNew(true).upsert(true),
+                ArtifactBlob.class);
+    }
+
+    @Override
+    public void setPath(String sha256, String path) {
+        operations.updateFirst(
+                query(where("_id").is(sha256)),
+                new Update().set("path", path),
+                ArtifactBlob.class);
+    }
+
+    @Override
+    public ArtifactBlob release(String sha256) {
+        return operations.findAndModify(
+                query(where("_id").is(sha256)),
+                new Update().inc("refs", -1).set("updatedAt", new Date()),
+                options().returnNew(true),
+                ArtifactBlob.class);
+    }
+
+    @Override
+    public ArtifactBlob deleteIfUnused(String sha256) {
+        return operations.findAndRemove(
+                query(where("_id").is(sha256).and("refs").lte(0)),
+                ArtifactBlob.class);
+    }
+}
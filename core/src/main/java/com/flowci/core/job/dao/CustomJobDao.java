@@ -1,6 +1,40 @@
 package com.flowci.core.job.dao;
 
+import com.flowci.core.job.domain.Job;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
 public interface CustomJobDao {
 
     void increaseNumOfArtifact(String jobId);
+
+    /**
+     * Find jobs by status, only id, status and fields of expiry are loaded
+     */
+    List<Job> findAllExpiryByStatusIn(Collection<Job.Status> statuses);
+
+    /**
+     * Build number of the nth latest job of flow, or empty if num of jobs is less than n
+     */
+    Optional<Long> findBuildNumberOfLatest(String flowId, int n);
+
+    /**
+     * Find jobs of flow to be purged in order of build number, only id, flow id and build number are loaded
+     *
+     * @param buildNumberBefore jobs with build number less than it, ignored if null
+     * @param createdBefore     jobs created before it, ignored if null
+     * @param finishedOnly      exclude jobs not finished
+     */
+    List<Job> findAllToPurge(String flowId, Long buildNumberBefore, Date createdBefore, boolean finishedOnly, int limit);
+
+    /**
+     * Update fields that changed since job loaded or last saved by $set and $unset,
+     * or save the whole job if it's not loaded from db
+     *
+     * @return false if nothing changed
+     */
+    boolean saveChanges(Job job);
 }
@@ -1,18 +1,37 @@
 package com.flowci.core.job.dao;
 
 import com.flowci.core.job.domain.Job;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
 public class CustomJobDaoImpl implements CustomJobDao {
 
+    private static final String IdField = "_id";
+
+    private static final String ClassField = "_class";
+
     @Autowired
     private MongoOperations operations;
 
+    @Autowired
+    private JobSnapshotListener jobSnapshotListener;
+
     @Override
     public void increaseNumOfArtifact(String jobId) {
         operations.findAndModify(
@@ -20,4 +39,135 @@ public class CustomJobDaoImpl implements CustomJobDao {
                 new Update().inc("numOfArtifact", 1),
                 Job.class);
     }
+
+    @Override
+    public List<Job> findAllExpiryByStatusIn(Collection<Job.Status> statuses) {
+        Query query = query(where("status").in(statuses));
+        query.fields()
+                .include("status")
+                .include("expireAt")
+                .include("timeout")
+                .include("updatedAt");
+
+        return operations.find(query, Job.class);
+    }
+
+    @Override
+    public Optional<Long> findBuildNumberOfLatest(String flowId, int n) {
+        Query query = query(where("flowId").is(flowId))
+                .with(Sort.by(Sort.Direction.DESC, "buildNumber"))
+                .skip(n - 1)
+                .limit(1);
+        query.fields().include("buildNumber");
+
+        Job job = operations.findOne(query, Job.class);
+        return job == null ? Optional.empty() : Optional.of(job.getBuildNumber());
+    }
+
+    @Override
+    public List<Job> findAllToPurge(String flowId, Long buildNumberBefore, Date createdBefore,
+                                    boolean finishedOnly, int limit) {
+        List<Criteria> conditions = new LinkedList<>();
+        if (buildNumberBefore != null) {
+            conditions.add(where("buildNumber").lt(buildNumberBefore));
+        }
+
+        if (createdBefore != null) {
+            conditions.add(where("createdAt").lt(createdBefore));
+        }
+
+        Criteria criteria = where("flowId").is(flowId);
+        if (!conditions.isEmpty()) {
+            criteria.orOperator(conditions.toArray(new Criteria[0]));
+        }
+
+        if (finishedOnly) {
+            criteria.and("status").in(Job.FINISH_STATUS);
+        }
+
+        Query query = query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "buildNumber"))
+                .limit(limit);
+
+        query.fields()
+                .include("flowId")
+                .include("buildNumber");
+
+        return operations.find(query, Job.class);
+    }
+
+    @Override
+    public boolean saveChanges(Job job) {
+        Optional<Document> snapshot = jobSnapshotListener.get(job);
+        if (!snapshot.isPresent()) {
+            operations.save(job);
+            return true;
+        }
+
+        Date updatedAt = job.getUpdatedAt();
+        job.setUpdatedAt(new Date());
+
+        Document current = new Document();
+        operations.getConverter().write(job, current);
+
+        String updatedAtField = operations.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Job.class)
+                .getRequiredPersistentProperty("updatedAt")
+                .getFieldName();
+
+        Document changes = diff(snapshot.get(), current, updatedAtField);
+        if (changes.isEmpty()) {
+            job.setUpdatedAt(updatedAt);
+            return false;
+        }
+
+        operations.getCollection(operations.getCollectionName(Job.class))
+                .updateOne(new Document(IdField, current.get(IdField)), changes);
+
+        jobSnapshotListener.put(job, current);
+        return true;
+    }
+
+    /**
+     * Compare top level fields, the updated at field only be set if other fields changed
+     */
+    private static Document diff(Document snapshot, Document current, String updatedAtField) {
+        Document set = new Document();
+        Document unset = new Document();
+
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            String field = entry.getKey();
+            if (isIgnored(field, updatedAtField)) {
+                continue;
+            }
+
+            if (!Objects.equals(entry.getValue(), snapshot.get(field))) {
+                set.put(field, entry.getValue());
+            }
+        }
+
+        for (String field : snapshot.keySet()) {
+            if (!isIgnored(field, updatedAtField) && !current.containsKey(field)) {
+                unset.put(field, "");
+            }
+        }
+
+        Document changes = new Document();
+        if (set.isEmpty() && unset.isEmpty()) {
+            return changes;
+        }
+
+        set.put(updatedAtField, current.get(updatedAtField));
+        changes.put("$set", set);
+
+        if (!unset.isEmpty()) {
+            changes.put("$unset", unset);
+        }
+
+        return changes;
+    }
+
+    private static boolean isIgnored(String field, String updatedAtField) {
+        return IdField.equals(field) || ClassField.equals(field) || updatedAtField.equals(field);
+    }
 }
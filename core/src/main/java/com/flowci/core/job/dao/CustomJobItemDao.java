@@ -0,0 +1,32 @@
+/*
+ *   Copyright (c) 2019 flow.ci
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.JobItem;
+
+import java.util.List;
+
+public interface CustomJobItemDao {
+
+    /**
+     * List job items of flow by build number desc, which are less than the cursor,
+     * only the context keys shown on the list will be loaded
+     *
+     * @param before build number cursor, from the latest if null
+     */
+    List<JobItem> listByFlowId(String flowId, Long before, int limit);
+}
@@ -0,0 +1,69 @@
+/*
+ *   Copyright (c) 2019 flow.ci
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.JobItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Field;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class CustomJobItemDaoImpl implements CustomJobItemDao {
+
+    private static final Sort SortByBuildNumber = Sort.by(Sort.Direction.DESC, "buildNumber");
+
+    private static final String[] Fields = {
+            "buildNumber",
+            "flowId",
+            "trigger",
+            "status",
+            "createdAt",
+            "startAt",
+            "finishAt",
+            "numOfArtifact"
+    };
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public List<JobItem> listByFlowId(String flowId, Long before, int limit) {
+        Criteria criteria = where("flowId").is(flowId);
+        if (before != null) {
+            criteria.and("buildNumber").lt(before);
+        }
+
+        Query query = Query.query(criteria).with(SortByBuildNumber).limit(limit);
+
+        Field fields = query.fields();
+        for (String field : Fields) {
+            fields.include(field);
+        }
+
+        for (String key : JobItem.ContextKeys) {
+            fields.include("context." + key);
+        }
+
+        return operations.find(query, JobItem.class);
+    }
+}
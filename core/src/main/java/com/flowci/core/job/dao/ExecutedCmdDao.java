@@ -20,6 +20,7 @@ import com.flowci.core.job.domain.Step;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,6 +34,10 @@ public interface ExecutedCmdDao extends MongoRepository<Step, String> {
 
     Long deleteByJobId(String jobId);
 
+    Long deleteByJobIdIn(Collection<String> jobIds);
+
+    List<Step> findAllByJobIdIn(Collection<String> jobIds);
+
     Optional<Step> findByJobIdAndNodePath(String jobId, String nodePath);
 
     List<Step> findByFlowIdAndBuildNumber(String flowId, long buildNumber);
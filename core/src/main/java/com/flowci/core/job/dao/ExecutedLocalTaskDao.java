@@ -4,6 +4,7 @@ import com.flowci.core.job.domain.ExecutedLocalTask;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,5 +17,7 @@ public interface ExecutedLocalTaskDao extends MongoRepository<ExecutedLocalTask,
 
     Long deleteAllByJobId(String jobId);
 
+    Long deleteAllByJobIdIn(Collection<String> jobIds);
+
     Long deleteAllByFlowId(String flowId);
 }
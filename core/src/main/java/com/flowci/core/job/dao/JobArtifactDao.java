@@ -20,10 +20,15 @@ import com.flowci.core.job.domain.JobArtifact;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface JobArtifactDao extends MongoRepository<JobArtifact, String> {
 
     List<JobArtifact> findAllByJobId(String jobId);
+
+    List<JobArtifact> findAllByFlowId(String flowId);
+
+    List<JobArtifact> findAllByJobIdIn(Collection<String> jobIds);
 }
@@ -20,6 +20,7 @@ import com.flowci.core.job.domain.Job;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 
 /**
@@ -31,4 +32,6 @@ public interface JobDao extends MongoRepository<Job, String>, CustomJobDao {
     Optional<Job> findByKey(String key);
 
     Long deleteByFlowId(String flowId);
+
+    Long deleteByIdIn(Collection<String> ids);
 }
\ No newline at end of file
@@ -16,6 +16,7 @@
 
 package com.flowci.core.job.dao;
 
+import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Step;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.mongodb.core.MongoOperations;
@@ -40,4 +41,17 @@ public class JobIndexInitializer {
         mongoOps.indexOps(Step.class)
                 .ensureIndex(new CompoundIndexDefinition(fields));
     }
+
+    /**
+     * For job list by flow id and build number desc
+     */
+    @PostConstruct
+    public void createIndexOnJob() {
+        Document fields = new Document();
+        fields.put("flowId", 1);
+        fields.put("buildNumber", -1);
+
+        mongoOps.indexOps(Job.class)
+                .ensureIndex(new CompoundIndexDefinition(fields));
+    }
 }
@@ -26,7 +26,7 @@ import org.springframework.stereotype.Repository;
  * @author yang
  */
 @Repository
-public interface JobItemDao extends MongoRepository<JobItem, String> {
+public interface JobItemDao extends MongoRepository<JobItem, String>, CustomJobItemDao {
 
     Page<JobItem> findAllByFlowId(String flowId, Pageable pageable);
 
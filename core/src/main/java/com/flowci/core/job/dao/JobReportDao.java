@@ -17,6 +17,7 @@
 package com.flowci.core.job.dao;
 
 import com.flowci.core.job.domain.JobReport;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
@@ -27,4 +28,6 @@ public interface JobReportDao extends MongoRepository<JobReport, String> {
 
     List<JobReport> findAllByJobId(String jobId);
 
+    List<JobReport> findAllByJobIdIn(Collection<String> jobIds);
+
 }
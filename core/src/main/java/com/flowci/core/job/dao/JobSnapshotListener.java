@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.Job;
+import com.google.common.collect.MapMaker;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Record the document of job instance when it loaded or saved,
+ * which is used to find changed fields of the instance for partial update
+ *
+ * @author yang
+ */
+@Component
+public class JobSnapshotListener extends AbstractMongoEventListener<Job> {
+
+    // weak keys compared by identity, snapshot is released with the job instance
+    private final ConcurrentMap<Job, Document> snapshots = new MapMaker().weakKeys().makeMap();
+
+    @Override
+    public void onAfterConvert(AfterConvertEvent<Job> event) {
+        snapshots.put(event.getSource(), event.getDocument());
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Job> event) {
+        snapshots.put(event.getSource(), event.getDocument());
+    }
+
+    public Optional<Document> get(Job job) {
+        return Optional.ofNullable(snapshots.get(job));
+    }
+
+    public void put(Job job, Document document) {
+        snapshots.put(job, document);
+    }
+}
@@ -20,10 +20,14 @@ import com.flowci.core.job.domain.JobYml;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 /**
  * @author yang
  */
 @Repository
 public interface JobYmlDao extends MongoRepository<JobYml, String> {
 
+    Long deleteByIdIn(Collection<String> ids);
+
 }
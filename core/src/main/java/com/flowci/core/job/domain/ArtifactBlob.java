@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.domain;
+
+import com.flowci.store.Pathable;
+import com.flowci.store.StringPath;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Artifact content stored once by sha256, shared by job artifacts with same content
+ *
+ * @author yang
+ */
+@Getter
+@Setter
+@Document(collection = "artifact_blob")
+public class ArtifactBlob {
+
+    public static final Pathable BlobPath = () -> "blobs";
+
+    /**
+     * Content sha256 as id
+     */
+    @Id
+    private String sha256;
+
+    /**
+     * Path for FileManager, null until content saved
+     */
+    private String path;
+
+    private String contentType;
+
+    private Long size = 0L;
+
+    /**
+     * Num of job artifact refer to the blob
+     */
+    private Long refs = 0L;
+
+    /**
+     * Changed when blob created again after deleted, so the content of new generation
+     * will not be removed by the deletion of previous one
+     */
+    private String generation;
+
+    private Date updatedAt;
+
+    /**
+     * Blob stored as blobs/{first two chars of sha256}/{sha256}-{generation}
+     */
+    public static Pathable[] path(String sha256) {
+        return new Pathable[]{BlobPath, new StringPath(sha256.substring(0, 2))};
+    }
+
+    public String fileName() {
+        return generation == null ? sha256 : sha256 + "-" + generation;
+    }
+}
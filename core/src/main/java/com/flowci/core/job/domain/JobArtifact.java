@@ -23,6 +23,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.io.InputStream;
@@ -40,6 +41,10 @@ public class JobArtifact extends JobOutput {
 
     public static final Pathable ArtifactPath = () -> "artifacts";
 
+    @JsonIgnore
+    @Indexed(name = "index_job_artifact_flowid")
+    private String flowId;
+
     private String srcDir;
 
     /**
@@ -47,6 +52,11 @@ public class JobArtifact extends JobOutput {
      */
     private String md5;
 
+    /**
+     * File sha256, refer to ArtifactBlob, null for artifact saved in job dir
+     */
+    private String sha256;
+
     @JsonIgnore
     @Transient
     private InputStream src;
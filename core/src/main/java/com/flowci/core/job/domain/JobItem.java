@@ -21,6 +21,7 @@ import com.flowci.core.job.domain.Job.Status;
 import com.flowci.core.job.domain.Job.Trigger;
 import com.flowci.core.trigger.domain.Variables;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.core.convert.converter.Converter;
@@ -29,6 +30,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * As job list item, remove the data which is not used in the list view
@@ -40,6 +42,28 @@ import java.util.HashMap;
 @Document(collection = "job")
 public class JobItem extends JobDesc {
 
+    /**
+     * Context keys shown on the list
+     */
+    public static final List<String> ContextKeys = ImmutableList.of(
+            Variables.GIT_EVENT,
+
+            // git push / tag
+            Variables.GIT_BRANCH,
+            Variables.GIT_COMMIT_ID,
+            Variables.GIT_COMMIT_URL,
+            Variables.GIT_COMMIT_MESSAGE,
+
+            // git pr
+            Variables.PR_TITLE,
+            Variables.PR_NUMBER,
+            Variables.PR_URL,
+            Variables.PR_HEAD_REPO_NAME,
+            Variables.PR_HEAD_REPO_BRANCH,
+            Variables.PR_BASE_REPO_NAME,
+            Variables.PR_BASE_REPO_BRANCH
+    );
+
     @Getter
     @Setter
     public static class Context extends HashMap<String, String> {
@@ -72,22 +96,9 @@ public class JobItem extends JobDesc {
         @Override
         public Context convert(org.bson.Document source) {
             Context context = new Context(source);
-            context.putIfNotEmpty(Variables.GIT_EVENT);
-
-            // git push / tag
-            context.putIfNotEmpty(Variables.GIT_BRANCH);
-            context.putIfNotEmpty(Variables.GIT_COMMIT_ID);
-            context.putIfNotEmpty(Variables.GIT_COMMIT_URL);
-            context.putIfNotEmpty(Variables.GIT_COMMIT_MESSAGE);
-
-            // git pr
-            context.putIfNotEmpty(Variables.PR_TITLE);
-            context.putIfNotEmpty(Variables.PR_NUMBER);
-            context.putIfNotEmpty(Variables.PR_URL);
-            context.putIfNotEmpty(Variables.PR_HEAD_REPO_NAME);
-            context.putIfNotEmpty(Variables.PR_HEAD_REPO_BRANCH);
-            context.putIfNotEmpty(Variables.PR_BASE_REPO_NAME);
-            context.putIfNotEmpty(Variables.PR_BASE_REPO_BRANCH);
+            for (String key : ContextKeys) {
+                context.putIfNotEmpty(key);
+            }
 
             return context;
         }
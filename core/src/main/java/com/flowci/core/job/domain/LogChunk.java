@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Range of step log in bytes
+ *
+ * @author yang
+ */
+@Getter
+@AllArgsConstructor
+public final class LogChunk {
+
+    public static LogChunk empty(long size) {
+        return new LogChunk(size, new byte[0], size);
+    }
+
+    /**
+     * Offset of the first byte of data in the log
+     */
+    private final long offset;
+
+    private final byte[] data;
+
+    /**
+     * Total bytes of the log
+     */
+    private final long size;
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.job.domain;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Num of records and bytes of files purged for a flow
+ *
+ * @author yang
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class RetentionReport {
+
+    private final String flowId;
+
+    private long numOfJobs;
+
+    private long numOfSteps;
+
+    private long numOfTasks;
+
+    private long numOfReports;
+
+    private long numOfArtifacts;
+
+    private long bytes;
+
+    public void addJobs(long num) {
+        numOfJobs += num;
+    }
+
+    public void addSteps(long num) {
+        numOfSteps += num;
+    }
+
+    public void addTasks(long num) {
+        numOfTasks += num;
+    }
+
+    public void addReports(long num) {
+        numOfReports += num;
+    }
+
+    public void addArtifacts(long num) {
+        numOfArtifacts += num;
+    }
+
+    public void addBytes(long num) {
+        bytes += num;
+    }
+}
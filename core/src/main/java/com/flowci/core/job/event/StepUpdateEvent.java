@@ -4,6 +4,9 @@ import com.flowci.core.job.domain.Step;
 
 import java.util.List;
 
+/**
+ * Items are all steps of job if init, otherwise only the changed step
+ */
 public class StepUpdateEvent extends ExecutedEvent<Step> {
 
     public StepUpdateEvent(Object source, String jobId, List<Step> items, boolean init) {
@@ -37,6 +37,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Iterator;
+import java.util.LinkedList;
 
 /**
  * @author yang
@@ -58,13 +59,13 @@ public class CmdManagerImpl implements CmdManager {
                 .setJobId(job.getId())
                 .setCondition(node.getCondition())
                 .setAllowFailure(node.isAllowFailure())
-                .setDockers(node.getDockers())
+                .setDockers(new LinkedList<>(node.getDockers()))
                 .setTimeout(job.getTimeout());
 
         // apply flow level docker if step level is not specified
         if (!node.hasDocker()) {
             if (root.hasDocker()) {
-                in.setDockers(root.getDockers());
+                in.setDockers(new LinkedList<>(root.getDockers()));
             }
         }
 
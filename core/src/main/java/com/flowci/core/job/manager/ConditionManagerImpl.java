@@ -2,25 +2,61 @@ package com.flowci.core.job.manager;
 
 import com.flowci.core.agent.domain.CmdIn;
 import com.flowci.core.agent.domain.ShellIn;
+import com.flowci.core.common.helper.CacheHelper;
+import com.github.benmanes.caffeine.cache.Cache;
 import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
 import groovy.lang.GroovyRuntimeException;
-import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+import groovy.transform.ThreadInterrupt;
 import groovy.util.ScriptException;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.*;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Condition script is compiled once and cached by script text, the script class is loaded by
+ * its own class loader, so it can be unloaded when evicted from cache.
+ * <p>
+ * The script runs on the caller thread, and will be interrupted on timeout,
+ * the interruption is checked in loops and method calls of script by @ThreadInterrupt
+ */
 @Log4j2
 @Component
 public class ConditionManagerImpl implements ConditionManager {
 
     private final int DefaultTimeout = 2; // seconds
 
-    @Autowired
-    private ThreadPoolTaskExecutor jobConditionExecutor;
+    private final AtomicInteger sequence = new AtomicInteger(0);
+
+    // key as condition script, value as compiled script class
+    private final Cache<String, Class<? extends Script>> scriptCache = CacheHelper.createLocalCache(500, 3600);
+
+    private final CompilerConfiguration compilerConfig = new CompilerConfiguration();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "job-cond-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ConditionManagerImpl() {
+        compilerConfig.addCompilationCustomizers(new ASTTransformationCustomizer(ThreadInterrupt.class));
+    }
+
+    @PreDestroy
+    public void close() {
+        watchdog.shutdownNow();
+    }
 
     @Override
     public boolean run(CmdIn in) throws ScriptException {
@@ -33,31 +69,85 @@ public class ConditionManagerImpl implements ConditionManager {
             return true;
         }
 
-        Future<Boolean> submit = jobConditionExecutor.submit(() -> {
-            Binding binding = new Binding();
-            shell.getInputs().forEach(binding::setVariable);
+        Binding binding = new Binding();
+        shell.getInputs().forEach(binding::setVariable);
 
-            try {
-                GroovyShell groovy = new GroovyShell(binding);
-                Object value = groovy.evaluate(shell.getCondition());
-                if (value instanceof Boolean) {
-                    return (Boolean) value;
-                }
-                throw new Exception("The return type is not boolean");
-            } catch (GroovyRuntimeException e) {
-                throw new Exception(e.getMessage());
-            }
-        });
+        Script script;
+        try {
+            Class<? extends Script> clazz = scriptCache.get(shell.getCondition(), this::compile);
+            script = InvokerHelper.createScript(clazz, binding);
+        } catch (GroovyRuntimeException e) {
+            throw new ScriptException(e.getMessage());
+        }
+
+        Interrupter interrupter = new Interrupter(Thread.currentThread());
+        ScheduledFuture<?> timer = watchdog.schedule(interrupter, DefaultTimeout, TimeUnit.SECONDS);
+        Object value;
 
         try {
-            return submit.get(DefaultTimeout, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            throw new ScriptException("Condition script interrupted");
-        } catch (ExecutionException e) {
+            value = script.run();
+        } catch (Exception e) {
+            // InterruptedException will be thrown from script if interrupted
+            if (interrupter.finish()) {
+                throw new ScriptException("Condition script timeout");
+            }
             throw new ScriptException(e.getMessage());
-        } catch (TimeoutException e) {
-            submit.cancel(true);
+        } finally {
+            timer.cancel(false);
+        }
+
+        if (interrupter.finish()) {
             throw new ScriptException("Condition script timeout");
         }
+
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+
+        throw new ScriptException("The return type is not boolean");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<? extends Script> compile(String condition) {
+        GroovyClassLoader loader = new GroovyClassLoader(getClass().getClassLoader(), compilerConfig);
+        String name = "Condition" + sequence.incrementAndGet() + ".groovy";
+        return (Class<? extends Script>) loader.parseClass(condition, name);
+    }
+
+    /**
+     * Interrupt the script thread if script not finished
+     */
+    private static class Interrupter implements Runnable {
+
+        private final Thread thread;
+
+        private boolean finished;
+
+        private boolean interrupted;
+
+        Interrupter(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (!finished) {
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Called from the script thread when script finished, and clear the interrupt flag
+         *
+         * @return true if the script been interrupted
+         */
+        synchronized boolean finish() {
+            finished = true;
+            if (interrupted) {
+                Thread.interrupted();
+            }
+            return interrupted;
+        }
     }
 }
@@ -11,7 +11,10 @@ public interface JobActionManager {
 
     void toStart(Job job);
 
-    void toRun(Job job);
+    /**
+     * @param onDispatched run once the job is dispatched to agent or not waiting for agent anymore
+     */
+    void toRun(Job job, Runnable onDispatched);
 
     void toContinue(Job job, Step step);
 
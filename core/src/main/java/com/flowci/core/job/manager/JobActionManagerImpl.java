@@ -3,15 +3,15 @@ package com.flowci.core.job.manager;
 import com.flowci.core.agent.domain.CmdIn;
 import com.flowci.core.agent.service.AgentService;
 import com.flowci.core.common.domain.Variables;
-import com.flowci.core.common.git.GitClient;
+import com.flowci.core.common.git.GitRepoCache;
 import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.common.rabbit.RabbitOperations;
 import com.flowci.core.job.dao.JobDao;
 import com.flowci.core.job.domain.Executed;
 import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobLock;
 import com.flowci.core.job.domain.Step;
 import com.flowci.core.job.event.JobReceivedEvent;
-import com.flowci.core.job.event.JobStatusChangeEvent;
 import com.flowci.core.job.service.LocalTaskService;
 import com.flowci.core.job.service.StepService;
 import com.flowci.core.job.util.StatusHelper;
@@ -27,8 +27,6 @@ import com.flowci.sm.*;
 import com.flowci.tree.*;
 import com.flowci.util.ObjectsHelper;
 import com.flowci.util.StringHelper;
-import com.flowci.zookeeper.InterLock;
-import com.flowci.zookeeper.ZookeeperClient;
 import com.google.common.base.Strings;
 import groovy.util.ScriptException;
 import lombok.Getter;
@@ -38,16 +36,18 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import static com.flowci.core.trigger.domain.Variables.GIT_COMMIT_ID;
+
 @Log4j2
 @Service
 public class JobActionManagerImpl implements JobActionManager {
@@ -95,18 +95,21 @@ public class JobActionManagerImpl implements JobActionManager {
 
     private static final StateMachine<JobSmContext> Sm = new StateMachine<>("JOB_STATUS");
 
-    @Autowired
-    private Path repoDir;
+    private static final Runnable NoOp = () -> {
+    };
 
     @Autowired
-    private Path tmpDir;
+    private GitRepoCache gitRepoCache;
 
     @Autowired
-    private ZookeeperClient zk;
+    private JobLockManager jobLockManager;
 
     @Autowired
     private JobDao jobDao;
 
+    @Autowired
+    private JobStateWriter jobStateWriter;
+
     @Autowired
     private CmdManager cmdManager;
 
@@ -134,6 +137,9 @@ public class JobActionManagerImpl implements JobActionManager {
     @Autowired
     private SecretService secretService;
 
+    @Autowired
+    private TaskExecutor appTaskExecutor;
+
     @EventListener
     public void init(ContextRefreshedEvent ignore) {
         try {
@@ -146,13 +152,18 @@ public class JobActionManagerImpl implements JobActionManager {
 
             Sm.addHookActionOnTargetStatus(context -> {
                 Job job = context.job;
-                if (hasJobLock(job.getId())) {
+                if (jobLockManager.isLocked(job.getId())) {
                     throw new StatusException("Unable to cancel right now, try later");
                 }
             }, Cancelled);
 
             // run local notification task
             Sm.addHookActionOnTargetStatus(notificationConsumer(), Success, Failure, Timeout, Cancelled);
+
+            // clean up job lock resources
+            Sm.addHookActionOnTargetStatus(context -> {
+                jobLockManager.finish(context.job.getId());
+            }, Success, Failure, Timeout, Cancelled);
         } catch (SmException.TransitionExisted ignored) {
         }
     }
@@ -175,8 +186,13 @@ public class JobActionManagerImpl implements JobActionManager {
     }
 
     @Override
-    public void toRun(Job job) {
-        on(job, Job.Status.RUNNING, null);
+    public void toRun(Job job, Runnable onDispatched) {
+        JobSmContext context = on(job, Job.Status.RUNNING, c -> c.onDispatched = onDispatched);
+
+        // will be run after agent acquired if job is waiting for agent
+        if (!context.waitingForAgent) {
+            onDispatched.run();
+        }
     }
 
     @Override
@@ -332,15 +348,41 @@ public class JobActionManagerImpl implements JobActionManager {
             @Override
             public void accept(JobSmContext context) throws Exception {
                 Job job = context.job;
-                eventManager.publish(new JobReceivedEvent(this, job));
-
-                Optional<Agent> available = agentService.acquire(job, canAcquireAgent);
 
-                if (available.isPresent()) {
-                    Agent agent = available.get();
-                    context.agentId = agent.getId();
+                // agent been acquired and locked for the job
+                if (context.agentId != null) {
+                    Agent agent = agentService.get(context.agentId);
                     dispatch(job, agent);
+                    return;
                 }
+
+                eventManager.publish(new JobReceivedEvent(this, job));
+
+                Runnable onDispatched = context.onDispatched == null ? NoOp : context.onDispatched;
+
+                agentService.acquire(job, canAcquireAgent).whenComplete((available, e) -> {
+                    if (e != null) {
+                        log.warn("Unable to acquire agent for job {}", job.getId(), e);
+                        onDispatched.run();
+                        return;
+                    }
+
+                    try {
+                        appTaskExecutor.execute(() -> {
+                            try {
+                                available.ifPresent(agent -> onAgentAcquired(job.getId(), agent));
+                            } finally {
+                                onDispatched.run();
+                            }
+                        });
+                    } catch (RejectedExecutionException rejected) {
+                        log.warn("Unable to continue job {} with acquired agent: {}", job.getId(), rejected.getMessage());
+                        available.ifPresent(agent -> agentService.tryRelease(agent.getId()));
+                        onDispatched.run();
+                    }
+                });
+
+                context.waitingForAgent = true;
             }
 
             @Override
@@ -375,7 +417,7 @@ public class JobActionManagerImpl implements JobActionManager {
             @Override
             public boolean canRun(JobSmContext context) {
                 Job job = context.job;
-                Optional<InterLock> lock = lockJob(job.getId());
+                Optional<JobLock> lock = jobLockManager.lock(job.getId(), 10);
 
                 if (!lock.isPresent()) {
                     log.debug("Fail to lock job {}", job.getId());
@@ -395,6 +437,7 @@ public class JobActionManagerImpl implements JobActionManager {
 
                 // refresh job after lock
                 context.job = jobDao.findById(job.getId()).get();
+                checkLock(context);
 
                 if (toNextStep(context)) {
                     return;
@@ -406,6 +449,13 @@ public class JobActionManagerImpl implements JobActionManager {
             @Override
             public void onException(Throwable e, JobSmContext context) {
                 Job job = context.job;
+
+                // the job is handled by the new lock owner
+                if (isLockLost(context)) {
+                    log.warn("Lock of job {} was lost: {}", job.getId(), e.getMessage());
+                    return;
+                }
+
                 context.setError(e);
                 log.debug("Fail to dispatch job {} to agent {}", job.getId(), job.getAgentId(), e);
                 Sm.execute(context.getCurrent(), Failure, context);
@@ -414,8 +464,16 @@ public class JobActionManagerImpl implements JobActionManager {
             @Override
             public void onFinally(JobSmContext context) {
                 Job job = context.job;
-                InterLock lock = context.getLock();
-                releaseLock(lock, job.getId());
+                JobLock lock = context.getLock();
+
+                // job has to be written before other callback of the job can lock it
+                if (isLockLost(context)) {
+                    jobStateWriter.discard(job.getId());
+                } else {
+                    jobStateWriter.flush(job.getId());
+                }
+
+                releaseLock(lock);
             }
         });
 
@@ -535,6 +593,34 @@ public class JobActionManagerImpl implements JobActionManager {
         });
     }
 
+    /**
+     * Continue queued job to running with acquired agent, release agent if job status changed while waiting
+     */
+    private void onAgentAcquired(String jobId, Agent agent) {
+        Optional<Job> optional = jobDao.findById(jobId);
+
+        if (!optional.isPresent()) {
+            log.debug("Job {} is deleted, release agent {}", jobId, agent.getName());
+            agentService.tryRelease(agent.getId());
+            return;
+        }
+
+        Job job = optional.get();
+
+        if (job.getStatus() != Job.Status.QUEUED) {
+            log.debug("Job {} is not queued, release agent {}", jobId, agent.getName());
+            agentService.tryRelease(agent.getId());
+            return;
+        }
+
+        try {
+            on(job, Job.Status.RUNNING, context -> context.agentId = agent.getId());
+        } catch (Throwable e) {
+            log.warn("Unable to run job {} on agent {}", jobId, agent.getName(), e);
+            agentService.tryRelease(agent.getId());
+        }
+    }
+
     private void setupJobYamlAndSteps(Job job, String yml) {
         FlowNode root = YmlParser.load(job.getFlowName(), yml);
 
@@ -556,7 +642,7 @@ public class JobActionManagerImpl implements JobActionManager {
         }
     }
 
-    private void on(Job job, Job.Status target, Consumer<JobSmContext> configContext) {
+    private JobSmContext on(Job job, Job.Status target, Consumer<JobSmContext> configContext) {
         Status current = new Status(job.getStatus().name());
         Status to = new Status(target.name());
 
@@ -566,9 +652,17 @@ public class JobActionManagerImpl implements JobActionManager {
             configContext.accept(context);
         }
 
-        Sm.execute(current, to, context);
+        try {
+            Sm.execute(current, to, context);
+            return context;
+        } finally {
+            jobStateWriter.flush(job.getId());
+        }
     }
 
+    /**
+     * Read yaml file from commit of job, or the latest commit of yaml branch, from git repo cache
+     */
     private String fetchYamlFromGit(Job job) {
         final String gitUrl = job.getGitUrl();
 
@@ -576,36 +670,23 @@ public class JobActionManagerImpl implements JobActionManager {
             throw new NotAvailableException("Git url is missing");
         }
 
-        final Path dir = getFlowRepoDir(gitUrl, job.getYamlRepoBranch());
+        Optional<byte[]> yml;
 
         try {
-            GitClient client = new GitClient(gitUrl, tmpDir, getSimpleSecret(job.getCredentialName()));
-            client.klone(dir, job.getYamlRepoBranch());
-        } catch (Exception e) {
+            String commitId = job.getContext().get(GIT_COMMIT_ID);
+            SimpleSecret secret = getSimpleSecret(job.getCredentialName());
+
+            yml = gitRepoCache.read(gitUrl, secret, job.getYamlRepoBranch(), commitId, fileName ->
+                    (fileName.endsWith(".yaml") || fileName.endsWith(".yml")) && fileName.startsWith(".flowci"));
+        } catch (IOException e) {
             throw new NotAvailableException("Unable to fetch yaml config for flow");
         }
 
-        String[] files = dir.toFile().list((currentDir, fileName) ->
-                (fileName.endsWith(".yaml") || fileName.endsWith(".yml")) && fileName.startsWith(".flowci"));
-
-        if (files == null || files.length == 0) {
+        if (!yml.isPresent()) {
             throw new NotAvailableException("Unable to find yaml file in repo");
         }
 
-        try {
-            byte[] ymlInBytes = Files.readAllBytes(Paths.get(dir.toString(), files[0]));
-            return new String(ymlInBytes);
-        } catch (IOException e) {
-            throw new NotAvailableException("Unable to read yaml file in repo").setExtra(job);
-        }
-    }
-
-    /**
-     * Get flow repo path: {repo dir}/{flow id}
-     */
-    private Path getFlowRepoDir(String repoUrl, String branch) {
-        String b64 = Base64.getEncoder().encodeToString(repoUrl.getBytes());
-        return Paths.get(repoDir.toString(), b64 + "_" + branch);
+        return new String(yml.get(), StandardCharsets.UTF_8);
     }
 
     private SimpleSecret getSimpleSecret(String credentialName) {
@@ -676,6 +757,7 @@ public class JobActionManagerImpl implements JobActionManager {
         Step step = context.step; // current step
 
         // save executed cmd
+        checkLock(context);
         stepService.resultUpdate(step);
         log.debug("Step {} been recorded", step);
 
@@ -705,6 +787,7 @@ public class JobActionManagerImpl implements JobActionManager {
             Agent agent = agentService.get(job.getAgentId());
             CmdIn cmd = cmdManager.createShellCmd(job, nextStep, tree);
             boolean canExecute = conditionManager.run(cmd);
+            checkLock(context);
 
             if (!canExecute) {
                 nextStep.setStartAt(new Date());
@@ -737,12 +820,15 @@ public class JobActionManagerImpl implements JobActionManager {
         Sm.execute(context.getCurrent(), new Status(statusFromContext.name()), context);
     }
 
-    private synchronized void setJobStatusAndSave(Job job, Job.Status newStatus, String message) {
+    /**
+     * Job will be written when transition finished if new status is downgrade,
+     * otherwise written with deferred changes immediately
+     */
+    private void setJobStatusAndSave(Job job, Job.Status newStatus, String message) {
         // check status order, just save job if new status is downgrade
         if (job.getStatus().getOrder() >= newStatus.getOrder()) {
             // push updated job object as well
-            eventManager.publish(new JobStatusChangeEvent(this, job));
-            jobDao.save(job);
+            jobStateWriter.defer(job);
             return;
         }
 
@@ -750,8 +836,7 @@ public class JobActionManagerImpl implements JobActionManager {
         job.setMessage(message);
         job.setStatusToContext(newStatus);
 
-        jobDao.save(job);
-        eventManager.publish(new JobStatusChangeEvent(this, job));
+        jobStateWriter.write(job);
         logInfo(job, "status = {}", job.getStatus());
     }
 
@@ -789,20 +874,24 @@ public class JobActionManagerImpl implements JobActionManager {
         log.info("[Job] " + job.getKey() + " " + message, params);
     }
 
-    private Optional<InterLock> lockJob(String jobId) {
-        String path = zk.makePath("/job-locks", jobId);
-        return zk.lock(path, 10);
+    /**
+     * Abort writes of job if the lock was lost, since the job might be locked by other server node
+     */
+    private void checkLock(JobSmContext context) {
+        if (isLockLost(context)) {
+            throw new StatusException("Lock of job {0} was lost", context.job.getId());
+        }
     }
 
-    private boolean hasJobLock(String jobId) {
-        String path = zk.makePath("/job-locks", jobId);
-        return zk.exist(path);
+    private boolean isLockLost(JobSmContext context) {
+        JobLock lock = context.lock;
+        return lock != null && !jobLockManager.isValid(lock);
     }
 
-    private void releaseLock(InterLock lock, String jobId) {
+    private void releaseLock(JobLock lock) {
         try {
-            zk.release(lock);
-            log.debug("Job {} is released", jobId);
+            jobLockManager.release(lock);
+            log.debug("Job {} is released", lock.getJobId());
         } catch (Exception warn) {
             log.warn(warn);
         }
@@ -830,6 +919,10 @@ public class JobActionManagerImpl implements JobActionManager {
 
         private String reasonForCancel;
 
-        private InterLock lock;
+        private JobLock lock;
+
+        private Runnable onDispatched;
+
+        private boolean waitingForAgent;
     }
 }
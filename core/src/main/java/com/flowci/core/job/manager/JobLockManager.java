@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.JobLock;
+
+import java.util.Optional;
+
+/**
+ * Lock job to make step callbacks of the same job handled one by one
+ *
+ * @author yang
+ */
+public interface JobLockManager {
+
+    /**
+     * Lock job within timeout
+     *
+     * @return lock instance or empty if timeout
+     */
+    Optional<JobLock> lock(String jobId, int timeoutInSeconds);
+
+    /**
+     * Release lock from the same thread that acquired it
+     */
+    void release(JobLock lock);
+
+    /**
+     * Check lock is still owned by current process
+     */
+    boolean isValid(JobLock lock);
+
+    /**
+     * Check job is locked by any process
+     */
+    boolean isLocked(String jobId);
+
+    /**
+     * Clean up resources of job when it's finished
+     */
+    void finish(String jobId);
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.Job;
+
+/**
+ * Write job state to db and publish JobStatusChangeEvent in order of job
+ *
+ * @author yang
+ */
+public interface JobStateWriter {
+
+    /**
+     * Write job with status changed immediately, the deferred write of the job will be written before it
+     */
+    void write(Job job);
+
+    /**
+     * Defer write of job that status not changed, multiple deferred writes of the same job are coalesced to one
+     */
+    void defer(Job job);
+
+    /**
+     * Write deferred job
+     */
+    void flush(String jobId);
+
+    /**
+     * Drop deferred job without writing, for the job lock was lost
+     */
+    void discard(String jobId);
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.google.common.util.concurrent.Striped;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Writes are ordered by striped lock of job id instead of a global lock,
+ * only changed fields are written by JobDao.saveChanges
+ *
+ * @author yang
+ */
+@Log4j2
+@Component
+public class JobStateWriterImpl implements JobStateWriter {
+
+    private final Striped<Lock> locks = Striped.lock(256);
+
+    // key as job id, value as the latest deferred job instance
+    private final Map<String, Job> deferred = new ConcurrentHashMap<>();
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired
+    private SpringEventManager eventManager;
+
+    @Override
+    public void write(Job job) {
+        Lock lock = locks.get(job.getId());
+        lock.lock();
+
+        try {
+            Job pending = deferred.remove(job.getId());
+            if (pending != null && pending != job) {
+                save(pending);
+            }
+
+            jobDao.saveChanges(job);
+            eventManager.publish(new JobStatusChangeEvent(this, job));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void defer(Job job) {
+        Job previous = deferred.put(job.getId(), job);
+
+        // changes of the other instance of job has to be written
+        if (previous != null && previous != job) {
+            Lock lock = locks.get(job.getId());
+            lock.lock();
+
+            try {
+                save(previous);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void flush(String jobId) {
+        Lock lock = locks.get(jobId);
+        lock.lock();
+
+        try {
+            Job pending = deferred.remove(jobId);
+            if (pending != null) {
+                save(pending);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void discard(String jobId) {
+        if (deferred.remove(jobId) != null) {
+            log.warn("Deferred write of job {} been discarded", jobId);
+        }
+    }
+
+    private void save(Job job) {
+        if (jobDao.saveChanges(job)) {
+            eventManager.publish(new JobStatusChangeEvent(this, job));
+            log.debug("Deferred write of job {} been flushed", job.getId());
+        }
+    }
+}
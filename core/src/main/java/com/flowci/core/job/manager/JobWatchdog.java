@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.Job;
+
+/**
+ * Watch expiry of queued jobs and step timeout of running jobs, and set job to timeout on deadline
+ *
+ * @author yang
+ */
+public interface JobWatchdog {
+
+    /**
+     * Watch job by its status, or stop watching if job is not created, queued or running
+     */
+    void watch(Job job);
+
+    /**
+     * Reload jobs to watch from db
+     */
+    void rebuild();
+
+    /**
+     * Num of jobs been watched
+     */
+    int size();
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.helper.ThreadHelper;
+import com.flowci.core.common.manager.TimingWheel;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobLock;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.service.StepService;
+import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Job deadlines are kept in a timing wheel by job id, instead of waiting for the message ttl of job queue
+ * - created and queued job is expired at 'expireAt'
+ * - running job is timeout if no progress within step timeout and grace, from start of the current step
+ * <p>
+ * Running job is watched from its last callback, which is not later than start of the current step,
+ * deadline is checked again on the job and current step loaded from db with job lock, it will be watched again
+ * if not reached, so the deadline from the stale or missed status event will not set job to timeout by mistake
+ *
+ * @author yang
+ */
+@Log4j2
+@Component
+public class JobWatchdogImpl implements JobWatchdog {
+
+    private static final Set<Job.Status> Watched = ImmutableSet.of(
+            Job.Status.CREATED,
+            Job.Status.QUEUED,
+            Job.Status.RUNNING
+    );
+
+    private static final long TickInMillis = 1000;
+
+    private static final int WheelSize = 8192;
+
+    private static final long RebuildInterval = 5 * 60 * 1000; // 5 minutes
+
+    private static final int LockTimeoutInSeconds = 10;
+
+    private final ThreadPoolTaskExecutor timeoutExecutor = ThreadHelper.createTaskExecutor(2, 2, 100000, "job-watchdog-");
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(
+            TickInMillis, WheelSize, System.currentTimeMillis(), timeoutExecutor, this::onDeadline);
+
+    @Autowired
+    private AppProperties.Job jobProperties;
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired
+    private JobLockManager jobLockManager;
+
+    @Autowired
+    private JobActionManager jobActionManager;
+
+    @Autowired
+    private StepService stepService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    private void init() {
+        meterRegistry.gauge("flowci.job.watched", wheel, TimingWheel::size);
+    }
+
+    @PreDestroy
+    public void close() {
+        wheel.close();
+        timeoutExecutor.shutdown();
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void start() {
+        rebuild();
+        wheel.start("job-watchdog");
+    }
+
+    @EventListener
+    public void onJobStatusChange(JobStatusChangeEvent event) {
+        watch(event.getJob());
+    }
+
+    @Override
+    public void watch(Job job) {
+        if (!Watched.contains(job.getStatus())) {
+            wheel.cancel(job.getId());
+            return;
+        }
+
+        Optional<Long> deadline = deadline(job, job.getFinishAt());
+        if (deadline.isPresent()) {
+            wheel.schedule(job.getId(), deadline.get());
+            return;
+        }
+
+        wheel.cancel(job.getId());
+    }
+
+    /**
+     * Jobs from other server nodes are watched by rebuild, in case the node was stopped
+     */
+    @Override
+    @Scheduled(fixedDelay = RebuildInterval, initialDelay = RebuildInterval)
+    public void rebuild() {
+        List<Job> jobs = jobDao.findAllExpiryByStatusIn(Watched);
+        for (Job job : jobs) {
+            watch(job);
+        }
+        log.debug("{} jobs are watched", wheel.size());
+    }
+
+    @Override
+    public int size() {
+        return wheel.size();
+    }
+
+    private void onDeadline(String jobId) {
+        Optional<Job> optional = jobDao.findById(jobId);
+        if (!optional.isPresent() || !Watched.contains(optional.get().getStatus())) {
+            return;
+        }
+
+        Optional<JobLock> lock = jobLockManager.lock(jobId, LockTimeoutInSeconds);
+        if (!lock.isPresent()) {
+            // job is handling by others, check it later
+            wheel.schedule(jobId, System.currentTimeMillis() + LockTimeoutInSeconds * 1000);
+            return;
+        }
+
+        try {
+            // reload after locked
+            optional = jobDao.findById(jobId);
+            if (!optional.isPresent()) {
+                return;
+            }
+
+            Job job = optional.get();
+            Optional<Long> deadline = deadline(job, currentStepStartAt(job));
+
+            if (!Watched.contains(job.getStatus()) || !deadline.isPresent()) {
+                return;
+            }
+
+            if (deadline.get() > System.currentTimeMillis()) {
+                wheel.schedule(jobId, deadline.get());
+                return;
+            }
+
+            log.info("[Job: Timeout] {} with status {} is timeout", job.getKey(), job.getStatus());
+            jobActionManager.toTimeout(job);
+        } catch (Exception e) {
+            log.warn("Unable to set job {} to timeout: {}", jobId, e.getMessage());
+        } finally {
+            try {
+                jobLockManager.release(lock.get());
+            } catch (Exception ignore) {
+
+            }
+        }
+    }
+
+    /**
+     * @param progressAt start time of the current step for running job, or job created time if not given
+     */
+    private Optional<Long> deadline(Job job, Date progressAt) {
+        if (job.getStatus() != Job.Status.RUNNING) {
+            return Optional.ofNullable(job.getExpireAt()).map(Date::getTime);
+        }
+
+        if (progressAt == null) {
+            progressAt = job.getCreatedAt();
+        }
+
+        long from = progressAt == null ? System.currentTimeMillis() : progressAt.getTime();
+        long timeout = job.getTimeout() + jobProperties.getStepTimeoutGrace();
+        return Optional.of(from + timeout * 1000);
+    }
+
+    /**
+     * Step start time is the dispatched time until it's reported by agent
+     */
+    private Date currentStepStartAt(Job job) {
+        if (job.getStatus() != Job.Status.RUNNING || job.getCurrentPath() == null) {
+            return null;
+        }
+
+        Step step = stepService.get(job.getId(), job.getCurrentPath());
+        return step.getStartAt() == null ? job.getFinishAt() : step.getStartAt();
+    }
+}
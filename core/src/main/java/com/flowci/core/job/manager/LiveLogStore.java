@@ -0,0 +1,257 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.LogChunk;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append only store of live step logs, each step has a memory mapped file as ring of bytes,
+ * the file will be {dir}/{job id}/{step id}
+ * - 8 bytes header: total bytes appended to the step
+ * - ring: the latest bytes of log, the byte at offset N of log is at ring position N % ring size
+ * <p>
+ * Logs are kept in file across server restart, until the job removed from store,
+ * and log of job will not be accepted before job init or after removed.
+ * Segments of a job are opened and removed within the lock of job in segments map
+ *
+ * @author yang
+ */
+@Log4j2
+public class LiveLogStore implements Closeable {
+
+    private static final int HeaderSize = Long.BYTES;
+
+    private final Path dir;
+
+    private final int ringSize;
+
+    // key as job id, value as segments by step id
+    private final Map<String, Map<String, Segment>> segments = new ConcurrentHashMap<>();
+
+    public LiveLogStore(Path dir, int ringSize) {
+        this.dir = dir;
+        this.ringSize = ringSize;
+    }
+
+    /**
+     * Create log dir for job to accept logs
+     */
+    public void init(String jobId) {
+        try {
+            Files.createDirectories(dir.resolve(jobId));
+        } catch (IOException e) {
+            log.warn("Unable to create live log dir of job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * Append log to the step, the oldest bytes will be overwritten if the ring is full
+     *
+     * @return false if job not init or removed
+     */
+    public boolean append(String jobId, String stepId, byte[] data) {
+        Optional<Segment> segment = getSegment(jobId, stepId, true);
+        return segment.isPresent() && segment.get().append(data);
+    }
+
+    /**
+     * Read range of step log, the range is cut to bytes still in the ring
+     *
+     * @param offset start offset of log
+     * @param length max bytes to read
+     */
+    public LogChunk read(String jobId, String stepId, long offset, int length) {
+        Optional<Segment> segment = getSegment(jobId, stepId, false);
+        if (!segment.isPresent()) {
+            return LogChunk.empty(0);
+        }
+        return segment.get().read(offset, length);
+    }
+
+    /**
+     * Total bytes appended to the step
+     */
+    public long size(String jobId, String stepId) {
+        Optional<Segment> segment = getSegment(jobId, stepId, false);
+        return segment.map(Segment::size).orElse(0L);
+    }
+
+    /**
+     * Close and delete logs of job
+     */
+    public void remove(String jobId) {
+        segments.compute(jobId, (key, steps) -> {
+            if (steps != null) {
+                steps.values().forEach(Segment::close);
+            }
+
+            try {
+                FileSystemUtils.deleteRecursively(dir.resolve(jobId));
+            } catch (IOException e) {
+                log.warn("Unable to delete live logs of job {}: {}", jobId, e.getMessage());
+            }
+
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        for (Map<String, Segment> steps : segments.values()) {
+            steps.values().forEach(Segment::close);
+        }
+        segments.clear();
+    }
+
+    private Optional<Segment> getSegment(String jobId, String stepId, boolean create) {
+        Map<String, Segment> steps = segments.get(jobId);
+        if (steps != null) {
+            Segment segment = steps.get(stepId);
+            if (segment != null) {
+                return Optional.of(segment);
+            }
+        }
+
+        Path file = dir.resolve(jobId).resolve(toFileName(stepId));
+        Segment[] opened = new Segment[1];
+
+        try {
+            segments.compute(jobId, (key, current) -> {
+                // job not init or removed
+                if (create ? !Files.isDirectory(file.getParent()) : !Files.exists(file)) {
+                    return current;
+                }
+
+                Map<String, Segment> map = current == null ? new ConcurrentHashMap<>() : current;
+                opened[0] = map.computeIfAbsent(stepId, k -> open(file));
+                return map;
+            });
+        } catch (UncheckedIOException e) {
+            log.warn("Unable to open live log {}: {}", file, e.getMessage());
+        }
+
+        return Optional.ofNullable(opened[0]);
+    }
+
+    private Segment open(Path file) {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HeaderSize + ringSize);
+            return new Segment(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Step id is base64 which may contain '/'
+     */
+    private static String toFileName(String stepId) {
+        return stepId.replace('/', '_');
+    }
+
+    private class Segment {
+
+        private final MappedByteBuffer buffer;
+
+        private long written;
+
+        private boolean closed;
+
+        Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            this.written = buffer.getLong(0);
+        }
+
+        synchronized boolean append(byte[] data) {
+            if (closed) {
+                return false;
+            }
+
+            int from = 0;
+            int length = data.length;
+
+            // only keep the tail if data larger than ring
+            if (length > ringSize) {
+                from = length - ringSize;
+                written += from;
+                length = ringSize;
+            }
+
+            int position = (int) (written % ringSize);
+            int first = Math.min(length, ringSize - position);
+
+            ByteBuffer dup = buffer.duplicate();
+            dup.position(HeaderSize + position);
+            dup.put(data, from, first);
+
+            if (first < length) {
+                dup.position(HeaderSize);
+                dup.put(data, from + first, length - first);
+            }
+
+            written += length;
+            buffer.putLong(0, written);
+            return true;
+        }
+
+        synchronized LogChunk read(long offset, int length) {
+            long start = Math.max(Math.max(offset, 0), written - ringSize);
+            long end = Math.min(written, Math.max(offset, 0) + length);
+
+            if (closed || start >= end) {
+                return LogChunk.empty(written);
+            }
+
+            byte[] data = new byte[(int) (end - start)];
+            int position = (int) (start % ringSize);
+            int first = Math.min(data.length, ringSize - position);
+
+            ByteBuffer dup = buffer.duplicate();
+            dup.position(HeaderSize + position);
+            dup.get(data, 0, first);
+
+            if (first < data.length) {
+                dup.position(HeaderSize);
+                dup.get(data, first, data.length - first);
+            }
+
+            return new LogChunk(start, data, written);
+        }
+
+        synchronized long size() {
+            return written;
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+    }
+}
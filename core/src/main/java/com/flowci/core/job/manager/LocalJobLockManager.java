@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.JobLock;
+import com.google.common.util.concurrent.Striped;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Job lock for single server node, by striped in process locks
+ *
+ * @author yang
+ */
+public class LocalJobLockManager implements JobLockManager {
+
+    private static final int Stripes = 256;
+
+    private final Striped<Lock> locks = Striped.lock(Stripes);
+
+    private final Set<String> locked = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public Optional<JobLock> lock(String jobId, int timeoutInSeconds) {
+        Lock lock = locks.get(jobId);
+
+        try {
+            if (!lock.tryLock(timeoutInSeconds, TimeUnit.SECONDS)) {
+                return Optional.empty();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+
+        locked.add(jobId);
+        return Optional.of(new JobLock(jobId, 0L));
+    }
+
+    @Override
+    public void release(JobLock lock) {
+        locked.remove(lock.getJobId());
+        locks.get(lock.getJobId()).unlock();
+    }
+
+    @Override
+    public boolean isValid(JobLock lock) {
+        return locked.contains(lock.getJobId());
+    }
+
+    @Override
+    public boolean isLocked(String jobId) {
+        return locked.contains(jobId);
+    }
+
+    @Override
+    public void finish(String jobId) {
+        // nothing to clean up
+    }
+}
@@ -23,6 +23,7 @@ import com.flowci.exception.NotFoundException;
 import com.flowci.tree.FlowNode;
 import com.flowci.tree.NodeTree;
 import com.flowci.tree.YmlParser;
+import com.flowci.util.HashingHelper;
 import com.github.benmanes.caffeine.cache.Cache;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,6 +41,9 @@ public class YmlManagerImpl implements YmlManager {
     @Autowired
     private Cache<String, NodeTree> jobTreeCache;
 
+    @Autowired
+    private Cache<String, NodeTree> ymlTreeCache;
+
     @Autowired
     private JobYmlDao jobYmlDao;
 
@@ -60,13 +64,20 @@ public class YmlManagerImpl implements YmlManager {
         return jobYmlDao.insert(jobYml);
     }
 
+    /**
+     * The tree is shared by jobs which have the same yml content, should be read only
+     */
     @Override
     public NodeTree getTree(Job job) {
         return jobTreeCache.get(job.getId(), s -> {
             log.debug("Cache tree for job: {}", job.getId());
             JobYml yml = jobYmlDao.findById(job.getId()).get();
-            FlowNode root = YmlParser.load(yml.getName(), yml.getRaw());
-            return NodeTree.create(root);
+            String hash = HashingHelper.sha256(yml.getName() + "\n" + yml.getRaw());
+
+            return ymlTreeCache.get(hash, key -> {
+                FlowNode root = YmlParser.load(yml.getName(), yml.getRaw());
+                return NodeTree.create(root);
+            });
         });
     }
 
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.JobLock;
+import com.flowci.zookeeper.ZookeeperClient;
+import com.flowci.zookeeper.ZookeeperException;
+import lombok.extern.log4j.Log4j2;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.data.Stat;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Job lock for clustered server nodes
+ * - steps of a job are serialized by the local striped lock
+ * - the server node takes a lease of the job from zookeeper by an ephemeral node /{root}/{job id},
+ * the lease is reused for following steps, and released when job finished or been idle over lease timeout,
+ * the lease of finished job is released by the lock holder on release if the job is locked
+ * - the server node waiting for a lease marks the lease node as contended by setting its data,
+ * the owner watches the data and returns the lease at once if it's idle, or on release if it's locked
+ * - the creation zxid of lease node is used as epoch to fence lock from stale lease owner,
+ * all leases are dropped if zookeeper connection suspended or lost
+ *
+ * @author yang
+ */
+@Log4j2
+public class ZookeeperJobLockManager extends LocalJobLockManager {
+
+    private static final long LeaseIdleTimeout = 3 * 1000; // 3 seconds
+
+    private static final long ContendedWaitInMillis = 1000;
+
+    private static final byte[] Contended = {1};
+
+    private final ZookeeperClient zk;
+
+    private final String root;
+
+    // key as job id
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    public ZookeeperJobLockManager(ZookeeperClient zk, String root) {
+        this.zk = zk;
+        this.root = root;
+        this.zk.addConnectionListener((client, state) -> {
+            if (!state.isConnected()) {
+                log.warn("Zookeeper connection {}, all job leases are dropped", state);
+                leases.clear();
+            }
+        });
+    }
+
+    @Override
+    public Optional<JobLock> lock(String jobId, int timeoutInSeconds) {
+        long deadline = System.currentTimeMillis() + timeoutInSeconds * 1000L;
+
+        Optional<JobLock> local = super.lock(jobId, timeoutInSeconds);
+        if (!local.isPresent()) {
+            return Optional.empty();
+        }
+
+        try {
+            Lease lease = leases.get(jobId);
+
+            if (lease == null) {
+                Optional<Long> epoch = takeLease(jobId, deadline);
+                if (!epoch.isPresent()) {
+                    super.release(local.get());
+                    return Optional.empty();
+                }
+
+                lease = new Lease(epoch.get());
+                leases.put(jobId, lease);
+                watchContention(jobId, lease);
+            }
+
+            lease.touch();
+            return Optional.of(new JobLock(jobId, lease.epoch));
+        } catch (ZookeeperException e) {
+            log.warn("Unable to take lease of job {}: {}", jobId, e.getMessage());
+            super.release(local.get());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void release(JobLock lock) {
+        Lease lease = leases.get(lock.getJobId());
+
+        if (lease == null || lease.epoch != lock.getEpoch()) {
+            log.warn("Lease of job {} with epoch {} was lost while locked", lock.getJobId(), lock.getEpoch());
+        } else if (lease.contended || lease.finished) {
+            returnLease(lock.getJobId(), lease);
+        } else {
+            lease.touch();
+        }
+
+        super.release(lock);
+    }
+
+    @Override
+    public boolean isValid(JobLock lock) {
+        Lease lease = leases.get(lock.getJobId());
+        return super.isValid(lock) && lease != null && lease.epoch == lock.getEpoch();
+    }
+
+    @Override
+    public boolean isLocked(String jobId) {
+        if (super.isLocked(jobId)) {
+            return true;
+        }
+
+        // idle lease of current server node
+        if (leases.containsKey(jobId)) {
+            return false;
+        }
+
+        // lease held by other server node, which is returned at once if it's idle
+        String path = getPath(jobId);
+        if (!zk.trySet(path, Contended)) {
+            return false;
+        }
+
+        return !zk.waitForDeleted(path, ContendedWaitInMillis);
+    }
+
+    @Override
+    public void finish(String jobId) {
+        Lease lease = leases.get(jobId);
+        if (lease == null) {
+            return;
+        }
+
+        lease.finished = true;
+
+        // the lock holder, which could be the caller, returns it on release
+        if (super.isLocked(jobId)) {
+            return;
+        }
+
+        Optional<JobLock> local = super.lock(jobId, 0);
+        if (!local.isPresent()) {
+            return;
+        }
+
+        try {
+            returnLease(jobId, lease);
+        } finally {
+            super.release(local.get());
+        }
+    }
+
+    /**
+     * Return leases that idle over timeout, so other server node is able to take it
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void releaseIdleLeases() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Lease>> iterator = leases.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<String, Lease> entry = iterator.next();
+            String jobId = entry.getKey();
+
+            if (now - entry.getValue().lastUsedAt < LeaseIdleTimeout) {
+                continue;
+            }
+
+            // skip if job is locked right now
+            Optional<JobLock> local = super.lock(jobId, 0);
+            if (!local.isPresent()) {
+                continue;
+            }
+
+            try {
+                returnLease(jobId, entry.getValue());
+            } finally {
+                super.release(local.get());
+            }
+        }
+    }
+
+    private Optional<Long> takeLease(String jobId, long deadline) {
+        String path = getPath(jobId);
+
+        for (; ; ) {
+            Optional<Stat> stat = zk.tryCreate(CreateMode.EPHEMERAL, path, null);
+            if (stat.isPresent()) {
+                return Optional.of(stat.get().getCzxid());
+            }
+
+            // stale lease of current session which was dropped on connection suspended
+            Optional<Stat> existing = zk.stat(path);
+            if (existing.isPresent() && existing.get().getEphemeralOwner() == zk.getSessionId()) {
+                deleteLease(jobId);
+                continue;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return Optional.empty();
+            }
+
+            // ask the owner to return the lease
+            if (zk.trySet(path, Contended)) {
+                zk.waitForDeleted(path, remaining);
+            }
+        }
+    }
+
+    private void watchContention(String jobId, Lease lease) {
+        Optional<byte[]> data = zk.watchData(getPath(jobId), () -> onContended(jobId, lease));
+
+        // contended before watched
+        if (data.isPresent() && data.get().length > 0) {
+            lease.contended = true;
+        }
+    }
+
+    private void onContended(String jobId, Lease lease) {
+        lease.contended = true;
+
+        // return it now if the lease is idle, otherwise it will be returned on release
+        Optional<JobLock> local = super.lock(jobId, 0);
+        if (!local.isPresent()) {
+            return;
+        }
+
+        try {
+            returnLease(jobId, lease);
+        } finally {
+            super.release(local.get());
+        }
+    }
+
+    private void returnLease(String jobId, Lease lease) {
+        if (leases.remove(jobId, lease)) {
+            deleteLease(jobId);
+        }
+    }
+
+    private void deleteLease(String jobId) {
+        try {
+            zk.delete(getPath(jobId), false);
+        } catch (ZookeeperException e) {
+            log.warn("Unable to delete lease of job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    private String getPath(String jobId) {
+        return zk.makePath(root, jobId);
+    }
+
+    private static class Lease {
+
+        private final long epoch;
+
+        private volatile long lastUsedAt;
+
+        private volatile boolean contended;
+
+        private volatile boolean finished;
+
+        Lease(long epoch) {
+            this.epoch = epoch;
+        }
+
+        void touch() {
+            lastUsedAt = System.currentTimeMillis();
+        }
+    }
+}
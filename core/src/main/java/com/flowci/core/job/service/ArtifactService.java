@@ -16,6 +16,7 @@
 
 package com.flowci.core.job.service;
 
+import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.JobArtifact;
 import org.springframework.web.multipart.MultipartFile;
@@ -35,6 +36,20 @@ public interface ArtifactService {
      */
     void save(Job job, String srcDir, String md5, MultipartFile file);
 
+    /**
+     * Save artifact to blob store, the blob will be shared if content existed
+     *
+     * @param sha256 expected file sha256 from client, verified if not null
+     */
+    void save(Job job, String srcDir, String md5, String sha256, MultipartFile file);
+
+    /**
+     * Hash handshake before upload, create artifact by existing blob
+     *
+     * @return true if artifact created, false if content not existed and should be uploaded
+     */
+    boolean link(Job job, String srcDir, String md5, String sha256, String fileName);
+
     /**
      * Fetch report from file store
      *
@@ -43,4 +58,25 @@ public interface ArtifactService {
      * @return http access path
      */
     JobArtifact fetch(Job job, String artifactId);
+
+    /**
+     * Delete artifacts of job, and blobs which no longer referred
+     *
+     * @return num of artifact deleted
+     */
+    Long delete(Job job);
+
+    /**
+     * Delete artifacts of flow, and blobs which no longer referred
+     *
+     * @return num of artifact deleted
+     */
+    Long delete(Flow flow);
+
+    /**
+     * Delete artifacts after their files removed, blobs are deleted if no longer referred
+     *
+     * @return bytes of files removed
+     */
+    long purge(List<JobArtifact> artifacts);
 }
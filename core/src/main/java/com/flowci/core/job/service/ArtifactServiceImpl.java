@@ -16,16 +16,21 @@
 
 package com.flowci.core.job.service;
 
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.job.dao.ArtifactBlobDao;
 import com.flowci.core.job.dao.JobArtifactDao;
 import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.ArtifactBlob;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.JobArtifact;
+import com.flowci.exception.ArgumentException;
 import com.flowci.exception.DuplicateException;
 import com.flowci.exception.NotAvailableException;
 import com.flowci.exception.NotFoundException;
 import com.flowci.store.FileManager;
 import com.flowci.store.Pathable;
 import com.flowci.store.StringPath;
+import com.flowci.util.HashingHelper;
 import com.flowci.util.StringHelper;
 import com.google.api.client.util.Lists;
 import lombok.extern.log4j.Log4j2;
@@ -40,6 +45,12 @@ import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Artifact content saved as blob by sha256, which is shared by artifacts with same content
+ * and deleted when no longer referred.
+ * The blob content is saved by file name with generation of blob, the blob created again
+ * while the previous one is deleting writes to a different file
+ */
 @Log4j2
 @Service
 public class ArtifactServiceImpl implements ArtifactService {
@@ -52,6 +63,9 @@ public class ArtifactServiceImpl implements ArtifactService {
     @Autowired
     private JobArtifactDao jobArtifactDao;
 
+    @Autowired
+    private ArtifactBlobDao artifactBlobDao;
+
     @Qualifier("fileManager")
     @Autowired
     private FileManager fileManager;
@@ -63,28 +77,63 @@ public class ArtifactServiceImpl implements ArtifactService {
 
     @Override
     public void save(Job job, String srcDir, String md5, MultipartFile file) {
-        srcDir = formatSrcDir(srcDir);
-        Pathable[] artifactPath = getArtifactPath(job, srcDir);
+        save(job, srcDir, md5, null, file);
+    }
 
-        try (InputStream reportRaw = file.getInputStream()) {
-            // save to file manager by file name
-            String path = fileManager.save(file.getOriginalFilename(), reportRaw, artifactPath);
+    @Override
+    public void save(Job job, String srcDir, String md5, String sha256, MultipartFile file) {
+        String hash = sha256(file);
+        if (StringHelper.hasValue(sha256) && !sha256.equalsIgnoreCase(hash)) {
+            throw new ArgumentException("Artifact sha256 not matched");
+        }
+
+        // ref the blob before saving content, so it will not be deleted while uploading
+        ArtifactBlob blob = artifactBlobDao.reserve(hash, file.getContentType(), file.getSize());
+
+        try {
+            String path = isSaved(blob) ? blob.getPath() : saveBlob(blob, file);
 
             JobArtifact artifact = new JobArtifact();
-            artifact.setJobId(job.getId());
             artifact.setFileName(file.getOriginalFilename());
             artifact.setContentType(file.getContentType());
             artifact.setContentSize(file.getSize());
             artifact.setPath(path);
-            artifact.setSrcDir(srcDir);
-            artifact.setMd5(md5);
 
-            jobArtifactDao.save(artifact);
-            jobDao.increaseNumOfArtifact(job.getId());
+            saveArtifact(job, srcDir, md5, hash, artifact);
         } catch (IOException e) {
+            release(hash);
             throw new NotAvailableException("Invalid artifact data");
-        } catch (DuplicateKeyException e) {
-            throw new DuplicateException("Duplicate job artifact");
+        } catch (RuntimeException e) {
+            release(hash);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean link(Job job, String srcDir, String md5, String sha256, String fileName) {
+        ArtifactBlob blob = artifactBlobDao.acquire(sha256.toLowerCase());
+        if (blob == null) {
+            return false;
+        }
+
+        // content of blob is uploading
+        if (!isSaved(blob)) {
+            release(blob.getSha256());
+            return false;
+        }
+
+        JobArtifact artifact = new JobArtifact();
+        artifact.setFileName(fileName);
+        artifact.setContentType(blob.getContentType());
+        artifact.setContentSize(blob.getSize());
+        artifact.setPath(blob.getPath());
+
+        try {
+            saveArtifact(job, srcDir, md5, blob.getSha256(), artifact);
+            return true;
+        } catch (RuntimeException e) {
+            release(blob.getSha256());
+            throw e;
         }
     }
 
@@ -97,8 +146,16 @@ public class ArtifactServiceImpl implements ArtifactService {
 
         try {
             JobArtifact artifact = optional.get();
-            Pathable[] artifactPath = getArtifactPath(job, artifact.getSrcDir());
-            InputStream stream = fileManager.read(artifact.getFileName(), artifactPath);
+            InputStream stream;
+
+            if (StringHelper.hasValue(artifact.getSha256())) {
+                ArtifactBlob blob = getBlob(artifact.getSha256());
+                stream = fileManager.read(blob.fileName(), ArtifactBlob.path(blob.getSha256()));
+            } else {
+                Pathable[] artifactPath = getArtifactPath(job, artifact.getSrcDir());
+                stream = fileManager.read(artifact.getFileName(), artifactPath);
+            }
+
             artifact.setSrc(stream);
             return artifact;
         } catch (IOException e) {
@@ -106,6 +163,131 @@ public class ArtifactServiceImpl implements ArtifactService {
         }
     }
 
+    @Override
+    public Long delete(Job job) {
+        return delete(jobArtifactDao.findAllByJobId(job.getId()));
+    }
+
+    @Override
+    public Long delete(Flow flow) {
+        return delete(jobArtifactDao.findAllByFlowId(flow.getId()));
+    }
+
+    @Override
+    public long purge(List<JobArtifact> artifacts) {
+        long bytes = 0;
+
+        // each document deleted right after its blob released or file removed,
+        // so the ref of blob can be found again if it's interrupted
+        for (JobArtifact artifact : artifacts) {
+            if (StringHelper.hasValue(artifact.getSha256())) {
+                bytes += release(artifact.getSha256());
+            } else if (StringHelper.hasValue(artifact.getPath())) {
+                // artifact saved in job dir
+                bytes += remove(artifact);
+            }
+
+            jobArtifactDao.delete(artifact);
+        }
+
+        return bytes;
+    }
+
+    private Long delete(List<JobArtifact> artifacts) {
+        jobArtifactDao.deleteAll(artifacts);
+
+        for (JobArtifact artifact : artifacts) {
+            if (StringHelper.hasValue(artifact.getSha256())) {
+                release(artifact.getSha256());
+            }
+        }
+
+        return (long) artifacts.size();
+    }
+
+    private void saveArtifact(Job job, String srcDir, String md5, String sha256, JobArtifact artifact) {
+        artifact.setJobId(job.getId());
+        artifact.setFlowId(job.getFlowId());
+        artifact.setSrcDir(formatSrcDir(srcDir));
+        artifact.setMd5(md5);
+        artifact.setSha256(sha256);
+
+        try {
+            jobArtifactDao.save(artifact);
+            jobDao.increaseNumOfArtifact(job.getId());
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateException("Duplicate job artifact");
+        }
+    }
+
+    private ArtifactBlob getBlob(String sha256) {
+        Optional<ArtifactBlob> optional = artifactBlobDao.findById(sha256);
+        if (!optional.isPresent()) {
+            throw new NotFoundException("The artifact blob not available");
+        }
+        return optional.get();
+    }
+
+    private String saveBlob(ArtifactBlob blob, MultipartFile file) throws IOException {
+        String sha256 = blob.getSha256();
+
+        try (InputStream raw = file.getInputStream()) {
+            String path = fileManager.save(blob.fileName(), raw, file.getSize(), ArtifactBlob.path(sha256));
+            artifactBlobDao.setPath(sha256, path);
+            log.debug("Artifact blob {} saved", sha256);
+            return path;
+        }
+    }
+
+    /**
+     * Remove a ref of blob, and delete content if it's not referred
+     *
+     * @return bytes of blob content deleted
+     */
+    private long release(String sha256) {
+        ArtifactBlob blob = artifactBlobDao.release(sha256);
+        if (blob == null || blob.getRefs() > 0) {
+            return 0;
+        }
+
+        // remove content of the deleted generation only, since blob might be created again right now
+        ArtifactBlob deleted = artifactBlobDao.deleteIfUnused(sha256);
+        if (deleted == null) {
+            return 0;
+        }
+
+        try {
+            fileManager.remove(deleted.fileName(), ArtifactBlob.path(sha256));
+            log.debug("Artifact blob {} deleted", sha256);
+            return deleted.getSize() == null ? 0 : deleted.getSize();
+        } catch (IOException e) {
+            log.warn("Unable to delete artifact blob {}: {}", sha256, e.getMessage());
+            return 0;
+        }
+    }
+
+    private long remove(JobArtifact artifact) {
+        try {
+            fileManager.remove(artifact.getPath());
+            return artifact.getContentSize() == null ? 0 : artifact.getContentSize();
+        } catch (IOException e) {
+            log.warn("Unable to delete artifact {}: {}", artifact.getPath(), e.getMessage());
+            return 0;
+        }
+    }
+
+    private static boolean isSaved(ArtifactBlob blob) {
+        return blob != null && blob.getRefs() > 0 && blob.getPath() != null;
+    }
+
+    private static String sha256(MultipartFile file) {
+        try (InputStream raw = file.getInputStream()) {
+            return HashingHelper.sha256(raw);
+        } catch (IOException e) {
+            throw new NotAvailableException("Invalid artifact data");
+        }
+    }
+
     private static Pathable[] getArtifactPath(Job job, String srcDir) {
         String[] split = srcDir.split(Separator);
         List<Pathable> list = Lists.newArrayListWithCapacity(split.length + 3);
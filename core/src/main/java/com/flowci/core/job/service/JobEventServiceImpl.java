@@ -139,7 +139,7 @@ public class JobEventServiceImpl implements JobEventService {
 
     @EventListener(value = ContextRefreshedEvent.class)
     public void startCallbackQueueConsumer() throws IOException {
-        callbackQueueManager.startConsumer(false, (header, raw, envelope) -> {
+        callbackQueueManager.startConsumer(false, rabbitProperties.getCallbackConcurrency(), (header, raw, envelope) -> {
             byte ind = raw[0];
             byte[] body = Arrays.copyOfRange(raw, 1, raw.length);
 
@@ -198,17 +198,17 @@ public class JobEventServiceImpl implements JobEventService {
             final String queue = flow.getQueueName();
             jobsQueueManager.declare(queue, true, 255, rabbitProperties.getJobDlExchange());
 
-            jobsQueueManager.startConsumer(queue, false, (header, body, envelope) -> {
+            // ack after job dispatched, so queued jobs are kept in queue until agent available
+            jobsQueueManager.startConsumer(queue, rabbitProperties.getJobConcurrency(), (header, body, envelope, ack) -> {
                 try {
                     String jobId = new String(body);
                     Job job = jobService.get(jobId);
                     logInfo(job, "received from queue");
-                    jobActionManager.toRun(job);
+                    jobActionManager.toRun(job, ack);
                 } catch (Exception e) {
                     log.warn(e);
+                    ack.run();
                 }
-
-                return true;
             });
         } catch (IOException e) {
             log.warn(e);
@@ -21,6 +21,7 @@ import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Job.Trigger;
 import com.flowci.core.job.domain.JobDesc;
 import com.flowci.core.job.domain.JobItem;
+import com.flowci.core.job.domain.JobItemPage;
 import com.flowci.core.job.domain.JobYml;
 import com.flowci.domain.StringVars;
 import org.springframework.data.domain.Page;
@@ -64,6 +65,15 @@ public interface JobService {
      */
     Page<JobItem> list(Flow flow, int page, int size);
 
+    /**
+     * List job by build number cursor, which is constant time for any page
+     *
+     * @param before build number cursor, from the latest job if null
+     * @param size   page size from 1 to 100
+     * @param count  set approximate num of jobs to page if true
+     */
+    JobItemPage list(Flow flow, Long before, int size, boolean count);
+
     /**
      * Create a job by flow and yml, job status will be PENDING -> LOADING -> CREATED,
      *
@@ -54,6 +54,7 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -69,6 +70,8 @@ public class JobServiceImpl implements JobService {
 
     private static final Sort SortByBuildNumber = Sort.by(Direction.DESC, "buildNumber");
 
+    private static final int MaxPageSize = 100;
+
     //====================================================================
     //        %% Spring injection
     //====================================================================
@@ -113,6 +116,9 @@ public class JobServiceImpl implements JobService {
     @Autowired
     private LocalTaskService localTaskService;
 
+    @Autowired
+    private RetentionService retentionService;
+
     //====================================================================
     //        %% Public functions
     //====================================================================
@@ -170,6 +176,30 @@ public class JobServiceImpl implements JobService {
         return jobItemDao.findAllByFlowId(flow.getId(), pageable);
     }
 
+    @Override
+    public JobItemPage list(Flow flow, Long before, int size, boolean count) {
+        if (size <= 0 || size > MaxPageSize) {
+            throw new ArgumentException("Page size must be between 1 and {0}", Integer.toString(MaxPageSize));
+        }
+
+        // load one more item to know whether it has next page
+        List<JobItem> items = jobItemDao.listByFlowId(flow.getId(), before, size + 1);
+
+        JobItemPage page = new JobItemPage();
+        if (items.size() > size) {
+            items = items.subList(0, size);
+            page.setNext(items.get(size - 1).getBuildNumber());
+        }
+        page.setItems(items);
+
+        if (count) {
+            Optional<JobNumber> optional = jobNumberDao.findById(flow.getId());
+            page.setTotal(optional.map(JobNumber::getNumber).orElse(0L));
+        }
+
+        return page;
+    }
+
     @Override
     public Job create(Flow flow, String yml, Trigger trigger, StringVars input) {
         Job job = createJob(flow, trigger, input);
@@ -247,16 +277,10 @@ public class JobServiceImpl implements JobService {
             jobNumberDao.deleteByFlowId(flow.getId());
             log.info("Deleted: job number of flow {}", flow.getName());
 
-            Long numOfJobDeleted = jobDao.deleteByFlowId(flow.getId());
-            log.info("Deleted: {} jobs of flow {}", numOfJobDeleted, flow.getName());
-
-            Long numOfStepDeleted = stepService.delete(flow);
-            log.info("Deleted: {} steps of flow {}", numOfStepDeleted, flow.getName());
-
-            Long numOfTaskDeleted = localTaskService.delete(flow);
-            log.info("Deleted: {} tasks of flow {}", numOfTaskDeleted, flow.getName());
+            RetentionReport report = retentionService.purgeAll(flow);
+            log.info("Deleted: {}", report);
 
-            eventManager.publish(new JobDeletedEvent(this, flow, numOfJobDeleted));
+            eventManager.publish(new JobDeletedEvent(this, flow, report.getNumOfJobs()));
         });
     }
 
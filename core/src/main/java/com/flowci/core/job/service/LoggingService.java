@@ -16,6 +16,8 @@
 
 package com.flowci.core.job.service;
 
+import com.flowci.core.job.domain.LogChunk;
+import com.flowci.core.job.domain.Step;
 import org.springframework.core.io.Resource;
 
 import java.io.IOException;
@@ -44,7 +46,40 @@ public interface LoggingService {
     Resource get(String stepId);
 
     /**
-     * Read cached log from step id
+     * Get range of log resource
+     *
+     * @param offset start offset of log file
+     * @param length max bytes of range
+     */
+    Resource get(String stepId, long offset, long length);
+
+    /**
+     * Get size of log file
+     */
+    long size(String stepId);
+
+    /**
+     * Read live log from step id, which are the latest bytes kept for the step
      */
     Collection<byte[]> read(String stepId);
+
+    /**
+     * Read range of log from step id, from live log if step is running, otherwise from log file
+     *
+     * @param offset start offset of log
+     * @param length max bytes to read, which is limited to 1MB
+     */
+    LogChunk read(String stepId, long offset, int length);
+
+    /**
+     * Read last lines of log from step id, which is limited to 1MB, empty if lines is not positive
+     */
+    LogChunk tail(String stepId, int lines);
+
+    /**
+     * Delete log file of step
+     *
+     * @return bytes of log file removed
+     */
+    long delete(Step step);
 }
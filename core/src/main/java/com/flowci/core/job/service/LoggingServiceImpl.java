@@ -17,22 +17,24 @@
 package com.flowci.core.job.service;
 
 import com.flowci.core.agent.domain.CmdStdLog;
-import com.flowci.core.common.helper.CacheHelper;
+import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.manager.SocketPushManager;
 import com.flowci.core.common.rabbit.RabbitOperations;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.LogChunk;
 import com.flowci.core.job.domain.Step;
 import com.flowci.core.job.event.JobCreatedEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.manager.LiveLogStore;
 import com.flowci.exception.NotFoundException;
 import com.flowci.store.FileManager;
 import com.flowci.store.Pathable;
 import com.flowci.util.FileHelper;
-import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.github.benmanes.caffeine.cache.RemovalListener;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
 import com.rabbitmq.client.Envelope;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,13 +46,16 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -73,8 +78,12 @@ public class LoggingServiceImpl implements LoggingService {
 
     private static final Pathable LogPath = () -> "logs";
 
-    // cache current job log
-    private final Cache<String, Map<String, Queue<byte[]>>> logCache = CacheHelper.createLocalCache(50, 3600);
+    private static final int PushBufferSize = 64 * 1024; // max bytes per push
+
+    private static final int MaxChunkSize = 1024 * 1024; // max bytes per read
+
+    // key as job id, value as log to push to web socket
+    private final Map<String, Queue<byte[]>> pushBuffer = new ConcurrentHashMap<>();
 
     @Autowired
     private String ttyLogQueue;
@@ -100,37 +109,53 @@ public class LoggingServiceImpl implements LoggingService {
     @Autowired
     private StepService stepService;
 
+    @Autowired
+    private LiveLogStore liveLogStore;
+
+    @Autowired
+    private AppProperties.Job jobProperties;
+
+    @Autowired
+    private AppProperties.RabbitMQ rabbitProperties;
+
     @EventListener(ContextRefreshedEvent.class)
     public void onStart() throws IOException {
         // shell log content will be json {cmdId: xx, content: b64 log}
-        logQueueManager.startConsumer(shellLogQueue, true, new CmdStdLogHandler());
+        logQueueManager.startConsumer(shellLogQueue, true, rabbitProperties.getShellLogConcurrency(), new CmdStdLogHandler());
 
         // tty log conent will be b64 std out/err
         logQueueManager.startConsumer(ttyLogQueue, true, new TtyLogHandler());
     }
 
     /**
-     * Create/Remove logging buffer for job
+     * Create/Remove live log for job
      */
     @EventListener(JobStatusChangeEvent.class)
     public void onJobFinished(JobStatusChangeEvent event) {
         Job job = event.getJob();
 
         if (job.getStatus() == Job.Status.CREATED) {
-            List<Step> steps = stepService.list(job);
-            Map<String, Queue<byte[]>> cache = new HashMap<>(steps.size());
-            for (Step step : steps) {
-                cache.put(step.getId(), new ConcurrentLinkedQueue<>());
-            }
-            logCache.put(job.getId(), cache);
+            liveLogStore.init(job.getId());
             return;
         }
 
         if (job.isDone()) {
-            logCache.invalidate(job.getId());
+            Queue<byte[]> buffer = pushBuffer.remove(job.getId());
+            if (buffer != null) {
+                push(job.getId(), buffer);
+            }
+            liveLogStore.remove(job.getId());
         }
     }
 
+    /**
+     * Push buffered logs of each job as batch instead of line by line
+     */
+    @Scheduled(fixedDelayString = "${app.job.live-log-push-interval:200}")
+    public void pushBufferedLogs() {
+        pushBuffer.forEach(this::push);
+    }
+
     @Override
     public String save(String fileName, InputStream stream) throws IOException {
         String cmdId = FileHelper.getName(fileName);
@@ -149,21 +174,173 @@ public class LoggingServiceImpl implements LoggingService {
         }
     }
 
+    @Override
+    public Resource get(String stepId, long offset, long length) {
+        try {
+            String fileName = getLogFile(stepId);
+            InputStream stream = fileManager.read(fileName, offset, length, getLogDir(stepId));
+            return new InputStreamResource(stream);
+        } catch (IOException e) {
+            throw new NotFoundException("Log not available");
+        }
+    }
+
+    @Override
+    public long size(String stepId) {
+        try {
+            return fileManager.size(getLogFile(stepId), getLogDir(stepId));
+        } catch (IOException e) {
+            throw new NotFoundException("Log not available");
+        }
+    }
+
     @Override
     public Collection<byte[]> read(String stepId) {
         Step step = stepService.get(stepId);
-        Map<String, Queue<byte[]>> cached = logCache.getIfPresent(step.getJobId());
+        LogChunk chunk = liveLogStore.read(step.getJobId(), stepId, 0, jobProperties.getLiveLogSize());
 
-        if (Objects.isNull(cached)) {
+        if (chunk.getData().length == 0) {
             return Collections.emptyList();
         }
+        return Collections.singletonList(chunk.getData());
+    }
+
+    @Override
+    public LogChunk read(String stepId, long offset, int length) {
+        Step step = stepService.get(stepId);
+        return read(step, offset, Math.min(length, MaxChunkSize));
+    }
+
+    /**
+     * Read blocks backward from the end of log until enough lines found,
+     * the last line break of log is not counted
+     */
+    @Override
+    public LogChunk tail(String stepId, int lines) {
+        Step step = stepService.get(stepId);
+        if (lines <= 0) {
+            return LogChunk.empty(size(step));
+        }
+
+        // read the last chunk once and find lines backward in memory
+        LogChunk last = readLast(step, MaxChunkSize);
+        byte[] data = last.getData();
+        int found = 0;
+
+        for (int i = data.length - 1; i >= 0; i--) {
+            // line break at the end of log is not counted
+            if (data[i] != '\n' || last.getOffset() + i == last.getSize() - 1) {
+                continue;
+            }
+
+            if (++found >= lines) {
+                return new LogChunk(last.getOffset() + i + 1, Arrays.copyOfRange(data, i + 1, data.length), last.getSize());
+            }
+        }
 
-        return cached.get(stepId);
+        return last;
+    }
+
+    @Override
+    public long delete(Step step) {
+        String fileName = getLogFile(step.getId());
+        Pathable[] dir = getLogDir(step);
+
+        try {
+            if (!fileManager.exist(fileName, dir)) {
+                return 0;
+            }
+
+            long size = fileManager.size(fileName, dir);
+            fileManager.remove(fileName, dir);
+            return size;
+        } catch (IOException e) {
+            log.warn("Unable to delete log of step {}: {}", step.getId(), e.getMessage());
+            return 0;
+        }
+    }
+
+    private void push(String jobId, Queue<byte[]> buffer) {
+        String topic = topicForLogs + "/" + jobId;
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(PushBufferSize);
+
+        byte[] log;
+        while ((log = buffer.poll()) != null) {
+            batch.write(log, 0, log.length);
+
+            if (batch.size() >= PushBufferSize) {
+                socketPushManager.push(topic, batch.toByteArray());
+                batch.reset();
+            }
+        }
+
+        if (batch.size() > 0) {
+            socketPushManager.push(topic, batch.toByteArray());
+        }
+    }
+
+    private LogChunk read(Step step, long offset, int length) {
+        LogChunk live = liveLogStore.read(step.getJobId(), step.getId(), offset, length);
+        if (live.getSize() > 0) {
+            return live;
+        }
+
+        try {
+            long size = fileManager.size(getLogFile(step.getId()), getLogDir(step));
+            return readFile(step, offset, length, size);
+        } catch (IOException e) {
+            return LogChunk.empty(0);
+        }
+    }
+
+    /**
+     * Read last bytes of log with one stat and one range read of log file
+     */
+    private LogChunk readLast(Step step, int length) {
+        long live = liveLogStore.size(step.getJobId(), step.getId());
+        if (live > 0) {
+            return liveLogStore.read(step.getJobId(), step.getId(), Math.max(0, live - length), length);
+        }
+
+        try {
+            long size = fileManager.size(getLogFile(step.getId()), getLogDir(step));
+            return readFile(step, size - length, length, size);
+        } catch (IOException e) {
+            return LogChunk.empty(0);
+        }
+    }
+
+    private LogChunk readFile(Step step, long offset, int length, long size) throws IOException {
+        long start = Math.min(Math.max(offset, 0), size);
+        long end = Math.min(size, start + length);
+
+        if (start >= end) {
+            return LogChunk.empty(size);
+        }
+
+        try (InputStream stream = fileManager.read(getLogFile(step.getId()), start, end - start, getLogDir(step))) {
+            return new LogChunk(start, ByteStreams.toByteArray(stream), size);
+        }
+    }
+
+    private long size(Step step) {
+        long live = liveLogStore.size(step.getJobId(), step.getId());
+        if (live > 0) {
+            return live;
+        }
+
+        try {
+            return fileManager.size(getLogFile(step.getId()), getLogDir(step));
+        } catch (IOException e) {
+            return 0;
+        }
     }
 
     private Pathable[] getLogDir(String cmdId) {
-        Step step = stepService.get(cmdId);
+        return getLogDir(stepService.get(cmdId));
+    }
 
+    private Pathable[] getLogDir(Step step) {
         return new Pathable[]{
                 Flow.path(step.getFlowId()),
                 Job.path(step.getBuildNumber()),
@@ -184,16 +361,14 @@ public class LoggingServiceImpl implements LoggingService {
                 return true;
             }
 
-            // write to log cache
+            // write to live log store and push to ws in batch
             Optional<String> stepId = CmdStdLog.getFromHeader(headers, CmdStdLog.STEP_ID_HEADER);
-            if (stepId.isPresent()) {
-                Map<String, Queue<byte[]>> cache = logCache.getIfPresent(jobId.get());
-                if (cache != null) {
-                    cache.get(stepId.get()).add(body);
-                }
+            if (stepId.isPresent() && liveLogStore.append(jobId.get(), stepId.get(), body)) {
+                pushBuffer.computeIfAbsent(jobId.get(), k -> new ConcurrentLinkedQueue<>()).add(body);
+                return false;
             }
 
-            // push to ws
+            // push to ws directly if job not running
             socketPushManager.push(topicForLogs + "/" + jobId.get(), body);
             return false;
         }
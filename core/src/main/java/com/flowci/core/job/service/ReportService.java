@@ -46,4 +46,11 @@ public interface ReportService {
      * @return http access path
      */
     String fetch(Job job, String reportId);
+
+    /**
+     * Delete reports after their files and static resources removed
+     *
+     * @return bytes of report files removed
+     */
+    long purge(List<JobReport> reports);
 }
@@ -32,6 +32,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
@@ -71,7 +72,7 @@ public class ReportServiceImpl implements ReportService {
         try (InputStream reportRaw = file.getInputStream()) {
 
             // save to file manager by unique report name
-            path.setValue(fileManager.save(name, reportRaw, reportPath));
+            path.setValue(fileManager.save(name, reportRaw, file.getSize(), reportPath));
 
             // save to job report db
             JobReport r = new JobReport();
@@ -143,6 +144,28 @@ public class ReportServiceImpl implements ReportService {
         }
     }
 
+    @Override
+    public long purge(List<JobReport> reports) {
+        long bytes = 0;
+        for (JobReport report : reports) {
+            try {
+                if (StringHelper.hasValue(report.getPath())) {
+                    fileManager.remove(report.getPath());
+                    bytes += report.getContentSize() == null ? 0 : report.getContentSize();
+                }
+
+                Path staticDir = Paths.get(staticResourceDir.toString(), "jobs", report.getJobId(), "reports", report.getId());
+                FileSystemUtils.deleteRecursively(staticDir);
+            } catch (IOException e) {
+                log.warn("Unable to delete report {}: {}", report.getId(), e.getMessage());
+            }
+        }
+
+        // documents deleted after files removed, so files can be found again if it's interrupted
+        jobReportDao.deleteAll(reports);
+        return bytes;
+    }
+
     private Path getStaticResourcePath(JobReport report) throws IOException {
         Path path = Paths.get(staticResourceDir.toString(), "jobs", report.getJobId(), "reports", report.getId());
         FileHelper.createDirectory(path);
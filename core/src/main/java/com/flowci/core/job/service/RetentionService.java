@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.job.service;
+
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.job.domain.RetentionReport;
+
+/**
+ * Purge jobs with steps, tasks, yml, reports, artifacts and log files in chunks,
+ * which are out of retention policy of flow, or all jobs while flow deleted
+ *
+ * @author yang
+ */
+public interface RetentionService {
+
+    /**
+     * Purge finished jobs which are not in the latest builds or days of flow
+     */
+    RetentionReport purge(Flow flow);
+
+    /**
+     * Purge all jobs of flow without rate limit, for flow deleted
+     */
+    RetentionReport purgeAll(Flow flow);
+
+    /**
+     * Purge jobs for all flows that have retention policy
+     */
+    void purgeAll();
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.job.service;
+
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.helper.ThreadHelper;
+import com.flowci.core.flow.dao.FlowDao;
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.job.dao.*;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.JobArtifact;
+import com.flowci.core.job.domain.JobReport;
+import com.flowci.core.job.domain.RetentionReport;
+import com.flowci.core.job.domain.Step;
+import com.flowci.zookeeper.InterLock;
+import com.flowci.zookeeper.ZookeeperClient;
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Jobs are purged in chunks by build number asc, the job record is deleted at last,
+ * so the chunk will be purged again if it's interrupted.
+ * The num of jobs purged per second by retention policy is limited by app.job.retention-rate
+ * to reduce the load of db and storage, jobs of deleted flow are purged without limit.
+ * <p>
+ * Retention runs periodically on one server node, which holds the zookeeper lock if clustered
+ *
+ * @author yang
+ */
+@Log4j2
+@Service
+public class RetentionServiceImpl implements RetentionService {
+
+    private static final String LockPath = "/job-retention";
+
+    private static final long PurgeInterval = 60 * 60 * 1000; // 1 hour
+
+    private static final long PurgeInitialDelay = 10 * 60 * 1000; // 10 minutes
+
+    // single thread without queue, skip if purge is running
+    private final ThreadPoolTaskExecutor purgeExecutor = ThreadHelper.createTaskExecutor(1, 1, 0, "job-retention-");
+
+    @Autowired
+    private AppProperties.Job jobProperties;
+
+    @Autowired
+    private FlowDao flowDao;
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired
+    private JobYmlDao jobYmlDao;
+
+    @Autowired
+    private ExecutedCmdDao executedCmdDao;
+
+    @Autowired
+    private ExecutedLocalTaskDao executedLocalTaskDao;
+
+    @Autowired
+    private JobReportDao jobReportDao;
+
+    @Autowired
+    private JobArtifactDao jobArtifactDao;
+
+    @Autowired
+    private StepService stepService;
+
+    @Autowired
+    private LoggingService loggingService;
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private ArtifactService artifactService;
+
+    @Autowired
+    private ZookeeperClient zk;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private RateLimiter rateLimiter;
+
+    @PostConstruct
+    private void init() {
+        rateLimiter = RateLimiter.create(jobProperties.getRetentionRate());
+    }
+
+    @PreDestroy
+    public void close() {
+        purgeExecutor.shutdown();
+    }
+
+    @Override
+    public RetentionReport purge(Flow flow) {
+        Long buildNumberBefore = null;
+        Date createdBefore = null;
+
+        if (flow.getRetainBuilds() > 0) {
+            Optional<Long> oldest = jobDao.findBuildNumberOfLatest(flow.getId(), flow.getRetainBuilds());
+            buildNumberBefore = oldest.orElse(null);
+        }
+
+        if (flow.getRetainDays() > 0) {
+            createdBefore = Date.from(Instant.now().minus(flow.getRetainDays(), ChronoUnit.DAYS));
+        }
+
+        if (buildNumberBefore == null && createdBefore == null) {
+            return new RetentionReport(flow.getId());
+        }
+
+        return purge(flow, buildNumberBefore, createdBefore, true, rateLimiter);
+    }
+
+    @Override
+    public RetentionReport purgeAll(Flow flow) {
+        return purge(flow, null, null, false, null);
+    }
+
+    @Override
+    @Scheduled(fixedDelay = PurgeInterval, initialDelay = PurgeInitialDelay)
+    public void purgeAll() {
+        try {
+            purgeExecutor.execute(this::purgeAllWithLock);
+        } catch (TaskRejectedException e) {
+            log.debug("Job retention is running");
+        }
+    }
+
+    private void purgeAllWithLock() {
+        Optional<InterLock> lock = Optional.empty();
+
+        if (jobProperties.getLockMode() == AppProperties.Job.LockMode.ZOOKEEPER) {
+            lock = zk.lock(LockPath, 0);
+            if (!lock.isPresent()) {
+                log.debug("Job retention is running on other server node");
+                return;
+            }
+        }
+
+        try {
+            for (Flow flow : flowDao.findAllByRetainBuildsGreaterThanOrRetainDaysGreaterThan(0, 0)) {
+                purge(flow);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to purge jobs: {}", e.getMessage());
+        } finally {
+            lock.ifPresent(zk::release);
+        }
+    }
+
+    private RetentionReport purge(Flow flow, Long buildNumberBefore, Date createdBefore, boolean finishedOnly,
+                                  RateLimiter limiter) {
+        RetentionReport report = new RetentionReport(flow.getId());
+        int chunkSize = jobProperties.getRetentionChunkSize();
+
+        for (; ; ) {
+            List<Job> jobs = jobDao.findAllToPurge(flow.getId(), buildNumberBefore, createdBefore, finishedOnly, chunkSize);
+            if (jobs.isEmpty()) {
+                break;
+            }
+
+            if (limiter != null) {
+                limiter.acquire(jobs.size());
+            }
+
+            purge(jobs, report);
+
+            if (jobs.size() < chunkSize) {
+                break;
+            }
+        }
+
+        if (report.getNumOfJobs() > 0) {
+            meterRegistry.counter("flowci.retention.jobs").increment(report.getNumOfJobs());
+            meterRegistry.counter("flowci.retention.bytes").increment(report.getBytes());
+            log.info("Purged: {} jobs with {} bytes of flow {}", report.getNumOfJobs(), report.getBytes(), flow.getName());
+        }
+
+        return report;
+    }
+
+    private void purge(List<Job> jobs, RetentionReport report) {
+        List<String> jobIds = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            jobIds.add(job.getId());
+        }
+
+        for (Step step : executedCmdDao.findAllByJobIdIn(jobIds)) {
+            report.addBytes(loggingService.delete(step));
+        }
+        report.addSteps(stepService.delete(jobIds));
+        report.addTasks(executedLocalTaskDao.deleteAllByJobIdIn(jobIds));
+
+        List<JobReport> reports = jobReportDao.findAllByJobIdIn(jobIds);
+        report.addBytes(reportService.purge(reports));
+        report.addReports(reports.size());
+
+        List<JobArtifact> artifacts = jobArtifactDao.findAllByJobIdIn(jobIds);
+        report.addBytes(artifactService.purge(artifacts));
+        report.addArtifacts(artifacts.size());
+
+        jobYmlDao.deleteByIdIn(jobIds);
+        report.addJobs(jobDao.deleteByIdIn(jobIds));
+    }
+}
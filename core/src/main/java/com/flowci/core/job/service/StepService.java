@@ -21,6 +21,7 @@ import com.flowci.core.job.domain.Step;
 import com.flowci.core.job.domain.Job;
 import com.flowci.tree.StepNode;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -72,4 +73,9 @@ public interface StepService {
      * Delete steps by job
      */
     Long delete(Job job);
+
+    /**
+     * Delete steps by job ids
+     */
+    Long delete(Collection<String> jobIds);
 }
@@ -33,10 +33,7 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Base64;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -72,6 +69,7 @@ public class StepServiceImpl implements StepService {
         }
 
         executedCmdDao.insert(steps);
+        jobStepCache.put(job.getId(), steps);
         eventManager.publish(new StepUpdateEvent(this, job.getId(), steps, true));
     }
 
@@ -133,15 +131,20 @@ public class StepServiceImpl implements StepService {
             return entity;
         }
 
+        // start at dispatched time until it's reported by agent
+        if (status == Executed.Status.RUNNING && entity.getStartAt() == null) {
+            entity.setStartAt(new Date());
+        }
+
         entity.setStatus(status);
         entity.setError(err);
         executedCmdDao.save(entity);
 
         String jobId = entity.getJobId();
-        jobStepCache.invalidate(jobId);
+        jobStepCache.asMap().computeIfPresent(jobId, (k, steps) -> replace(steps, entity));
 
-        List<Step> steps = list(jobId, entity.getFlowId(), entity.getBuildNumber());
-        eventManager.publish(new StepUpdateEvent(this, jobId, steps, false));
+        // only push changed step, full list can be fetched from api
+        eventManager.publish(new StepUpdateEvent(this, jobId, Collections.singletonList(entity), false));
         return entity;
     }
 
@@ -164,19 +167,43 @@ public class StepServiceImpl implements StepService {
 
     @Override
     public Long delete(Flow flow) {
+        jobStepCache.invalidateAll();
         return executedCmdDao.deleteByFlowId(flow.getId());
     }
 
     @Override
     public Long delete(Job job) {
+        jobStepCache.invalidate(job.getId());
         return executedCmdDao.deleteByJobId(job.getId());
     }
 
+    @Override
+    public Long delete(Collection<String> jobIds) {
+        jobStepCache.invalidateAll(jobIds);
+        return executedCmdDao.deleteByJobIdIn(jobIds);
+    }
+
     private List<Step> list(String jobId, String flowId, long buildNumber) {
         return jobStepCache.get(jobId,
                 s -> executedCmdDao.findByFlowIdAndBuildNumber(flowId, buildNumber));
     }
 
+    /**
+     * Copy on write, since cached list could be iterated by other threads
+     *
+     * @return null to remove cached list if step not found
+     */
+    private static List<Step> replace(List<Step> steps, Step updated) {
+        List<Step> copy = new ArrayList<>(steps);
+        for (int i = 0; i < copy.size(); i++) {
+            if (Objects.equals(copy.get(i).getId(), updated.getId())) {
+                copy.set(i, updated);
+                return copy;
+            }
+        }
+        return null;
+    }
+
     private static Step newInstance(Job job, StepNode node) {
         String cmdId = job.getId() + node.getPathAsString();
 
@@ -188,6 +215,6 @@ public class StepServiceImpl implements StepService {
                 .setNodePath(node.getPathAsString())
                 .setAllowFailure(node.isAllowFailure())
                 .setPlugin(node.getPlugin())
-                .setDockers(node.getDockers());
+                .setDockers(new LinkedList<>(node.getDockers()));
     }
 }
@@ -40,6 +40,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Optional;
@@ -153,7 +154,9 @@ public class SecretServiceImpl implements SecretService {
             secret.setKeyAlias(option.getKeyAlias());
             secret.setKeyPassword(SecretField.of(option.getKeyPassword()));
 
-            fileManager.save(keyStore.getOriginalFilename(), keyStore.getInputStream(), secret.getPath());
+            try (InputStream stream = keyStore.getInputStream()) {
+                fileManager.save(keyStore.getOriginalFilename(), stream, keyStore.getSize(), secret.getPath());
+            }
             return save(secret);
         } catch (IOException e) {
             throw new StatusException(e.getMessage());
@@ -17,10 +17,9 @@
 package com.flowci.core.trigger;
 
 import com.flowci.core.common.domain.GitSource;
-import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.trigger.converter.*;
 import com.flowci.core.trigger.domain.GitTrigger;
-import com.flowci.core.trigger.event.GitHookEvent;
+import com.flowci.core.trigger.service.WebhookService;
 import com.flowci.exception.ArgumentException;
 import com.flowci.util.StringHelper;
 import java.io.IOException;
@@ -60,7 +59,7 @@ public class WebhookController {
     private TriggerConverter giteeConverter;
 
     @Autowired
-    private SpringEventManager eventManager;
+    private WebhookService webhookService;
 
     private final Map<GitSource, TriggerConverter> converterMap = new HashMap<>(3);
 
@@ -82,7 +81,7 @@ public class WebhookController {
         }
 
         log.info("{} trigger received: {}", data.source, trigger.get());
-        eventManager.publish(new GitHookEvent(this, name, trigger.get()));
+        webhookService.receive(name, data.deliveryId, trigger.get());
     }
 
     private GitSourceWithEvent findGitSourceByHeader(HttpServletRequest request) {
@@ -93,6 +92,7 @@ public class WebhookController {
         if (StringHelper.hasValue(event)) {
             obj.source = GitSource.GOGS;
             obj.event = event;
+            obj.deliveryId = request.getHeader(GogsConverter.DeliveryHeader);
             return obj;
         }
 
@@ -101,6 +101,7 @@ public class WebhookController {
         if (StringHelper.hasValue(event)) {
             obj.source = GitSource.GITHUB;
             obj.event = event;
+            obj.deliveryId = request.getHeader(GitHubConverter.DeliveryHeader);
             return obj;
         }
 
@@ -109,6 +110,7 @@ public class WebhookController {
         if (StringHelper.hasValue(event)) {
             obj.source = GitSource.GITLAB;
             obj.event = event;
+            obj.deliveryId = request.getHeader(GitLabConverter.DeliveryHeader);
             return obj;
         }
 
@@ -134,5 +136,6 @@ public class WebhookController {
 
         private String event;
 
+        private String deliveryId;
     }
 }
@@ -44,6 +44,8 @@ public class GitHubConverter extends TriggerConverter {
 
     public static final String Header = "X-GitHub-Event";
 
+    public static final String DeliveryHeader = "X-GitHub-Delivery";
+
     public static final String Ping = "ping";
 
     public static final String PushOrTag = "push";
@@ -45,6 +45,8 @@ public class GitLabConverter extends TriggerConverter {
 
     public static final String Header = "x-gitlab-event";
 
+    public static final String DeliveryHeader = "x-gitlab-event-uuid";
+
     public static final String Push = "Push Hook";
 
     public static final String Tag = "Tag Push Hook";
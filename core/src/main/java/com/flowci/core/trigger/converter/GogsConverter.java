@@ -38,6 +38,8 @@ public class GogsConverter extends TriggerConverter {
 
     public static final String Header = "x-gogs-event";
 
+    public static final String DeliveryHeader = "x-gogs-delivery";
+
     public static final String Push = "push";
 
     public static final String Tag = "release";
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.trigger.dao;
+
+import com.flowci.core.trigger.domain.WebhookDelivery;
+import com.flowci.core.trigger.domain.WebhookDelivery.Status;
+
+import java.util.Date;
+import java.util.Optional;
+
+public interface CustomWebhookDeliveryDao {
+
+    /**
+     * Claim the earliest pending delivery which should be processed before now,
+     * or the processing one claimed before stale time, which is not finished by a dead server node
+     */
+    Optional<WebhookDelivery> claim(Date now, Date staleBefore);
+
+    void finish(String id, Status status, String error);
+
+    /**
+     * Put back to pending, and process after given time
+     */
+    void delay(String id, Date processAt);
+}
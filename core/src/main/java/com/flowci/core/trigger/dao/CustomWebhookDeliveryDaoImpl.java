@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.trigger.dao;
+
+import com.flowci.core.trigger.domain.WebhookDelivery;
+import com.flowci.core.trigger.domain.WebhookDelivery.Status;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class CustomWebhookDeliveryDaoImpl implements CustomWebhookDeliveryDao {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public Optional<WebhookDelivery> claim(Date now, Date staleBefore) {
+        Query q = query(new Criteria().orOperator(
+                where("status").is(Status.PENDING).and("processAt").lte(now),
+                where("status").is(Status.PROCESSING).and("processAt").lt(staleBefore)
+        ));
+        q.with(Sort.by(Sort.Direction.ASC, "processAt"));
+
+        Update update = new Update()
+                .set("status", Status.PROCESSING)
+                .set("processAt", now);
+
+        return Optional.ofNullable(operations.findAndModify(q, update, options().returnNew(true), WebhookDelivery.class));
+    }
+
+    @Override
+    public void finish(String id, Status status, String error) {
+        Update update = new Update().set("status", status).set("error", error);
+        operations.updateFirst(query(where("_id").is(id)), update, WebhookDelivery.class);
+    }
+
+    @Override
+    public void delay(String id, Date processAt) {
+        Update update = new Update().set("status", Status.PENDING).set("processAt", processAt);
+        operations.updateFirst(query(where("_id").is(id)), update, WebhookDelivery.class);
+    }
+}
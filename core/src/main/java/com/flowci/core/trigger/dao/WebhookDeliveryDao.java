@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.trigger.dao;
+
+import com.flowci.core.trigger.domain.WebhookDelivery;
+import com.flowci.core.trigger.domain.WebhookDelivery.Status;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+
+/**
+ * @author yang
+ */
+@Repository
+public interface WebhookDeliveryDao extends MongoRepository<WebhookDelivery, String>, CustomWebhookDeliveryDao {
+
+    long countByStatus(Status status);
+
+    boolean existsByCoalesceKeyAndStatusAndCreatedAtAfter(String coalesceKey, Status status, Date createdAt);
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.trigger.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Git trigger received from webhook, which is kept in intake queue until processed.
+ * Id is the key of delivery, so repeated delivery will be rejected by duplicate id
+ *
+ * @author yang
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@Document(collection = "webhook_delivery")
+@CompoundIndexes({
+        @CompoundIndex(name = "index_status_process_at", def = "{'status': 1, 'processAt': 1}"),
+        @CompoundIndex(name = "index_coalesce_key_status", def = "{'coalesceKey': 1, 'status': 1}")
+})
+public class WebhookDelivery {
+
+    public enum Status {
+
+        PENDING,
+
+        PROCESSING,
+
+        DONE,
+
+        /**
+         * Skipped since newer push to the same branch received within window
+         */
+        COALESCED,
+
+        FAILED
+    }
+
+    @Id
+    private String id;
+
+    private String flow;
+
+    private GitTrigger trigger;
+
+    // flow and branch of push trigger, null if not coalesced
+    private String coalesceKey;
+
+    private Status status = Status.PENDING;
+
+    private String error;
+
+    // deliveries are kept for one day to detect repeated delivery
+    @Indexed(name = "index_created_at", expireAfterSeconds = 86400)
+    private Date createdAt;
+
+    // process after, or claimed at if it's processing
+    private Date processAt;
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.trigger.service;
+
+import com.flowci.core.trigger.domain.GitTrigger;
+
+/**
+ * @author yang
+ */
+public interface WebhookService {
+
+    /**
+     * Put git trigger into intake queue, it will be processed asynchronously
+     *
+     * @param deliveryId nullable, delivery id from git source
+     * @return false if it's repeated delivery
+     * @throws com.flowci.exception.NotAvailableException if too many webhooks pending
+     */
+    boolean receive(String flow, String deliveryId, GitTrigger trigger);
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.trigger.service;
+
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.helper.ThreadHelper;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.trigger.dao.WebhookDeliveryDao;
+import com.flowci.core.trigger.domain.GitPushTrigger;
+import com.flowci.core.trigger.domain.GitTrigger;
+import com.flowci.core.trigger.domain.WebhookDelivery;
+import com.flowci.core.trigger.domain.WebhookDelivery.Status;
+import com.flowci.core.trigger.event.GitHookEvent;
+import com.flowci.exception.NotAvailableException;
+import com.flowci.util.StringHelper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Webhook intake queue persisted in webhook_delivery
+ * - delivery acknowledged once inserted, repeated delivery rejected by id of delivery id or pushed commit
+ * - pushes to the same branch are processed after coalesce window, and only the latest one is processed
+ * - deliveries are claimed by server nodes and processed in limited concurrency
+ * - delivery delayed if job executor is full, and new webhook rejected if too many pending
+ *
+ * @author yang
+ */
+@Log4j2
+@Service
+public class WebhookServiceImpl implements WebhookService {
+
+    // retry delivery after millis if job executor is full
+    private static final long RetryDelayInMillis = 2000;
+
+    // processing delivery claimed before millis is treated as not finished by dead server node
+    private static final long StaleInMillis = 5 * 60 * 1000;
+
+    // approximate num of pending deliveries, refreshed on each poll
+    private final AtomicLong pending = new AtomicLong();
+
+    private ThreadPoolTaskExecutor executor;
+
+    private Semaphore slots;
+
+    @Autowired
+    private WebhookDeliveryDao webhookDeliveryDao;
+
+    @Autowired
+    private SpringEventManager eventManager;
+
+    @Autowired
+    private AppProperties.Webhook webhookProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        int concurrency = webhookProperties.getConcurrency();
+        executor = ThreadHelper.createTaskExecutor(concurrency, concurrency, concurrency, "webhook-");
+        slots = new Semaphore(concurrency);
+
+        meterRegistry.gauge("flowci.webhook.pending", pending);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+    }
+
+    @Override
+    public boolean receive(String flow, String deliveryId, GitTrigger trigger) {
+        if (pending.get() >= webhookProperties.getMaxPending()) {
+            meterRegistry.counter("flowci.webhook.rejected").increment();
+            throw new NotAvailableException("Too many webhooks pending, please retry later");
+        }
+
+        Date now = new Date();
+        String coalesceKey = toCoalesceKey(flow, trigger);
+        long delay = coalesceKey == null ? 0 : webhookProperties.getCoalesceWindow();
+
+        WebhookDelivery delivery = new WebhookDelivery()
+                .setId(toDeliveryKey(flow, deliveryId, trigger))
+                .setFlow(flow)
+                .setTrigger(trigger)
+                .setCoalesceKey(coalesceKey)
+                .setCreatedAt(now)
+                .setProcessAt(new Date(now.getTime() + delay));
+
+        try {
+            webhookDeliveryDao.insert(delivery);
+        } catch (DuplicateKeyException e) {
+            meterRegistry.counter("flowci.webhook.duplicated").increment();
+            log.debug("Repeated webhook delivery {} ignored", delivery.getId());
+            return false;
+        }
+
+        pending.incrementAndGet();
+        meterRegistry.counter("flowci.webhook.received", "source", trigger.getSource().name()).increment();
+        return true;
+    }
+
+    /**
+     * Claim deliveries for free slots
+     */
+    @Scheduled(fixedDelay = 500)
+    public void poll() {
+        pending.set(webhookDeliveryDao.countByStatus(Status.PENDING));
+
+        while (slots.tryAcquire()) {
+            Optional<WebhookDelivery> delivery;
+
+            try {
+                Date now = new Date();
+                delivery = webhookDeliveryDao.claim(now, new Date(now.getTime() - StaleInMillis));
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+
+            if (!delivery.isPresent()) {
+                slots.release();
+                return;
+            }
+
+            executor.execute(() -> {
+                try {
+                    process(delivery.get());
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+    }
+
+    private void process(WebhookDelivery delivery) {
+        String coalesceKey = delivery.getCoalesceKey();
+
+        if (coalesceKey != null
+                && webhookDeliveryDao.existsByCoalesceKeyAndStatusAndCreatedAtAfter(coalesceKey, Status.PENDING, delivery.getCreatedAt())) {
+            webhookDeliveryDao.finish(delivery.getId(), Status.COALESCED, null);
+            meterRegistry.counter("flowci.webhook.coalesced").increment();
+            return;
+        }
+
+        try {
+            eventManager.publish(new GitHookEvent(this, delivery.getFlow(), delivery.getTrigger()));
+            webhookDeliveryDao.finish(delivery.getId(), Status.DONE, null);
+
+            long lag = System.currentTimeMillis() - delivery.getCreatedAt().getTime();
+            meterRegistry.timer("flowci.webhook.lag").record(lag, TimeUnit.MILLISECONDS);
+        } catch (TaskRejectedException e) {
+            log.debug("Job executor is full, webhook delivery {} delayed", delivery.getId());
+            webhookDeliveryDao.delay(delivery.getId(), new Date(System.currentTimeMillis() + RetryDelayInMillis));
+            meterRegistry.counter("flowci.webhook.delayed").increment();
+        } catch (Throwable e) {
+            log.warn("Unable to process webhook of flow {}: {}", delivery.getFlow(), e.getMessage());
+            webhookDeliveryDao.finish(delivery.getId(), Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Key of delivery, from pushed commit which is same in repeated delivery, or delivery id from git source
+     */
+    private static String toDeliveryKey(String flow, String deliveryId, GitTrigger trigger) {
+        if (trigger instanceof GitPushTrigger) {
+            GitPushTrigger push = (GitPushTrigger) trigger;
+            if (StringHelper.hasValue(push.getCommitId())) {
+                return String.format("%s-%s-%s-%s", flow, trigger.getEvent(), push.getRef(), push.getCommitId());
+            }
+        }
+
+        if (StringHelper.hasValue(deliveryId)) {
+            return flow + "-" + deliveryId;
+        }
+
+        return flow + "-" + UUID.randomUUID();
+    }
+
+    private static String toCoalesceKey(String flow, GitTrigger trigger) {
+        if (trigger.getEvent() != GitTrigger.GitEvent.PUSH) {
+            return null;
+        }
+
+        return flow + "-" + ((GitPushTrigger) trigger).getRef();
+    }
+}
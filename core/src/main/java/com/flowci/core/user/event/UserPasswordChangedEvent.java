@@ -0,0 +1,32 @@
+/*
+ *   Copyright (c) 2019 flow.ci
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.flowci.core.user.event;
+
+import com.flowci.core.user.domain.User;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+public class UserPasswordChangedEvent extends ApplicationEvent {
+
+    @Getter
+    private final User user;
+
+    public UserPasswordChangedEvent(Object source, User user) {
+        super(source);
+        this.user = user;
+    }
+}
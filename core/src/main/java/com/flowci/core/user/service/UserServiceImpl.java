@@ -22,6 +22,7 @@ import com.flowci.core.user.dao.UserDao;
 import com.flowci.core.user.domain.User;
 import com.flowci.core.user.domain.User.Role;
 import com.flowci.core.user.event.UserDeletedEvent;
+import com.flowci.core.user.event.UserPasswordChangedEvent;
 import com.flowci.exception.ArgumentException;
 import com.flowci.exception.DuplicateException;
 import com.flowci.exception.NotFoundException;
@@ -101,6 +102,7 @@ public class UserServiceImpl implements UserService {
         if (Objects.equals(user.getPasswordOnMd5(), oldOnMd5)) {
             user.setPasswordOnMd5(newOnMd5);
             userDao.save(user);
+            eventManager.publish(new UserPasswordChangedEvent(this, user));
             return;
         }
 
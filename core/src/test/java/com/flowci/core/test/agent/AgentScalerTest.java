@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.agent;
+
+import com.flowci.core.agent.manager.AgentScaler;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+public class AgentScalerTest {
+
+    private static final Set<String> Linux = ImmutableSet.of("linux");
+
+    private final AgentScaler scaler = new AgentScaler(30_000, 60_000, 60_000);
+
+    @Test
+    public void should_plan_agents_for_waiting_jobs() {
+        Assert.assertTrue(scaler.onWaiting("job-1", Linux, 0));
+        Assert.assertTrue(scaler.onWaiting("job-2", Linux, 0));
+        Assert.assertFalse(scaler.onWaiting("job-1", Linux, 1000));
+        Assert.assertTrue(scaler.onWaiting("job-3", Collections.emptySet(), 1000));
+
+        // then: one agent for each waiting job, minus the idle agents
+        Map<Set<String>, Integer> plan = scaler.plan(1000, labels -> labels.isEmpty() ? 1 : 0);
+        Assert.assertEquals(1, plan.size());
+        Assert.assertEquals(2, plan.get(Linux).intValue());
+        Assert.assertEquals(3, scaler.numOfDesired());
+
+        // when: agents are starting
+        scaler.onStarted(Linux, 2, 1000);
+        Assert.assertTrue(scaler.plan(2000, labels -> 0).getOrDefault(Linux, 0) <= 0);
+
+        // when: one failed to start
+        scaler.onStartFailed(Linux, 1);
+        Assert.assertEquals(1, scaler.plan(3000, labels -> 0).get(Linux).intValue());
+    }
+
+    @Test
+    public void should_expire_waiting_job_if_not_reported() {
+        scaler.onWaiting("job-1", Linux, 0);
+        Assert.assertEquals(1, scaler.numOfWaiting());
+        Assert.assertTrue(scaler.hasDemand(ImmutableSet.of("linux", "docker")));
+        Assert.assertFalse(scaler.hasDemand(ImmutableSet.of("ios")));
+
+        scaler.plan(31_000, labels -> 0);
+        Assert.assertEquals(0, scaler.numOfWaiting());
+    }
+
+    @Test
+    public void should_prewarm_agents_by_arrival_rate() {
+        // 10 jobs arrive in every 10 seconds, and got agent right away
+        long now = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10; i++) {
+                scaler.onWaiting("job-" + round + "-" + i, Linux, now);
+            }
+
+            now += 10_000;
+            scaler.plan(now, labels -> 100);
+        }
+
+        // then: agents for jobs expected in next 60 seconds, even no job is waiting
+        now += 30_001;
+        Map<Set<String>, Integer> plan = scaler.plan(now, labels -> 0);
+        Assert.assertEquals(0, scaler.numOfWaiting());
+        Assert.assertTrue(plan.get(Linux) > 10);
+        Assert.assertTrue(scaler.hasDemand(Linux));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.agent;
+
+import com.flowci.core.agent.manager.AgentTokenRegistry;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AgentTokenRegistryTest {
+
+    private final Set<String> db = new HashSet<>();
+
+    private final AtomicInteger numOfQueries = new AtomicInteger();
+
+    private final AgentTokenRegistry registry = new AgentTokenRegistry(token -> {
+        numOfQueries.incrementAndGet();
+        return db.contains(token);
+    }, 100, 60 * 1000);
+
+    @Test
+    public void should_verify_loaded_and_added_token_without_query() {
+        registry.reload(() -> ImmutableList.of("token-1", "token-2"));
+        registry.add("token-3");
+
+        Assert.assertTrue(registry.contains("token-1"));
+        Assert.assertTrue(registry.contains("token-3"));
+        Assert.assertEquals(0, numOfQueries.get());
+
+        registry.remove("token-1");
+        Assert.assertFalse(registry.contains("token-1"));
+        Assert.assertEquals(1, numOfQueries.get());
+    }
+
+    @Test
+    public void should_query_token_on_miss_and_cache_not_found() {
+        // token created from other node is found from db
+        db.add("token-1");
+        Assert.assertTrue(registry.contains("token-1"));
+        Assert.assertTrue(registry.contains("token-1"));
+        Assert.assertEquals(1, numOfQueries.get());
+
+        // guessed token only queried once
+        for (int i = 0; i < 10; i++) {
+            Assert.assertFalse(registry.contains("guessed"));
+        }
+        Assert.assertEquals(2, numOfQueries.get());
+        Assert.assertEquals(1, registry.numOfMisses());
+
+        // not found token is accepted once it's added
+        registry.add("guessed");
+        Assert.assertTrue(registry.contains("guessed"));
+        Assert.assertEquals(0, registry.numOfMisses());
+    }
+
+    @Test
+    public void should_remove_token_deleted_from_other_node_by_reload() {
+        registry.reload(() -> ImmutableList.of("token-1", "token-2"));
+        registry.reload(() -> ImmutableList.of("token-2"));
+
+        Assert.assertEquals(1, registry.size());
+        Assert.assertFalse(registry.contains("token-1"));
+        Assert.assertTrue(registry.contains("token-2"));
+    }
+
+    @Test
+    public void should_keep_token_added_and_removed_while_reloading() {
+        registry.reload(() -> ImmutableList.of("token-1", "token-2"));
+
+        // when: token-3 created and token-2 deleted after tokens loaded from db
+        registry.reload(() -> {
+            ImmutableList<String> loaded = ImmutableList.of("token-1", "token-2");
+            registry.add("token-3");
+            registry.remove("token-2");
+            return loaded;
+        });
+
+        // then:
+        Assert.assertEquals(2, registry.size());
+        Assert.assertTrue(registry.contains("token-1"));
+        Assert.assertTrue(registry.contains("token-3"));
+        Assert.assertFalse(registry.contains("token-2"));
+        Assert.assertEquals(1, numOfQueries.get());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.agent;
+
+import com.flowci.core.agent.manager.IdleAgentIndex;
+import com.flowci.core.agent.manager.IdleAgentIndex.Waiter;
+import com.flowci.domain.Agent;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
+public class IdleAgentIndexTest {
+
+    private final IdleAgentIndex index = new IdleAgentIndex();
+
+    @Test
+    public void should_match_idle_agent_by_tag() {
+        index.offer(newAgent("1", ImmutableSet.of("ios")));
+        index.offer(newAgent("2", ImmutableSet.of("android", "linux")));
+        Assert.assertEquals(2, index.numOfIdle());
+
+        Optional<Agent> matched = index.offer(newWaiter("job-1", ImmutableSet.of("android"), 1));
+        Assert.assertTrue(matched.isPresent());
+        Assert.assertEquals("2", matched.get().getId());
+        Assert.assertEquals(1, index.numOfIdle());
+
+        Optional<Agent> notMatched = index.offer(newWaiter("job-2", ImmutableSet.of("android"), 1));
+        Assert.assertFalse(notMatched.isPresent());
+        Assert.assertEquals(1, index.numOfWaiters());
+    }
+
+    @Test
+    public void should_serve_waiters_by_priority_then_fifo() {
+        index.offer(newWaiter("job-1", ImmutableSet.of("linux"), 1));
+        index.offer(newWaiter("job-2", Collections.emptySet(), 1));
+        index.offer(newWaiter("job-3", ImmutableSet.of("linux"), 10));
+        index.offer(newWaiter("job-4", ImmutableSet.of("ios"), 255));
+
+        Optional<Waiter> first = index.offer(newAgent("1", ImmutableSet.of("linux")));
+        Assert.assertEquals("job-3", first.get().getJobId());
+
+        Optional<Waiter> second = index.offer(newAgent("2", ImmutableSet.of("linux")));
+        Assert.assertEquals("job-1", second.get().getJobId());
+
+        Optional<Waiter> third = index.offer(newAgent("3", ImmutableSet.of("linux")));
+        Assert.assertEquals("job-2", third.get().getJobId());
+
+        Optional<Waiter> none = index.offer(newAgent("4", ImmutableSet.of("linux")));
+        Assert.assertFalse(none.isPresent());
+        Assert.assertEquals(1, index.numOfIdle());
+        Assert.assertEquals(1, index.numOfWaiters());
+    }
+
+    @Test
+    public void should_remove_waiters_and_idle_agent() {
+        index.offer(newWaiter("job-1", ImmutableSet.of("linux"), 1));
+        index.offer(newWaiter("job-2", ImmutableSet.of("linux"), 1));
+        Assert.assertTrue(index.remove("job-1").isPresent());
+        Assert.assertEquals(1, index.removeByFlow("flow").size());
+        Assert.assertEquals(0, index.numOfWaiters());
+
+        index.offer(newAgent("1", ImmutableSet.of("linux")));
+        index.removeIdle("1");
+        Assert.assertFalse(index.offer(newWaiter("job-3", ImmutableSet.of("linux"), 1)).isPresent());
+    }
+
+    @Test
+    public void should_match_longest_idle_agent_across_labels() {
+        index.offer(newAgent("1", ImmutableSet.of("linux")));
+        index.offer(newAgent("2", ImmutableSet.of("android")));
+        index.offer(newAgent("3", ImmutableSet.of("linux")));
+
+        // when: agent 1 reported idle again
+        index.offer(newAgent("1", ImmutableSet.of("linux")));
+
+        // then: agent 1 is still the longest idle one
+        Optional<Agent> first = index.offer(newWaiter("job-1", ImmutableSet.of("android", "linux"), 1));
+        Assert.assertEquals("1", first.get().getId());
+
+        Optional<Agent> second = index.offer(newWaiter("job-2", ImmutableSet.of("linux", "android"), 1));
+        Assert.assertEquals("2", second.get().getId());
+
+        Optional<Agent> third = index.offer(newWaiter("job-3", Collections.emptySet(), 1));
+        Assert.assertEquals("3", third.get().getId());
+        Assert.assertEquals(0, index.numOfIdle());
+    }
+
+    private Waiter newWaiter(String jobId, Set<String> labels, int priority) {
+        return index.newWaiter(jobId, "flow", labels, priority, id -> true);
+    }
+
+    private static Agent newAgent(String id, Set<String> tags) {
+        Agent agent = new Agent(id, tags);
+        agent.setId(id);
+        agent.setStatus(Agent.Status.IDLE);
+        return agent;
+    }
+}
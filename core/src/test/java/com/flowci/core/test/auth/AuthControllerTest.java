@@ -75,6 +75,22 @@ public class AuthControllerTest extends SpringScenario {
         sessionManager.get();
     }
 
+    @Test
+    public void should_revoke_verified_token_after_password_changed() throws Exception {
+        // init: log in and verify token
+        ResponseMessage<Tokens> message = authHelper.login(user.getEmail(), user.getPasswordOnMd5());
+        String token = message.getData().getToken();
+
+        Assert.assertTrue(authService.set(token));
+        Assert.assertTrue(authService.set(token));
+
+        // when: change password
+        userService.changePassword(user.getPasswordOnMd5(), "54321");
+
+        // then: token is not valid anymore
+        Assert.assertFalse(authService.set(token));
+    }
+
     @Test
     public void should_login_and_return_402_with_invalid_password() throws Exception {
         ResponseMessage<Tokens> message = authHelper.login(user.getEmail(), "wrong..");
@@ -25,9 +25,14 @@ import com.google.common.base.Strings;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 
 import static com.flowci.core.common.helper.CipherHelper.RSA.fingerprintMd5;
 
@@ -48,6 +53,36 @@ public class CipherHelperTest {
         Assert.assertEquals(source, decrypted);
     }
 
+    @Test
+    public void should_encrypt_to_versioned_envelope_by_aes() {
+        final String secret = "ssdkF$HUy2A#D%kd";
+
+        String encrypted = CipherHelper.AES.encrypt(source, secret);
+        Assert.assertTrue(encrypted.startsWith("v1:"));
+
+        // random iv for each encryption
+        Assert.assertNotEquals(encrypted, CipherHelper.AES.encrypt(source, secret));
+
+        // tampered envelope should not be decrypted
+        byte[] envelope = Base64.getDecoder().decode(encrypted.substring(3));
+        envelope[envelope.length - 1] ^= 1;
+        String tampered = "v1:" + Base64.getEncoder().encodeToString(envelope);
+        Assert.assertEquals(StringHelper.EMPTY, CipherHelper.AES.decrypt(tampered, secret));
+
+        Assert.assertEquals(StringHelper.EMPTY, CipherHelper.AES.decrypt(encrypted, "ssdkF$HUy2A#D%kk"));
+    }
+
+    @Test
+    public void should_decrypt_legacy_aes_ecb() throws GeneralSecurityException {
+        final String secret = "ssdkF$HUy2A#D%kd";
+
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5PADDING");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "AES"));
+        String legacy = Base64.getEncoder().encodeToString(cipher.doFinal(source.getBytes(StandardCharsets.UTF_8)));
+
+        Assert.assertEquals(source, CipherHelper.AES.decrypt(legacy, secret));
+    }
+
     @Test
     public void should_encrypt_decrypt_by_rsa() {
         SimpleKeyPair pair = RSA.gen("hello@flow.ci");
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.common;
+
+import com.flowci.core.common.git.GitRepoCache;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+public class GitRepoCacheTest {
+
+    private static final Predicate<String> YmlFile = name -> name.startsWith(".flowci") && name.endsWith(".yml");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File source;
+
+    private String url;
+
+    private GitRepoCache cache;
+
+    @Before
+    public void init() throws Exception {
+        source = folder.newFolder("source");
+        url = source.toURI().toString();
+        cache = new GitRepoCache(folder.newFolder("repos").toPath(), folder.newFolder("tmp").toPath());
+
+        try (Git git = Git.init().setDirectory(source).call()) {
+            commit(git, ".flowci.yml", "version: 1");
+            git.branchCreate().setName("develop").call();
+        }
+    }
+
+    @Test
+    public void should_read_yml_from_commit_without_fetch() throws Exception {
+        RevCommit first;
+        try (Git git = Git.open(source)) {
+            first = git.log().call().iterator().next();
+            commit(git, ".flowci.yml", "version: 2");
+        }
+
+        Assert.assertFalse(cache.exist(url));
+        Assert.assertEquals("version: 2", read("master", null));
+        Assert.assertTrue(cache.exist(url));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("master", "develop")), new HashSet<>(cache.branches(url)));
+
+        // commit already in cache, should read without source repo
+        FileUtils.delete(source, FileUtils.RECURSIVE);
+        Assert.assertEquals("version: 1", read("master", first.getName()));
+        Assert.assertEquals("version: 1", read("develop", first.getName()));
+    }
+
+    @Test
+    public void should_fetch_new_commit_incrementally() throws Exception {
+        Assert.assertEquals("version: 1", read("master", null));
+
+        RevCommit second;
+        try (Git git = Git.open(source)) {
+            second = commit(git, ".flowci.yml", "version: 2");
+        }
+
+        Assert.assertEquals("version: 2", read("master", second.getName()));
+        Assert.assertEquals("version: 1", read("develop", null));
+    }
+
+    @Test
+    public void should_share_fetch_for_concurrent_requests() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new LinkedList<>();
+
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> read("master", null)));
+        }
+
+        for (Future<String> result : results) {
+            Assert.assertEquals("version: 1", result.get(30, TimeUnit.SECONDS));
+        }
+
+        executor.shutdown();
+    }
+
+    private String read(String branch, String commitId) throws Exception {
+        Optional<byte[]> content = cache.read(url, null, branch, commitId, YmlFile);
+        Assert.assertTrue(content.isPresent());
+        return new String(content.get(), StandardCharsets.UTF_8);
+    }
+
+    private RevCommit commit(Git git, String file, String content) throws Exception {
+        Files.write(source.toPath().resolve(file), content.getBytes(StandardCharsets.UTF_8));
+        git.add().addFilepattern(file).call();
+        return git.commit().setMessage("update " + file).setAuthor("flow.ci", "ci@flow.ci").call();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *   Copyright (c) 2020 flow.ci
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+
+package com.flowci.core.test.common;
+
+import com.flowci.core.common.rabbit.RabbitOperations;
+import com.rabbitmq.client.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RabbitOperationsTest {
+
+    private final List<Channel> channels = new LinkedList<>();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private RabbitOperations operations;
+
+    @Before
+    public void init() throws IOException {
+        Connection conn = mock(Connection.class);
+        when(conn.createChannel()).thenAnswer(invocation -> {
+            Channel channel = mock(Channel.class);
+            AtomicLong seq = new AtomicLong(1);
+            when(channel.getNextPublishSeqNo()).thenAnswer(i -> seq.getAndIncrement());
+            when(channel.isOpen()).thenReturn(true);
+            channels.add(channel);
+            return channel;
+        });
+
+        operations = new RabbitOperations(conn, 1, 2);
+        operations.bindTo(registry);
+    }
+
+    @Test
+    public void should_reuse_publish_channel_in_confirm_mode() throws IOException {
+        Assert.assertTrue(operations.send("q", "1".getBytes()));
+        Assert.assertTrue(operations.send("q", "2".getBytes()));
+
+        // then: admin channel and one publish channel created
+        Assert.assertEquals(2, channels.size());
+
+        Channel publisher = channels.get(1);
+        verify(publisher).confirmSelect();
+        verify(publisher, times(2)).basicPublish(eq(""), eq("q"), isNull(), any(byte[].class));
+
+        Assert.assertEquals(2.0, registry.get("flowci.rabbit.published").tag("queue", "q").functionCounter().count(), 0);
+    }
+
+    @Test
+    public void should_publish_again_when_nacked() throws Exception {
+        operations.send("q", "1".getBytes());
+        operations.send("q", "2".getBytes());
+
+        Channel publisher = channels.get(1);
+        ArgumentCaptor<ConfirmListener> listener = ArgumentCaptor.forClass(ConfirmListener.class);
+        verify(publisher).addConfirmListener(listener.capture());
+
+        CountDownLatch republished = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            republished.countDown();
+            return null;
+        }).when(publisher).basicPublish(eq(""), eq("q"), isNull(), eq("2".getBytes()));
+
+        // when: first message acked, second message nacked
+        listener.getValue().handleAck(1, false);
+        listener.getValue().handleNack(2, true);
+
+        // then: only the nacked message published again
+        Assert.assertTrue(republished.await(5, TimeUnit.SECONDS));
+        verify(publisher, times(1)).basicPublish(eq(""), eq("q"), isNull(), eq("1".getBytes()));
+        Assert.assertEquals(1.0, registry.get("flowci.rabbit.nacked").tag("queue", "q").functionCounter().count(), 0);
+    }
+
+    @Test
+    public void should_start_consumers_on_own_channels() throws IOException {
+        operations.startConsumer("q", false, 3, (headers, body, envelope) -> true);
+
+        // then: 3 consumer channels besides admin channel
+        Assert.assertEquals(4, channels.size());
+
+        for (Channel channel : channels.subList(1, 4)) {
+            verify(channel).basicQos(1, false);
+            verify(channel).basicConsume(eq("q"), eq(false), any(Consumer.class));
+        }
+
+        operations.removeConsumer("q");
+        for (Channel channel : channels.subList(1, 4)) {
+            verify(channel).basicCancel(any());
+        }
+    }
+}
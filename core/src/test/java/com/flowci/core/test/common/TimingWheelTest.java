@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.common;
+
+import com.flowci.core.common.manager.TimingWheel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+public class TimingWheelTest {
+
+    private final List<String> expired = new LinkedList<>();
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(1000, 8, 0, Runnable::run, expired::add);
+
+    @Test
+    public void should_expire_key_when_tick_passed() {
+        wheel.schedule("a", 1500);
+        wheel.schedule("b", 3000);
+        wheel.schedule("c", 20_000); // over one round of the wheel
+        Assert.assertEquals(3, wheel.size());
+
+        Assert.assertEquals(0, wheel.advance(1999));
+        Assert.assertEquals(1, wheel.advance(2000));
+        Assert.assertEquals("a", expired.get(0));
+
+        Assert.assertEquals(1, wheel.advance(3000));
+        Assert.assertEquals("b", expired.get(1));
+
+        // c stays in the bucket visited at tick 4 and 12
+        Assert.assertEquals(0, wheel.advance(12_000));
+        Assert.assertEquals(1, wheel.advance(20_000));
+        Assert.assertEquals("c", expired.get(2));
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void should_replace_or_cancel_by_key() {
+        wheel.schedule("a", 2000);
+        wheel.schedule("a", 5000);
+        Assert.assertEquals(1, wheel.size());
+        Assert.assertEquals(5000, wheel.deadline("a").getAsLong());
+
+        Assert.assertEquals(0, wheel.advance(4000));
+        Assert.assertEquals(1, wheel.advance(5000));
+
+        wheel.schedule("b", 6000);
+        Assert.assertTrue(wheel.cancel("b"));
+        Assert.assertFalse(wheel.cancel("b"));
+        Assert.assertEquals(0, wheel.advance(10_000));
+    }
+
+    @Test
+    public void should_expire_all_passed_keys_when_clock_jumps() {
+        wheel.schedule("a", 1000);
+        wheel.schedule("b", 7000);
+        wheel.schedule("c", 30_000);
+
+        Assert.assertEquals(2, wheel.advance(25_000));
+        Assert.assertEquals(1, wheel.size());
+
+        // passed deadline expires on next tick
+        wheel.schedule("d", 1000);
+        Assert.assertEquals(0, wheel.advance(25_500));
+        Assert.assertEquals(1, wheel.advance(26_000));
+        Assert.assertEquals("d", expired.get(2));
+    }
+}
@@ -22,14 +22,32 @@ import com.cronutils.model.definition.CronDefinition;
 import com.cronutils.model.definition.CronDefinitionBuilder;
 import com.cronutils.model.time.ExecutionTime;
 import com.cronutils.parser.CronParser;
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.flow.dao.FlowCronDao;
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.flow.domain.FlowCron;
+import com.flowci.core.flow.service.CronService;
+import com.flowci.core.flow.service.FlowService;
+import com.flowci.core.flow.service.YmlService;
+import com.flowci.core.job.event.CreateNewJobEvent;
 import com.flowci.core.test.ZookeeperScenario;
 import com.flowci.domain.ObjectWrapper;
+import com.flowci.util.StringHelper;
 import lombok.extern.log4j.Log4j2;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
 import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -41,13 +59,123 @@ import java.util.concurrent.TimeUnit;
 @Log4j2
 public class CronServiceTest extends ZookeeperScenario {
 
+    // fire once a year, so the next fire time is always far from now
+    private static final String Yearly = "0 0 1 1 *";
+
+    private static final long OneYear = 365L * 24 * 3600 * 1000;
+
     private final ScheduledExecutorService service = Executors.newScheduledThreadPool(1);
 
+    @Autowired
+    private CronService cronService;
+
+    @Autowired
+    private FlowCronDao flowCronDao;
+
+    @Autowired
+    private FlowService flowService;
+
+    @Autowired
+    private YmlService ymlService;
+
+    @Autowired
+    private AppProperties.Flow flowProperties;
+
+    private final SpringEventManager eventManager = Mockito.mock(SpringEventManager.class);
+
+    private Object cronServiceImpl;
+
+    private Object defaultEventManager;
+
+    private Object defaultIsLeader;
+
+    private AppProperties.Flow.CronCatchUp defaultCatchUp;
+
+    private Flow flow;
+
     @Before
     public void login() {
         mockLogin();
     }
 
+    @Before
+    public void mockLeader() throws IOException {
+        cronServiceImpl = AopTestUtils.getUltimateTargetObject(cronService);
+        defaultEventManager = ReflectionTestUtils.getField(cronServiceImpl, "eventManager");
+        defaultIsLeader = ReflectionTestUtils.getField(cronServiceImpl, "isLeader");
+        defaultCatchUp = flowProperties.getCronCatchUp();
+
+        ReflectionTestUtils.setField(cronServiceImpl, "eventManager", eventManager);
+        ReflectionTestUtils.setField(cronServiceImpl, "isLeader", true);
+
+        flow = flowService.create("cron-flow");
+        ymlService.saveYml(flow, StringHelper.toString(load("flow.yml")));
+    }
+
+    @After
+    public void reset() {
+        cronService.cancel(flow);
+        ReflectionTestUtils.setField(cronServiceImpl, "eventManager", defaultEventManager);
+        ReflectionTestUtils.setField(cronServiceImpl, "isLeader", defaultIsLeader);
+        flowProperties.setCronCatchUp(defaultCatchUp);
+    }
+
+    @Test
+    public void should_not_fire_if_next_fire_time_advanced_by_others() {
+        Date nextFireAt = new Date(System.currentTimeMillis() - 1000);
+        FlowCron stale = flowCronDao.upsert(flow.getId(), Yearly, nextFireAt);
+
+        // when: fired by other node as leader
+        Date next = new Date(System.currentTimeMillis() + OneYear);
+        Assert.assertTrue(flowCronDao.advance(flow.getId(), nextFireAt, next, new Date()));
+
+        // then: schedule with stale next fire time cannot be advanced again
+        Assert.assertFalse(flowCronDao.advance(flow.getId(), nextFireAt, next, new Date()));
+
+        load(stale, false);
+        fire(flow.getId());
+        Mockito.verify(eventManager, Mockito.after(3000).never()).publish(Mockito.any(CreateNewJobEvent.class));
+
+        // then: reloaded from db
+        Assert.assertEquals(next, flowCronDao.findById(flow.getId()).get().getNextFireAt());
+        Assert.assertEquals(next, scheduledAt(flow.getId()));
+    }
+
+    @Test
+    public void should_skip_missed_fire_times_if_catch_up_is_skip() {
+        flowProperties.setCronCatchUp(AppProperties.Flow.CronCatchUp.SKIP);
+
+        Date missed = new Date(System.currentTimeMillis() - 3 * OneYear);
+        FlowCron cron = flowCronDao.upsert(flow.getId(), Yearly, missed);
+        load(cron, true);
+
+        Mockito.verify(eventManager, Mockito.after(3000).never()).publish(Mockito.any(CreateNewJobEvent.class));
+
+        FlowCron persisted = flowCronDao.findById(flow.getId()).get();
+        Assert.assertTrue(persisted.getNextFireAt().after(new Date()));
+        Assert.assertNull(persisted.getLastFireAt());
+        Assert.assertEquals(persisted.getNextFireAt(), scheduledAt(flow.getId()));
+    }
+
+    @Test
+    public void should_fire_once_for_missed_fire_times_if_catch_up_is_once() {
+        flowProperties.setCronCatchUp(AppProperties.Flow.CronCatchUp.ONCE);
+
+        Date missed = new Date(System.currentTimeMillis() - 3 * OneYear);
+        FlowCron cron = flowCronDao.upsert(flow.getId(), Yearly, missed);
+        load(cron, true);
+
+        // fired by timing wheel on next tick, and fire again from the same schedule
+        Mockito.verify(eventManager, Mockito.timeout(5000)).publish(Mockito.any(CreateNewJobEvent.class));
+        fire(flow.getId());
+
+        Mockito.verify(eventManager, Mockito.after(3000).times(1)).publish(Mockito.any(CreateNewJobEvent.class));
+
+        FlowCron persisted = flowCronDao.findById(flow.getId()).get();
+        Assert.assertTrue(persisted.getNextFireAt().after(new Date()));
+        Assert.assertNotNull(persisted.getLastFireAt());
+    }
+
     @Test
     public void should_get_exec_time_from_crontab() throws InterruptedException {
         CronDefinition definition = CronDefinitionBuilder.instanceDefinitionFor(CronType.UNIX);
@@ -72,4 +200,18 @@ public class CronServiceTest extends ZookeeperScenario {
         counter.await();
         Assert.assertTrue(result.getValue());
     }
+
+    private void load(FlowCron cron, boolean catchUp) {
+        ReflectionTestUtils.invokeMethod(cronServiceImpl, "load", cron, catchUp);
+    }
+
+    private void fire(String flowId) {
+        ReflectionTestUtils.invokeMethod(cronServiceImpl, "fire", flowId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Date scheduledAt(String flowId) {
+        Map<String, ?> schedules = (Map<String, ?>) ReflectionTestUtils.getField(cronServiceImpl, "schedules");
+        return (Date) ReflectionTestUtils.getField(schedules.get(flowId), "nextFireAt");
+    }
 }
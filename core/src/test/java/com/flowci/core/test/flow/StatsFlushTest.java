@@ -0,0 +1,86 @@
+package com.flowci.core.test.flow;
+
+import com.flowci.core.flow.dao.StatsItemDao;
+import com.flowci.core.flow.domain.StatsCounter;
+import com.flowci.core.flow.domain.StatsItem;
+import com.flowci.core.flow.domain.StatsType;
+import com.flowci.core.flow.service.StatsServiceImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.*;
+
+/**
+ * Flush of stats service with db failures
+ */
+public class StatsFlushTest {
+
+    private static final String FlowId = "flow";
+
+    private static final int Day = 20200101;
+
+    private final StatsItemDao statsItemDao = Mockito.mock(StatsItemDao.class);
+
+    private final StatsServiceImpl statsService = new StatsServiceImpl();
+
+    @Before
+    public void init() {
+        ReflectionTestUtils.setField(statsService, "statsItemDao", statsItemDao);
+        Mockito.when(statsItemDao.increase(anyString(), anyInt(), anyString(), any(), anyInt()))
+                .thenReturn(new StatsItem());
+
+        StatsCounter counter = new StatsCounter();
+        counter.put("SUCCESS", 1.0F);
+        statsService.add(FlowId, Day, StatsType.JOB_STATUS, counter);
+        statsService.add(FlowId, Day, StatsType.JOB_STATUS, counter);
+    }
+
+    @Test
+    public void should_roll_up_to_total_after_day_item_flushed() {
+        Mockito.doThrow(new DataAccessResourceFailureException("db down"))
+                .doReturn(new StatsItem())
+                .when(statsItemDao).increase(eq(FlowId), eq(Day), anyString(), any(), anyInt());
+
+        // when: day item failed to flush
+        statsService.flush();
+
+        // then: total should not be increased
+        Mockito.verify(statsItemDao, Mockito.never())
+                .increase(eq(FlowId), eq(StatsItem.ZERO_DAY), anyString(), any(), anyInt());
+
+        // when: flush again
+        statsService.flush();
+
+        // then: day item and total increased with 2 jobs once
+        Mockito.verify(statsItemDao, Mockito.times(2))
+                .increase(eq(FlowId), eq(Day), anyString(), any(), eq(2));
+        Mockito.verify(statsItemDao, Mockito.times(1))
+                .increase(eq(FlowId), eq(StatsItem.ZERO_DAY), anyString(), any(), eq(2));
+    }
+
+    @Test
+    public void should_retry_total_only_if_total_failed_to_flush() {
+        Mockito.doThrow(new DataAccessResourceFailureException("db down"))
+                .doReturn(new StatsItem())
+                .when(statsItemDao).increase(eq(FlowId), eq(StatsItem.ZERO_DAY), anyString(), any(), anyInt());
+
+        // when: total failed to flush and flush again
+        statsService.flush();
+        statsService.flush();
+
+        // then: day item should be increased once
+        Mockito.verify(statsItemDao, Mockito.times(1))
+                .increase(eq(FlowId), eq(Day), anyString(), any(), eq(2));
+        Mockito.verify(statsItemDao, Mockito.times(2))
+                .increase(eq(FlowId), eq(StatsItem.ZERO_DAY), anyString(), any(), eq(2));
+
+        // then: total set on day item after total flushed
+        Mockito.verify(statsItemDao, Mockito.times(1))
+                .setTotal(eq(FlowId), eq(Collections.singleton(Day)), anyString(), any());
+    }
+}
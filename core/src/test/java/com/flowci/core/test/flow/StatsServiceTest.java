@@ -18,6 +18,7 @@ package com.flowci.core.test.flow;
 
 import com.flowci.core.common.helper.DateHelper;
 import com.flowci.core.common.helper.ThreadHelper;
+import com.flowci.core.flow.domain.StatsCounter;
 import com.flowci.core.flow.domain.StatsItem;
 import com.flowci.core.flow.domain.StatsType;
 import com.flowci.core.flow.service.StatsService;
@@ -32,6 +33,9 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author yang
@@ -110,4 +114,32 @@ public class StatsServiceTest extends SpringScenario {
         Assert.assertEquals(0.0F, total.getCounter().get("CANCELLED"), 0.0);
         Assert.assertEquals(0.0F, total.getCounter().get("TIMEOUT"), 0.0);
     }
+
+    @Test
+    public void should_sum_stats_added_concurrently() throws InterruptedException {
+        String flowId = "22233344";
+        int today = DateHelper.toIntDay(new Date());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 100; i++) {
+            executor.execute(() -> {
+                StatsCounter counter = new StatsCounter();
+                counter.put("SUCCESS", 1.0F);
+                statsService.add(flowId, today, StatsType.JOB_STATUS, counter);
+            });
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        ThreadHelper.sleep(1000);
+
+        StatsItem item = statsService.get(flowId, StatsType.JOB_STATUS, today);
+        Assert.assertEquals(100, item.getNumOfToday());
+        Assert.assertEquals(100, item.getNumOfTotal());
+        Assert.assertEquals(100.0F, item.getCounter().get("SUCCESS"), 0.0);
+
+        StatsItem total = statsService.get(flowId, StatsType.JOB_STATUS, StatsItem.ZERO_DAY);
+        Assert.assertEquals(100, total.getNumOfToday());
+        Assert.assertEquals(100.0F, total.getCounter().get("SUCCESS"), 0.0);
+    }
 }
@@ -16,12 +16,15 @@
 
 package com.flowci.core.test.job;
 
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.job.dao.ArtifactBlobDao;
 import com.flowci.core.job.dao.JobDao;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.JobArtifact;
 import com.flowci.core.job.service.ArtifactService;
 import com.flowci.core.test.SpringScenario;
 import com.flowci.store.FileManager;
+import com.flowci.util.HashingHelper;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -34,13 +37,18 @@ import java.io.IOException;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 
 public class ArtifactServiceTest extends SpringScenario {
 
     @Autowired
     private JobDao jobDao;
 
+    @Autowired
+    private ArtifactBlobDao artifactBlobDao;
+
     @Autowired
     private ArtifactService artifactService;
 
@@ -57,10 +65,12 @@ public class ArtifactServiceTest extends SpringScenario {
         ByteArrayInputStream content = new ByteArrayInputStream("content".getBytes());
         MockMultipartFile file = new MockMultipartFile("file", "test.jar", null, content);
 
-        Mockito.when(fileManager.save(eq(file.getOriginalFilename()), any(), any()))
+        String sha256 = HashingHelper.sha256("content");
+
+        Mockito.when(fileManager.save(startsWith(sha256), any(), anyLong(), any()))
                 .thenReturn("artifact/file/path");
 
-        Mockito.when(fileManager.read(eq(file.getOriginalFilename()), any()))
+        Mockito.when(fileManager.read(startsWith(sha256), any()))
                 .thenReturn(content);
 
         // when: save artifact
@@ -79,4 +89,81 @@ public class ArtifactServiceTest extends SpringScenario {
         Assert.assertEquals("test.jar", fetched.getFileName());
         Assert.assertEquals("artifact/file/path", fetched.getPath());
     }
+
+    @Test
+    public void should_share_blob_for_same_content_and_delete_if_not_referred() throws IOException {
+        Job first = new Job();
+        first.setFlowId("2222");
+        first.setBuildNumber(1L);
+        jobDao.save(first);
+
+        Job second = new Job();
+        second.setFlowId("2222");
+        second.setBuildNumber(2L);
+        jobDao.save(second);
+
+        String sha256 = HashingHelper.sha256("content");
+        MockMultipartFile file = new MockMultipartFile("file", "test.jar", null, "content".getBytes());
+
+        Mockito.when(fileManager.save(startsWith(sha256), any(), anyLong(), any()))
+                .thenReturn("blobs/path");
+
+        // when: content not uploaded
+        Assert.assertFalse(artifactService.link(first, "foo", "md5..", sha256, "test.jar"));
+
+        // when: upload from first job and link from second job
+        artifactService.save(first, "foo", "md5..", sha256, file);
+        Assert.assertTrue(artifactService.link(second, "foo", "md5..", sha256, "test.jar"));
+
+        // then: content saved once and referred twice
+        Mockito.verify(fileManager, Mockito.times(1)).save(startsWith(sha256), any(), anyLong(), any());
+        Assert.assertEquals(2L, artifactBlobDao.findById(sha256).get().getRefs().longValue());
+
+        JobArtifact linked = artifactService.list(second).get(0);
+        Assert.assertEquals("blobs/path", linked.getPath());
+        Assert.assertEquals(7L, linked.getContentSize().longValue());
+
+        // when: delete job and flow
+        Flow flow = new Flow();
+        flow.setId("2222");
+
+        Assert.assertEquals(1L, artifactService.delete(first).longValue());
+        Mockito.verify(fileManager, Mockito.never()).remove(startsWith(sha256), any());
+
+        Assert.assertEquals(1L, artifactService.delete(flow).longValue());
+        Mockito.verify(fileManager, Mockito.times(1)).remove(startsWith(sha256), any());
+
+        // then: blob should be deleted
+        Assert.assertFalse(artifactBlobDao.findById(sha256).isPresent());
+    }
+
+    @Test
+    public void should_save_content_of_blob_created_again_to_new_file() throws IOException {
+        Job job = new Job();
+        job.setFlowId("3333");
+        job.setBuildNumber(1L);
+        jobDao.save(job);
+
+        String sha256 = HashingHelper.sha256("content");
+        MockMultipartFile file = new MockMultipartFile("file", "test.jar", null, "content".getBytes());
+
+        Mockito.when(fileManager.save(startsWith(sha256), any(), anyLong(), any()))
+                .thenReturn("blobs/path");
+
+        // init: blob saved and deleted
+        artifactService.save(job, "foo", "md5..", sha256, file);
+        String deleted = artifactBlobDao.findById(sha256).get().fileName();
+        artifactService.delete(job);
+
+        // when: save same content again
+        artifactService.save(job, "foo", "md5..", sha256, file);
+
+        // then: content of the new blob should be saved to different file
+        String created = artifactBlobDao.findById(sha256).get().fileName();
+        Assert.assertNotEquals(deleted, created);
+
+        Mockito.verify(fileManager, Mockito.times(1)).remove(eq(deleted), any());
+        Mockito.verify(fileManager, Mockito.times(1)).save(eq(created), any(), anyLong(), any());
+        Mockito.verify(fileManager, Mockito.never()).remove(eq(created), any());
+    }
 }
@@ -25,11 +25,13 @@ import com.flowci.core.job.domain.Executed.Status;
 import com.flowci.core.job.domain.Step;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.JobItem;
+import com.flowci.core.job.domain.JobItemPage;
 import com.flowci.core.plugin.dao.PluginDao;
 import com.flowci.core.test.MockMvcHelper;
 import com.flowci.core.test.SpringScenario;
 import com.flowci.core.test.flow.FlowMockHelper;
 import com.flowci.core.common.domain.http.ResponseMessage;
+import com.flowci.exception.ErrorCode;
 import com.flowci.util.StringHelper;
 import org.junit.Assert;
 import org.junit.Before;
@@ -56,6 +58,10 @@ public class JobControllerTest extends SpringScenario {
             new TypeReference<ResponseMessage<Job>>() {
             };
 
+    private static final TypeReference<ResponseMessage<JobItemPage>> JobItemPageType =
+            new TypeReference<ResponseMessage<JobItemPage>>() {
+            };
+
     private static final TypeReference<ResponseMessage<JsonablePage<JobItem>>> JobListType =
             new TypeReference<ResponseMessage<JsonablePage<JobItem>>>() {
             };
@@ -156,6 +162,48 @@ public class JobControllerTest extends SpringScenario {
         Assert.assertEquals(first.getId(), page.getContent().get(1).getId());
     }
 
+    @Test
+    public void should_list_job_by_build_number_cursor() throws Exception {
+        // init:
+        Job first = createJobForFlow(flow);
+        Job second = createJobForFlow(flow);
+        Job third = createJobForFlow(flow);
+
+        // when: list first page with approximate count
+        JobItemPage page = mockMvcHelper
+                .expectSuccessAndReturnClass(get("/jobs/hello-flow/items?size=2&count=true"), JobItemPageType)
+                .getData();
+
+        // then:
+        Assert.assertEquals(2, page.getItems().size());
+        Assert.assertEquals(third.getId(), page.getItems().get(0).getId());
+        Assert.assertEquals(second.getId(), page.getItems().get(1).getId());
+        Assert.assertEquals(second.getBuildNumber(), page.getNext());
+        Assert.assertEquals(3L, page.getTotal().longValue());
+
+        // when: list next page by cursor
+        page = mockMvcHelper
+                .expectSuccessAndReturnClass(get("/jobs/hello-flow/items?size=2&before=" + page.getNext()), JobItemPageType)
+                .getData();
+
+        // then:
+        Assert.assertEquals(1, page.getItems().size());
+        Assert.assertEquals(first.getId(), page.getItems().get(0).getId());
+        Assert.assertNull(page.getNext());
+        Assert.assertNull(page.getTotal());
+    }
+
+    @Test
+    public void should_reject_job_list_by_cursor_if_page_size_out_of_range() throws Exception {
+        ResponseMessage<JobItemPage> message = mockMvcHelper
+                .expectSuccessAndReturnClass(get("/jobs/hello-flow/items?size=" + Integer.MAX_VALUE), JobItemPageType);
+        Assert.assertEquals(ErrorCode.INVALID_ARGUMENT, message.getCode());
+
+        message = mockMvcHelper
+                .expectSuccessAndReturnClass(get("/jobs/hello-flow/items?size=0"), JobItemPageType);
+        Assert.assertEquals(ErrorCode.INVALID_ARGUMENT, message.getCode());
+    }
+
     @Test
     public void should_list_job_steps_by_flow_and_build_number() throws Exception {
         // init:
@@ -0,0 +1,41 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.test.SpringScenario;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class JobDaoTest extends SpringScenario {
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Test
+    public void should_save_changed_fields_only() {
+        Job job = new Job();
+        job.setFlowId("1111");
+        job.setBuildNumber(1L);
+        jobDao.save(job);
+
+        // init: load two instances of job
+        Job first = jobDao.findById(job.getId()).get();
+        Job second = jobDao.findById(job.getId()).get();
+
+        // when: change different fields from each instance
+        first.setStatus(Job.Status.RUNNING);
+        Assert.assertTrue(jobDao.saveChanges(first));
+
+        second.setCurrentPath("flow/step");
+        Assert.assertTrue(jobDao.saveChanges(second));
+
+        // then: both changes should be written
+        Job saved = jobDao.findById(job.getId()).get();
+        Assert.assertEquals(Job.Status.RUNNING, saved.getStatus());
+        Assert.assertEquals("flow/step", saved.getCurrentPath());
+
+        // then: nothing to write if job not changed
+        Assert.assertFalse(jobDao.saveChanges(saved));
+    }
+}
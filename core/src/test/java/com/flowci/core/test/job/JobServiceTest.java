@@ -34,10 +34,12 @@ import com.flowci.core.job.domain.Step;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Job.Status;
 import com.flowci.core.job.domain.Job.Trigger;
+import com.flowci.core.job.domain.RetentionReport;
 import com.flowci.core.job.event.JobReceivedEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
 import com.flowci.core.job.event.StartAsyncLocalTaskEvent;
 import com.flowci.core.job.manager.JobActionManager;
+import com.flowci.core.job.manager.JobWatchdog;
 import com.flowci.core.job.manager.YmlManager;
 import com.flowci.core.job.service.*;
 import com.flowci.core.plugin.dao.PluginDao;
@@ -110,6 +112,12 @@ public class JobServiceTest extends ZookeeperScenario {
     @Autowired
     private YmlManager ymlManager;
 
+    @Autowired
+    private JobWatchdog jobWatchdog;
+
+    @Autowired
+    private RetentionService retentionService;
+
     @MockBean
     private LocalTaskService localTaskManager;
 
@@ -209,6 +217,54 @@ public class JobServiceTest extends ZookeeperScenario {
         Assert.assertFalse(job.isExpired());
     }
 
+    @Test
+    public void should_set_job_to_timeout_by_watchdog_when_expired() throws InterruptedException {
+        // init: job expired in 1 second
+        Job job = jobService.create(flow, yml.getRaw(), Trigger.MANUAL, StringVars.EMPTY);
+        job.setExpire(1);
+        jobDao.save(job);
+
+        CountDownLatch waitForTimeout = new CountDownLatch(1);
+        addEventListener((ApplicationListener<JobStatusChangeEvent>) event -> {
+            if (event.getJob().getStatus() == Status.TIMEOUT) {
+                waitForTimeout.countDown();
+            }
+        });
+
+        // when:
+        jobWatchdog.watch(job);
+
+        // then: job should be timeout
+        Assert.assertTrue(waitForTimeout.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Status.TIMEOUT, jobDao.findById(job.getId()).get().getStatus());
+    }
+
+    @Test
+    public void should_purge_jobs_out_of_retain_builds() {
+        // init: 3 finished jobs
+        Job first = jobService.create(flow, yml.getRaw(), Trigger.MANUAL, StringVars.EMPTY);
+        Job second = jobService.create(flow, yml.getRaw(), Trigger.MANUAL, StringVars.EMPTY);
+        Job latest = jobService.create(flow, yml.getRaw(), Trigger.MANUAL, StringVars.EMPTY);
+
+        for (Job job : new Job[]{first, second, latest}) {
+            job.setStatus(Status.SUCCESS);
+            jobDao.save(job);
+        }
+
+        // when: keep the latest build only
+        flow.setRetainBuilds(1);
+        RetentionReport report = retentionService.purge(flow);
+
+        // then: jobs and steps of previous builds should be purged
+        Assert.assertEquals(2, report.getNumOfJobs());
+        Assert.assertFalse(jobDao.existsById(first.getId()));
+        Assert.assertFalse(jobDao.existsById(second.getId()));
+        Assert.assertTrue(jobDao.existsById(latest.getId()));
+
+        Assert.assertTrue(stepService.list(first).isEmpty());
+        Assert.assertFalse(stepService.list(latest).isEmpty());
+    }
+
     @Test
     public void should_finish_whole_job() throws InterruptedException, IOException {
         // init:
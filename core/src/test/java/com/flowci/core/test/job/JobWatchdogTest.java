@@ -0,0 +1,110 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.manager.TimingWheel;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.manager.JobActionManager;
+import com.flowci.core.job.manager.JobWatchdogImpl;
+import com.flowci.core.job.manager.LocalJobLockManager;
+import com.flowci.core.job.service.StepService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * Running job deadline by start of the current step
+ */
+public class JobWatchdogTest {
+
+    private static final int StepTimeout = 60;
+
+    private final JobDao jobDao = Mockito.mock(JobDao.class);
+
+    private final StepService stepService = Mockito.mock(StepService.class);
+
+    private final JobActionManager jobActionManager = Mockito.mock(JobActionManager.class);
+
+    private final JobWatchdogImpl watchdog = new JobWatchdogImpl();
+
+    private Job job;
+
+    private Step step;
+
+    @Before
+    public void init() {
+        AppProperties.Job jobProperties = new AppProperties.Job();
+        jobProperties.setStepTimeoutGrace(0);
+
+        ReflectionTestUtils.setField(watchdog, "jobProperties", jobProperties);
+        ReflectionTestUtils.setField(watchdog, "jobDao", jobDao);
+        ReflectionTestUtils.setField(watchdog, "jobLockManager", new LocalJobLockManager());
+        ReflectionTestUtils.setField(watchdog, "jobActionManager", jobActionManager);
+        ReflectionTestUtils.setField(watchdog, "stepService", stepService);
+
+        job = new Job();
+        job.setId("job");
+        job.setStatus(Job.Status.RUNNING);
+        job.setCurrentPath("flow/step-2");
+        job.setTimeout(StepTimeout);
+
+        step = new Step().setJobId(job.getId()).setNodePath(job.getCurrentPath());
+
+        Mockito.when(jobDao.findAllExpiryByStatusIn(any())).thenReturn(Collections.emptyList());
+        Mockito.when(jobDao.findById(job.getId())).thenReturn(Optional.of(job));
+        Mockito.when(stepService.get(job.getId(), job.getCurrentPath())).thenReturn(step);
+        watchdog.start();
+    }
+
+    @After
+    public void clean() {
+        watchdog.close();
+    }
+
+    @Test
+    public void should_timeout_by_start_of_current_step_even_if_job_updated_recently() {
+        // last callback and current step started before step timeout
+        job.setFinishAt(secondsAgo(StepTimeout + 10));
+        job.setUpdatedAt(new Date());
+        step.setStartAt(secondsAgo(StepTimeout + 5));
+
+        watchdog.watch(job);
+
+        Mockito.verify(jobActionManager, Mockito.timeout(5000)).toTimeout(job);
+    }
+
+    @Test
+    public void should_watch_again_if_current_step_started_within_timeout() {
+        // last callback was before step timeout, but current step started just now
+        job.setFinishAt(secondsAgo(StepTimeout + 10));
+        step.setStartAt(new Date());
+
+        watchdog.watch(job);
+
+        // then: job reloaded with lock on deadline from last callback, and watched by start of current step
+        Mockito.verify(jobDao, Mockito.timeout(5000).times(2)).findById(job.getId());
+        Mockito.verify(jobActionManager, Mockito.after(1500).never()).toTimeout(any());
+
+        long expected = step.getStartAt().getTime() + StepTimeout * 1000;
+        Assert.assertEquals(expected, wheel().deadline(job.getId()).getAsLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    private TimingWheel<String> wheel() {
+        return (TimingWheel<String>) ReflectionTestUtils.getField(watchdog, "wheel");
+    }
+
+    private static Date secondsAgo(int seconds) {
+        return new Date(System.currentTimeMillis() - seconds * 1000L);
+    }
+}
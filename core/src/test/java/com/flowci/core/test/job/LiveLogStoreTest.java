@@ -0,0 +1,120 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.domain.LogChunk;
+import com.flowci.core.job.manager.LiveLogStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LiveLogStoreTest {
+
+    private Path dir;
+
+    private LiveLogStore store;
+
+    @Before
+    public void init() throws IOException {
+        dir = Files.createTempDirectory("live-logs");
+        store = new LiveLogStore(dir, 10);
+        store.init("job");
+    }
+
+    @After
+    public void clean() throws IOException {
+        store.close();
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void should_read_range_of_log() {
+        store.append("job", "step/1", "hello ".getBytes());
+        store.append("job", "step/1", "ci".getBytes());
+
+        LogChunk chunk = store.read("job", "step/1", 2, 5);
+        Assert.assertEquals(2, chunk.getOffset());
+        Assert.assertEquals("llo c", new String(chunk.getData()));
+        Assert.assertEquals(8, chunk.getSize());
+
+        LogChunk tail = store.read("job", "step/1", 6, 100);
+        Assert.assertEquals("ci", new String(tail.getData()));
+    }
+
+    @Test
+    public void should_keep_latest_bytes_when_ring_is_full() {
+        store.append("job", "step", "0123456".getBytes());
+        store.append("job", "step", "789abc".getBytes());
+
+        // then: bytes before offset 3 are overwritten
+        LogChunk chunk = store.read("job", "step", 0, 100);
+        Assert.assertEquals(3, chunk.getOffset());
+        Assert.assertEquals("3456789abc", new String(chunk.getData()));
+        Assert.assertEquals(13, chunk.getSize());
+
+        // then: data larger than ring only keep the tail
+        store.append("job", "step", "ABCDEFGHIJKLMN".getBytes());
+        Assert.assertEquals("EFGHIJKLMN", new String(store.read("job", "step", 0, 100).getData()));
+        Assert.assertEquals(27, store.size("job", "step"));
+    }
+
+    @Test
+    public void should_reopen_log_from_file() {
+        store.append("job", "step", "persisted".getBytes());
+        store.close();
+
+        store = new LiveLogStore(dir, 10);
+        Assert.assertEquals("persisted", new String(store.read("job", "step", 0, 100).getData()));
+    }
+
+    @Test
+    public void should_not_accept_log_if_job_removed() {
+        Assert.assertTrue(store.append("job", "step", "log".getBytes()));
+        store.remove("job");
+
+        Assert.assertFalse(store.append("job", "step", "log".getBytes()));
+        Assert.assertEquals(0, store.size("job", "step"));
+    }
+
+    @Test
+    public void should_not_keep_log_appended_while_job_removing() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            String jobId = "job-" + round;
+            store.init(jobId);
+
+            AtomicBoolean stop = new AtomicBoolean(false);
+            List<Thread> appenders = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                Thread appender = new Thread(() -> {
+                    for (int n = 0; !stop.get(); n++) {
+                        store.append(jobId, "step-" + (n % 50), "log".getBytes());
+                    }
+                });
+                appender.start();
+                appenders.add(appender);
+            }
+
+            Thread.sleep(5);
+            store.remove(jobId);
+
+            stop.set(true);
+            for (Thread appender : appenders) {
+                appender.join();
+            }
+
+            // then: no log of removed job is kept
+            Assert.assertFalse(Files.exists(dir.resolve(jobId)));
+            for (int n = 0; n < 50; n++) {
+                Assert.assertEquals(0, store.size(jobId, "step-" + n));
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.flowci.core.test.job;
 
+import com.flowci.core.job.domain.LogChunk;
 import com.flowci.core.job.service.LoggingService;
 import com.flowci.core.job.service.StepService;
 import com.flowci.core.test.SpringScenario;
@@ -49,6 +50,42 @@ public class LoggingServiceTest extends SpringScenario {
         Assert.assertNotNull(resource);
     }
 
+    @Test
+    public void should_read_tail_of_log_file() throws IOException {
+        // init:
+        String cmdId = "dummy-tail-cmd-id";
+
+        Step dummy = new Step();
+        dummy.setId(cmdId);
+        dummy.setJobId("dummy-job-id");
+        dummy.setFlowId("flowid");
+        dummy.setBuildNumber(1L);
+        Mockito.when(stepService.get(cmdId)).thenReturn(dummy);
+
+        String content = "line 1\nline 2\nline 3\n";
+        fileKey = loggingService.save(cmdId + ".log", StringHelper.toInputStream(content));
+
+        // when:
+        LogChunk tail = loggingService.tail(cmdId, 2);
+
+        // then:
+        Assert.assertEquals(7, tail.getOffset());
+        Assert.assertEquals("line 2\nline 3\n", new String(tail.getData()));
+        Assert.assertEquals(content.length(), tail.getSize());
+
+        // then: read from offset
+        LogChunk since = loggingService.read(cmdId, 14, 100);
+        Assert.assertEquals("line 3\n", new String(since.getData()));
+
+        // then: empty if no lines
+        LogChunk none = loggingService.tail(cmdId, 0);
+        Assert.assertEquals(0, none.getData().length);
+        Assert.assertEquals(content.length(), none.getSize());
+
+        // then: whole log if lines more than log
+        Assert.assertEquals(content, new String(loggingService.tail(cmdId, 10).getData()));
+    }
+
     @After
     public void remove() throws IOException {
         if (StringHelper.hasValue(fileKey)) {
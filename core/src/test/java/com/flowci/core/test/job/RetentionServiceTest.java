@@ -0,0 +1,125 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.flow.domain.Flow;
+import com.flowci.core.job.dao.*;
+import com.flowci.core.job.domain.*;
+import com.flowci.core.job.service.RetentionService;
+import com.flowci.core.test.SpringScenario;
+import com.flowci.store.FileManager;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class RetentionServiceTest extends SpringScenario {
+
+    @Autowired
+    private JobDao jobDao;
+
+    @Autowired
+    private JobYmlDao jobYmlDao;
+
+    @Autowired
+    private ExecutedCmdDao executedCmdDao;
+
+    @Autowired
+    private JobReportDao jobReportDao;
+
+    @Autowired
+    private JobArtifactDao jobArtifactDao;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @MockBean
+    private FileManager fileManager;
+
+    @Test
+    public void should_purge_job_with_logs_reports_artifacts_and_yml() throws IOException {
+        Flow flow = new Flow("retention");
+        flow.setId("retention-flow");
+        flow.setRetainBuilds(1);
+
+        Job previous = mockJob(flow, 1L);
+        Job latest = mockJob(flow, 2L);
+
+        // log of each step has 100 bytes
+        Mockito.when(fileManager.exist(anyString(), any())).thenReturn(true);
+        Mockito.when(fileManager.size(anyString(), any())).thenReturn(100L);
+
+        // when:
+        RetentionReport report = retentionService.purge(flow);
+
+        // then: 100 bytes log, 20 bytes report and 30 bytes artifact of previous job purged
+        Assert.assertEquals(1, report.getNumOfJobs());
+        Assert.assertEquals(1, report.getNumOfSteps());
+        Assert.assertEquals(1, report.getNumOfReports());
+        Assert.assertEquals(1, report.getNumOfArtifacts());
+        Assert.assertEquals(150, report.getBytes());
+
+        Mockito.verify(fileManager).remove(eq(previous.getId() + "-step.log"), any());
+        Mockito.verify(fileManager).remove(eq(previous.getId() + "/report.html"));
+        Mockito.verify(fileManager).remove(eq(previous.getId() + "/artifact.jar"));
+        Mockito.verify(fileManager, Mockito.never()).remove(eq(latest.getId() + "-step.log"), any());
+
+        // then: records of previous job should be deleted
+        List<String> previousId = Collections.singletonList(previous.getId());
+        Assert.assertFalse(jobDao.existsById(previous.getId()));
+        Assert.assertFalse(jobYmlDao.existsById(previous.getId()));
+        Assert.assertTrue(executedCmdDao.findAllByJobIdIn(previousId).isEmpty());
+        Assert.assertTrue(jobReportDao.findAllByJobIdIn(previousId).isEmpty());
+        Assert.assertTrue(jobArtifactDao.findAllByJobIdIn(previousId).isEmpty());
+
+        // then: records of latest job should be kept
+        List<String> latestId = Collections.singletonList(latest.getId());
+        Assert.assertTrue(jobDao.existsById(latest.getId()));
+        Assert.assertTrue(jobYmlDao.existsById(latest.getId()));
+        Assert.assertEquals(1, executedCmdDao.findAllByJobIdIn(latestId).size());
+        Assert.assertEquals(1, jobReportDao.findAllByJobIdIn(latestId).size());
+        Assert.assertEquals(1, jobArtifactDao.findAllByJobIdIn(latestId).size());
+    }
+
+    private Job mockJob(Flow flow, long buildNumber) {
+        Job job = new Job();
+        job.setKey(flow.getId() + "-" + buildNumber);
+        job.setFlowId(flow.getId());
+        job.setBuildNumber(buildNumber);
+        job.setStatus(Job.Status.SUCCESS);
+        jobDao.save(job);
+
+        jobYmlDao.save(new JobYml(job.getId(), flow.getName(), "steps:"));
+
+        executedCmdDao.save(new Step()
+                .setId(job.getId() + "-step")
+                .setFlowId(flow.getId())
+                .setJobId(job.getId())
+                .setBuildNumber(buildNumber)
+                .setNodePath("retention/step"));
+
+        JobReport report = new JobReport();
+        report.setJobId(job.getId());
+        report.setName("report");
+        report.setPath(job.getId() + "/report.html");
+        report.setContentSize(20L);
+        jobReportDao.save(report);
+
+        JobArtifact artifact = new JobArtifact();
+        artifact.setJobId(job.getId());
+        artifact.setFlowId(flow.getId());
+        artifact.setFileName("artifact.jar");
+        artifact.setPath(job.getId() + "/artifact.jar");
+        artifact.setContentSize(30L);
+        jobArtifactDao.save(artifact);
+
+        return job;
+    }
+}
@@ -0,0 +1,96 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.common.helper.CacheHelper;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.job.dao.ExecutedCmdDao;
+import com.flowci.core.job.domain.Executed;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.service.StepServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cached step list replaced on write, readers keep the list loaded before
+ */
+public class StepServiceTest {
+
+    private final ExecutedCmdDao executedCmdDao = Mockito.mock(ExecutedCmdDao.class);
+
+    private final Cache<String, List<Step>> jobStepCache = CacheHelper.createLocalCache(10, 60);
+
+    private final StepServiceImpl stepService = new StepServiceImpl();
+
+    private Job job;
+
+    @Before
+    public void init() {
+        ReflectionTestUtils.setField(stepService, "jobStepCache", jobStepCache);
+        ReflectionTestUtils.setField(stepService, "executedCmdDao", executedCmdDao);
+        ReflectionTestUtils.setField(stepService, "eventManager", Mockito.mock(SpringEventManager.class));
+
+        job = new Job();
+        job.setId("job");
+        job.setFlowId("flow");
+        job.setBuildNumber(1L);
+
+        // db returns new instances on each read
+        Mockito.when(executedCmdDao.findByFlowIdAndBuildNumber(job.getFlowId(), job.getBuildNumber()))
+                .thenAnswer(invocation -> Arrays.asList(newStep("step-1"), newStep("step-2")));
+        Mockito.when(executedCmdDao.findById(Mockito.anyString()))
+                .thenAnswer(invocation -> Optional.of(newStep(invocation.getArgument(0))));
+    }
+
+    @Test
+    public void should_update_cached_step_and_keep_list_of_readers() {
+        List<Step> before = stepService.list(job);
+
+        Step updated = stepService.toStatus(stepService.get("step-2"), Executed.Status.RUNNING, null);
+
+        // then: cached list replaced with updated step
+        List<Step> after = stepService.list(job);
+        Assert.assertNotSame(before, after);
+        Assert.assertSame(updated, after.get(1));
+        Assert.assertEquals(Executed.Status.RUNNING, after.get(1).getStatus());
+        Assert.assertSame(before.get(0), after.get(0));
+
+        // then: list loaded before is not changed
+        Assert.assertEquals(2, before.size());
+        Assert.assertEquals(Executed.Status.PENDING, before.get(1).getStatus());
+        Assert.assertNotSame(updated, before.get(1));
+
+        Mockito.verify(executedCmdDao, Mockito.times(1))
+                .findByFlowIdAndBuildNumber(job.getFlowId(), job.getBuildNumber());
+    }
+
+    @Test
+    public void should_remove_cached_list_if_updated_step_not_in_list() {
+        List<Step> before = stepService.list(job);
+
+        stepService.toStatus(stepService.get("step-3"), Executed.Status.RUNNING, null);
+        Assert.assertNull(jobStepCache.getIfPresent(job.getId()));
+
+        // then: reload from db
+        Assert.assertNotSame(before, stepService.list(job));
+        Mockito.verify(executedCmdDao, Mockito.times(2))
+                .findByFlowIdAndBuildNumber(job.getFlowId(), job.getBuildNumber());
+    }
+
+    private Step newStep(String id) {
+        return new Step()
+                .setId(id)
+                .setJobId(job.getId())
+                .setFlowId(job.getFlowId())
+                .setBuildNumber(job.getBuildNumber())
+                .setNodePath("flow/" + id)
+                .setStatus(Executed.Status.PENDING);
+    }
+}
@@ -0,0 +1,130 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.domain.JobLock;
+import com.flowci.core.job.manager.ZookeeperJobLockManager;
+import com.flowci.zookeeper.ZookeeperClient;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Two lock managers with their own zookeeper session as two server nodes
+ */
+public class ZookeeperJobLockManagerTest {
+
+    private static final String Root = "/job-locks";
+
+    private TestingServer server;
+
+    private ExecutorService executor;
+
+    private ZookeeperClient zk1;
+
+    private ZookeeperClient zk2;
+
+    private ZookeeperJobLockManager node1;
+
+    private ZookeeperJobLockManager node2;
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer(true);
+        executor = Executors.newCachedThreadPool();
+
+        zk1 = new ZookeeperClient(server.getConnectString(), 3, 10, executor);
+        zk1.start();
+        node1 = new ZookeeperJobLockManager(zk1, Root);
+
+        zk2 = new ZookeeperClient(server.getConnectString(), 3, 10, executor);
+        zk2.start();
+        node2 = new ZookeeperJobLockManager(zk2, Root);
+    }
+
+    @After
+    public void clean() throws Exception {
+        zk1.close();
+        zk2.close();
+        executor.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    public void should_return_idle_lease_to_other_node_at_once() {
+        JobLock first = node1.lock("job", 10).get();
+        node1.release(first);
+
+        // when: other node locks the job while the lease is idle
+        long start = System.currentTimeMillis();
+        Optional<JobLock> second = node2.lock("job", 10);
+
+        // then: lease should be taken within the idle timeout
+        Assert.assertTrue(second.isPresent());
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+        Assert.assertFalse(node1.isValid(first));
+        Assert.assertNotEquals(first.getEpoch(), second.get().getEpoch());
+
+        node2.release(second.get());
+    }
+
+    @Test
+    public void should_return_lease_on_release_if_contended_while_locked() throws InterruptedException {
+        JobLock first = node1.lock("job", 10).get();
+
+        // when: other node is waiting for the lease
+        Thread waiter = new Thread(() -> node2.lock("job", 10).ifPresent(node2::release));
+        waiter.start();
+        Thread.sleep(500);
+
+        // then: the lease is still valid until released
+        Assert.assertTrue(node1.isValid(first));
+        Assert.assertTrue(node2.isLocked("job"));
+
+        node1.release(first);
+        waiter.join(2000);
+        Assert.assertFalse(waiter.isAlive());
+    }
+
+    @Test
+    public void should_not_be_locked_by_idle_lease() {
+        node1.release(node1.lock("job", 10).get());
+
+        Assert.assertFalse(node1.isLocked("job"));
+        Assert.assertFalse(node2.isLocked("job"));
+    }
+
+    @Test
+    public void should_keep_lease_until_released_if_finished_while_locked() {
+        JobLock lock = node1.lock("job", 10).get();
+
+        // when: job finished within the lock
+        node1.finish("job");
+
+        // then: the lock is still valid and the lease is kept until released
+        Assert.assertTrue(node1.isValid(lock));
+        Assert.assertTrue(zk1.exist(Root + "/job"));
+
+        node1.release(lock);
+        Assert.assertFalse(zk1.exist(Root + "/job"));
+
+        // then: other node takes the lease at once
+        long start = System.currentTimeMillis();
+        Optional<JobLock> next = node2.lock("job", 10);
+        Assert.assertTrue(next.isPresent());
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+        node2.release(next.get());
+    }
+
+    @Test
+    public void should_return_lease_at_once_if_finished_while_idle() {
+        node1.release(node1.lock("job", 10).get());
+
+        node1.finish("job");
+        Assert.assertFalse(zk1.exist(Root + "/job"));
+    }
+}
@@ -27,6 +27,7 @@ import com.flowci.domain.ObjectWrapper;
 import com.flowci.util.StringHelper;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -73,6 +74,28 @@ public class WebhookControllerTest extends SpringScenario {
         Assert.assertNotNull(jobCreated.getValue());
     }
 
+    @Test
+    public void should_start_job_once_for_repeated_github_push_delivery() throws Exception {
+        String yml = StringHelper.toString(load("flow.yml"));
+        flowMockHelper.create("github-test", yml);
+        String payload = StringHelper.toString(load("github/webhook_push.json"));
+
+        AtomicInteger numOfJobs = new AtomicInteger();
+        addEventListener((ApplicationListener<JobCreatedEvent>) event -> numOfJobs.incrementAndGet());
+
+        for (int i = 0; i < 3; i++) {
+            mockMvcHelper.expectSuccessAndReturnString(
+                post("/webhooks/github-test")
+                    .header("X-GitHub-Event", "push")
+                    .header("X-GitHub-Delivery", "72d3162e-cc78-11e3-81ab-4c9367dc0958")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(payload));
+        }
+
+        TimeUnit.SECONDS.sleep(3);
+        Assert.assertEquals(1, numOfJobs.get());
+    }
+
     @Test
     public void should_not_start_job_form_github_push_event_since_branch_not_match() throws Exception {
         String yml = StringHelper.toString(load("flow-with-filter.yml"));
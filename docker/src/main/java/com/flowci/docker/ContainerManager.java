@@ -5,6 +5,7 @@ import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.model.Container;
 import com.github.dockerjava.api.model.Frame;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -14,6 +15,11 @@ public interface ContainerManager {
 
     InspectContainerResponse inspect(String containerId) throws Exception;
 
+    /**
+     * Inspect containers by id or name in batch, the not existed container will be ignored
+     */
+    List<InspectContainerResponse> inspect(Collection<String> containerIdOrNames) throws Exception;
+
     String start(DockerStartOption option) throws Exception;
 
     void wait(String containerId, int timeoutInSeconds, Consumer<Frame> onLog) throws Exception;
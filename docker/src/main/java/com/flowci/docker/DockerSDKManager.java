@@ -5,33 +5,67 @@ import com.flowci.docker.domain.DockerStartOption;
 import com.flowci.util.StringHelper;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.*;
+import com.github.dockerjava.api.exception.DockerClientException;
 import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.Container;
 import com.github.dockerjava.api.model.Frame;
 import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.api.model.PullResponseItem;
 import com.github.dockerjava.core.DefaultDockerClientConfig;
 import com.github.dockerjava.core.DockerClientBuilder;
+import com.github.dockerjava.core.command.WaitContainerResultCallback;
+import com.github.dockerjava.jaxrs.JerseyDockerCmdExecFactory;
 import com.google.common.collect.Lists;
 import lombok.extern.log4j.Log4j2;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+/**
+ * Docker manager on docker java sdk, a single client with connection pool is shared by all calls
+ */
 @Log4j2
 public class DockerSDKManager implements DockerManager {
 
-    private final String dockerHost;
+    public static final int DefaultMaxConnections = 50;
+
+    // max seconds to wait for a free connection from pool
+    private static final int ConnectionRequestTimeout = 30;
+
+    // max seconds to wait for the rest of logs after container exited
+    private static final int LogDrainTimeout = 5;
+
+    private final DockerClient client;
 
     private final ContainerManager containerManager = new ContainerManagerImpl();
 
     private final ImageManager imageManager = new ImageMangerImpl();
 
     public DockerSDKManager(String dockerHost) {
-        this.dockerHost = dockerHost;
+        this(dockerHost, DefaultMaxConnections);
+    }
+
+    /**
+     * @param maxConnections max connections of pool, the log and wait stream takes one during the container running
+     */
+    public DockerSDKManager(String dockerHost, int maxConnections) {
+        DefaultDockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder()
+                .withDockerHost(dockerHost)
+                .build();
+
+        JerseyDockerCmdExecFactory factory = new JerseyDockerCmdExecFactory()
+                .withMaxTotalConnections(maxConnections)
+                .withMaxPerRouteConnections(maxConnections)
+                .withConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(ConnectionRequestTimeout));
+
+        this.client = DockerClientBuilder.getInstance(config)
+                .withDockerCmdExecFactory(factory)
+                .build();
     }
 
     @Override
@@ -46,7 +80,11 @@ public class DockerSDKManager implements DockerManager {
 
     @Override
     public void close() {
-        // ignore
+        try {
+            client.close();
+        } catch (IOException e) {
+            log.warn("Unable to close docker client: {}", e.getMessage());
+        }
     }
 
     private class ImageMangerImpl implements ImageManager {
@@ -58,25 +96,27 @@ public class DockerSDKManager implements DockerManager {
                 imageUrl = "docker.io/" + image;
             }
 
-            try (DockerClient client = newClient()) {
-                if (findImage(client, image).size() >= 1) {
-                    return;
-                }
+            if (findImage(client, image).size() >= 1) {
+                return;
+            }
 
-                PullImageCallback callback = client.pullImageCmd(imageUrl).exec(new PullImageCallback(progress));
-                boolean await = callback.getCounter().await(timeoutInSeconds, TimeUnit.SECONDS);
+            PullImageCallback callback = client.pullImageCmd(imageUrl).exec(new PullImageCallback(progress));
 
+            try {
+                boolean await = callback.getCounter().await(timeoutInSeconds, TimeUnit.SECONDS);
                 if (!await) {
                     throw new DockerException(String.format("Timeout when pull image %s", image), 0);
                 }
+            } finally {
+                callback.close();
+            }
 
-                if (callback.hasError()) {
-                    throw new DockerException(callback.getThrowable().getMessage(), 0);
-                }
+            if (callback.hasError()) {
+                throw new DockerException(callback.getThrowable().getMessage(), 0);
+            }
 
-                if (findImage(client, image).isEmpty()) {
-                    throw new DockerException(String.format("Failed on pull image %s", image), 0);
-                }
+            if (findImage(client, image).isEmpty()) {
+                throw new DockerException(String.format("Failed on pull image %s", image), 0);
             }
         }
 
@@ -89,107 +129,104 @@ public class DockerSDKManager implements DockerManager {
 
         @Override
         public List<Container> list(String statusFilter, String nameFilter) throws Exception {
-            try (DockerClient client = newClient()) {
-                ListContainersCmd cmd = client.listContainersCmd().withShowAll(true);
+            ListContainersCmd cmd = client.listContainersCmd().withShowAll(true);
 
-                if (StringHelper.hasValue(nameFilter)) {
-                    cmd.withNameFilter(Lists.newArrayList(nameFilter));
-                }
-
-                if (StringHelper.hasValue(statusFilter)) {
-                    cmd.withStatusFilter(Lists.newArrayList(statusFilter));
-                }
+            if (StringHelper.hasValue(nameFilter)) {
+                cmd.withNameFilter(Lists.newArrayList(nameFilter));
+            }
 
-                return cmd.exec();
+            if (StringHelper.hasValue(statusFilter)) {
+                cmd.withStatusFilter(Lists.newArrayList(statusFilter));
             }
+
+            return cmd.exec();
         }
 
         @Override
         public InspectContainerResponse inspect(String containerId) throws Exception {
-            try (DockerClient client = newClient()) {
-                return client.inspectContainerCmd(containerId).exec();
+            return client.inspectContainerCmd(containerId).exec();
+        }
+
+        @Override
+        public List<InspectContainerResponse> inspect(Collection<String> containerIdOrNames) throws Exception {
+            List<InspectContainerResponse> list = new LinkedList<>();
+            for (String idOrName : containerIdOrNames) {
+                try {
+                    list.add(client.inspectContainerCmd(idOrName).exec());
+                } catch (NotFoundException ignore) {
+                }
             }
+            return list;
         }
 
         @Override
         public String start(DockerStartOption option) throws Exception {
-            try (DockerClient client = newClient()) {
-                CreateContainerCmd createCmd = client.createContainerCmd(option.getImage());
-                createCmd.withEnv(option.toEnvList());
-                createCmd.withBinds(option.toBindList());
-                createCmd.withEntrypoint(option.getEntrypoint());
-
-                if (option.hasName()) {
-                    createCmd.withName(option.getName());
-                }
+            CreateContainerCmd createCmd = client.createContainerCmd(option.getImage());
+            createCmd.withEnv(option.toEnvList());
+            createCmd.withBinds(option.toBindList());
+            createCmd.withEntrypoint(option.getEntrypoint());
 
-                CreateContainerResponse container = createCmd.exec();
-                client.startContainerCmd(container.getId()).exec();
-                return container.getId();
+            if (option.hasName()) {
+                createCmd.withName(option.getName());
             }
+
+            CreateContainerResponse container = createCmd.exec();
+            client.startContainerCmd(container.getId()).exec();
+            return container.getId();
         }
 
         @Override
         public void wait(String containerId, int timeoutInSeconds, Consumer<Frame> onLog) throws Exception {
-            Instant expire = Instant.now().plus(timeoutInSeconds, ChronoUnit.SECONDS);
-
-            try (DockerClient client = newClient()) {
-                if (onLog != null) {
-                    client.logContainerCmd(containerId)
-                            .withStdOut(true)
-                            .withStdErr(true)
-                            .withFollowStream(true)
-                            .exec(new FrameCallback(onLog));
-                }
-
-                for (; ; ) {
-                    InspectContainerResponse.ContainerState state = client.inspectContainerCmd(containerId).exec().getState();
-                    if (state.getRunning() == null || !state.getRunning()) {
-                        return;
-                    }
+            FrameCallback logCallback = null;
+
+            if (onLog != null) {
+                logCallback = client.logContainerCmd(containerId)
+                        .withStdOut(true)
+                        .withStdErr(true)
+                        .withFollowStream(true)
+                        .exec(new FrameCallback(onLog));
+            }
 
-                    if (Instant.now().isAfter(expire)) {
-                        throw new DockerException("timeout", 0);
-                    }
+            try {
+                // blocked on docker wait api until container exit, instead of polling the state
+                try (WaitContainerResultCallback callback = client.waitContainerCmd(containerId).exec(new WaitContainerResultCallback())) {
+                    callback.awaitStatusCode(timeoutInSeconds, TimeUnit.SECONDS);
+                } catch (DockerClientException e) {
+                    throw new DockerException("timeout", 0);
+                }
 
-                    Thread.sleep(2000);
+                // the rest of logs might still be on the way after exit
+                if (logCallback != null) {
+                    logCallback.getCounter().await(LogDrainTimeout, TimeUnit.SECONDS);
+                }
+            } finally {
+                if (logCallback != null) {
+                    logCallback.close();
                 }
             }
         }
 
         @Override
         public void stop(String containerId) throws Exception {
-            try (DockerClient client = newClient()) {
-                InspectContainerResponse.ContainerState state = client.inspectContainerCmd(containerId).exec().getState();
-                Boolean running = state.getRunning();
-                if (running != null && running) {
-                    client.stopContainerCmd(containerId).exec();
-                }
+            InspectContainerResponse.ContainerState state = client.inspectContainerCmd(containerId).exec().getState();
+            Boolean running = state.getRunning();
+            if (running != null && running) {
+                client.stopContainerCmd(containerId).exec();
             }
         }
 
         @Override
         public void resume(String containerId) throws Exception {
-            try (DockerClient client = newClient()) {
-                client.removeContainerCmd(containerId).exec();
-            }
+            client.removeContainerCmd(containerId).exec();
         }
 
         @Override
         public void delete(String containerId) throws Exception {
-            try (DockerClient client = newClient()) {
-                RemoveContainerCmd removeCmd = client.removeContainerCmd(containerId).withForce(true);
-                removeCmd.exec();
-            }
+            RemoveContainerCmd removeCmd = client.removeContainerCmd(containerId).withForce(true);
+            removeCmd.exec();
         }
     }
 
-    private DockerClient newClient() {
-        DefaultDockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder()
-                .withDockerHost(dockerHost).build();
-        return DockerClientBuilder.getInstance(config).build();
-    }
-
     private static class PullImageCallback extends DockerCallback<PullResponseItem> {
 
         private final Consumer<String> progress;
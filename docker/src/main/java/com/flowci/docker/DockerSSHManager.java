@@ -3,6 +3,7 @@ package com.flowci.docker;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flowci.docker.domain.DockerStartOption;
 import com.flowci.docker.domain.SSHOption;
@@ -18,22 +19,32 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public class DockerSSHManager implements DockerManager {
 
     private static final int ChannelTimeout = 10 * 1000;
 
+    // less than default MaxSessions of sshd
+    private static final int MaxChannels = 8;
+
+    private static final int ExitStatusInterval = 10;
+
     private static final String FormatAsJson = "--format \"{{json .}}\"";
 
     private static final ObjectMapper mapper = new ObjectMapper();
 
-
     private Session session;
 
+    private final Semaphore channels = new Semaphore(MaxChannels);
+
     private final ContainerManager containerManager = new ContainerManagerImpl();
 
     private final ImageManager imageManager = new ImageManagerImpl();
@@ -41,6 +52,10 @@ public class DockerSSHManager implements DockerManager {
     static {
         mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        // json format of 'docker ps' is 'ID' and 'Names' in string
+        mapper.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+        mapper.configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true);
     }
 
     public DockerSSHManager(SSHOption option) throws Exception {
@@ -152,6 +167,32 @@ public class DockerSSHManager implements DockerManager {
             return inspected.getValue();
         }
 
+        /**
+         * Inspect all containers by single 'docker inspect', the not existed container will be ignored
+         */
+        @Override
+        public List<InspectContainerResponse> inspect(Collection<String> containerIdOrNames) throws Exception {
+            List<InspectContainerResponse> list = new LinkedList<>();
+            if (containerIdOrNames.isEmpty()) {
+                return list;
+            }
+
+            String cmd = String.format("docker inspect %s %s", String.join(" ", containerIdOrNames), FormatAsJson);
+            Output output = runCmd(cmd, (line) -> {
+                try {
+                    list.add(mapper.readValue(line, InspectContainerResponse.class));
+                } catch (JsonProcessingException ignore) {
+                }
+            });
+
+            // exit with 1 and 'No such object' on stderr if any container not found
+            if (output.getExit() != 0 && !output.getErr().contains("No such")) {
+                throwExceptionIfError(output);
+            }
+
+            return list;
+        }
+
         @Override
         public String start(DockerStartOption option) throws Exception {
             StringBuilder cmd = new StringBuilder();
@@ -231,39 +272,49 @@ public class DockerSSHManager implements DockerManager {
         }
     }
 
-    private Output runCmd(String bash, Consumer<String> handler) throws JSchException, IOException {
+    /**
+     * Run command on an exec channel of the shared session, channels are multiplexed on the session
+     * and limited by MaxChannels. The stdout is streamed to handler line by line while the stderr
+     * is buffered by session thread, so both streams are consumed concurrently
+     */
+    private Output runCmd(String bash, Consumer<String> handler) throws Exception {
         if (Objects.isNull(session)) {
             throw new IllegalStateException("Please init ssh session first");
         }
 
-        Channel channel = null;
+        if (!channels.tryAcquire(ChannelTimeout, TimeUnit.MILLISECONDS)) {
+            throw new IOException("No ssh channel available");
+        }
+
+        ChannelExec channel = null;
 
         try {
-            channel = session.openChannel("exec");
-            try (PipedInputStream out = new PipedInputStream(); PipedInputStream err = new PipedInputStream()) {
-                ChannelExec exec = (ChannelExec) channel;
-                exec.setCommand(bash);
+            channel = (ChannelExec) session.openChannel("exec");
+            channel.setCommand(bash);
 
-                exec.setOutputStream(new PipedOutputStream(out));
-                exec.setErrStream(new PipedOutputStream(err));
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            channel.setErrStream(err);
+            InputStream out = channel.getInputStream();
 
-                channel.connect(ChannelTimeout);
+            channel.connect(ChannelTimeout);
+            String collected = collectOutput(out, handler).toString();
 
-                return Output.of(
-                        collectOutput(out, handler).toString(),
-                        collectOutput(err, null).toString(),
-                        channel.getExitStatus()
-                );
+            // exit status available after channel closed
+            while (!channel.isClosed()) {
+                Thread.sleep(ExitStatusInterval);
             }
+
+            return Output.of(collected, err.toString(StandardCharsets.UTF_8.name()), channel.getExitStatus());
         } finally {
             if (channel != null) {
                 channel.disconnect();
             }
+            channels.release();
         }
     }
 
     private static StringBuilder collectOutput(InputStream in, Consumer<String> handler) throws IOException {
-        try (BufferedReader buffer = new BufferedReader(new InputStreamReader(in))) {
+        try (BufferedReader buffer = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
             String line;
             StringBuilder builder = new StringBuilder();
 
@@ -15,9 +15,12 @@ public abstract class DockerCallback<T> implements ResultCallback<T> {
     @Getter
     protected Throwable throwable;
 
+    // the response stream, close it to release the connection
+    private volatile Closeable stream;
+
     @Override
     public void onStart(Closeable closeable) {
-
+        this.stream = closeable;
     }
 
     @Override
@@ -33,7 +36,10 @@ public abstract class DockerCallback<T> implements ResultCallback<T> {
 
     @Override
     public void close() throws IOException {
-
+        Closeable closeable = stream;
+        if (closeable != null) {
+            closeable.close();
+        }
     }
 
     public boolean hasError() {
@@ -4,8 +4,10 @@ import com.flowci.docker.ContainerManager;
 import com.flowci.docker.DockerManager;
 import com.flowci.docker.DockerSDKManager;
 import com.flowci.docker.domain.DockerStartOption;
+import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.Container;
+import com.google.common.collect.Lists;
 import org.junit.*;
 
 import java.util.List;
@@ -63,6 +65,13 @@ public class DockerSDKManagerTest {
         cm.delete(cid);
     }
 
+    @Test
+    public void should_ignore_not_existed_container_when_inspect_in_batch() throws Exception {
+        List<InspectContainerResponse> list = manager.getContainerManager()
+                .inspect(Lists.newArrayList("1231231", "3213213"));
+        Assert.assertTrue(list.isEmpty());
+    }
+
     @Test(expected = NotFoundException.class)
     public void should_throw_exception_when_resume_cid_not_exist() throws Exception {
         manager.getContainerManager().resume("1231231");
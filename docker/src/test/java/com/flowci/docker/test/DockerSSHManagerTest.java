@@ -8,6 +8,7 @@ import com.flowci.docker.domain.SSHOption;
 import com.flowci.util.StringHelper;
 import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.model.Container;
+import com.google.common.collect.Lists;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -72,6 +73,13 @@ public class DockerSSHManagerTest {
         Assert.assertNotNull(inspect);
     }
 
+    @Test
+    public void should_inspect_containers_in_batch() throws Exception {
+        List<InspectContainerResponse> list = manager.getContainerManager()
+                .inspect(Lists.newArrayList("a86fc2720b11", "not-existed"));
+        Assert.assertEquals(1, list.size());
+    }
+
     protected InputStream load(String resource) {
         return getClass().getClassLoader().getResourceAsStream(resource);
     }
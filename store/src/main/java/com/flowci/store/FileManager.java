@@ -31,11 +31,31 @@ public interface FileManager {
      */
     String save(String fileName, InputStream data, Pathable... objs) throws IOException;
 
+    /**
+     * Save file to storage with size of data, and return the file path
+     *
+     * @param size bytes of data, or -1 if unknown
+     */
+    String save(String fileName, InputStream data, long size, Pathable... objs) throws IOException;
+
     /**
      * Read file content
      */
     InputStream read(String fileName, Pathable... objs) throws IOException;
 
+    /**
+     * Read range of file content, the range will be cut if over the end of file
+     *
+     * @param offset start position of file
+     * @param length max bytes to read
+     */
+    InputStream read(String fileName, long offset, long length, Pathable... objs) throws IOException;
+
+    /**
+     * Get file size in bytes
+     */
+    long size(String fileName, Pathable... objs) throws IOException;
+
     /**
      * Remove file
      */
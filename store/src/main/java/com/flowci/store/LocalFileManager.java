@@ -21,10 +21,13 @@ import com.flowci.util.FileHelper;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Local file system storage manager,
@@ -59,26 +62,49 @@ public class LocalFileManager implements FileManager {
 
     @Override
     public String save(String fileName, InputStream data, Pathable... objs) throws IOException {
+        return save(fileName, data, -1, objs);
+    }
+
+    @Override
+    public String save(String fileName, InputStream data, long size, Pathable... objs) throws IOException {
         Path dir = connect(base, objs);
         if (!Files.exists(dir)) {
             create(objs);
         }
 
+        // write to temp file of same dir and move, readers never see partial content
         Path filePath = Paths.get(dir.toString(), fileName);
-        Files.copy(data, filePath, StandardCopyOption.REPLACE_EXISTING);
+        Path tmpPath = Files.createTempFile(dir, fileName, ".tmp");
+
+        try {
+            Files.copy(data, tmpPath, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+
         return filePath.toString();
     }
 
     @Override
     public InputStream read(String fileName, Pathable... objs) throws IOException {
-        Path dir = connect(base, objs);
-        Path target = Paths.get(dir.toString(), fileName);
+        Path target = getFile(fileName, objs);
+        return new FileInputStream(target.toFile());
+    }
 
-        if (!Files.exists(target)) {
-            throw new IOException("File not found");
-        }
+    /**
+     * Read by positional read of file channel, the rest of file will not be loaded
+     */
+    @Override
+    public InputStream read(String fileName, long offset, long length, Pathable... objs) throws IOException {
+        Path target = getFile(fileName, objs);
+        FileChannel channel = FileChannel.open(target, StandardOpenOption.READ);
+        return new RangeInputStream(channel, offset, offset + length);
+    }
 
-        return new FileInputStream(target.toFile());
+    @Override
+    public long size(String fileName, Pathable... objs) throws IOException {
+        return Files.size(getFile(fileName, objs));
     }
 
     @Override
@@ -96,6 +122,17 @@ public class LocalFileManager implements FileManager {
         return filePath;
     }
 
+    private Path getFile(String fileName, Pathable... objs) throws IOException {
+        Path dir = connect(base, objs);
+        Path target = Paths.get(dir.toString(), fileName);
+
+        if (!Files.exists(target)) {
+            throw new IOException("File not found");
+        }
+
+        return target;
+    }
+
     private static Path connect(Path base, Pathable... objs) {
         Path path = base;
 
@@ -105,4 +142,46 @@ public class LocalFileManager implements FileManager {
 
         return path;
     }
+
+    private static class RangeInputStream extends InputStream {
+
+        private final FileChannel channel;
+
+        private final long end;
+
+        private long position;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = Math.max(start, 0);
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long remaining = end - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, remaining));
+            int n = channel.read(buffer, position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
 }
@@ -16,26 +16,43 @@
 
 package com.flowci.store;
 
+import com.google.common.io.ByteStreams;
 import io.minio.MinioClient;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Minio storage manager,
  * instance created on @see com.flowci.core.common.config.StorageConfig
+ * <p>
+ * Data is always put with size, since the client takes 5TB as object size if size unknown,
+ * which buffers part of 500MB+ in memory. The data with unknown size will be read in memory
+ * if it's smaller than spool threshold, otherwise spooled to temp file.
  */
 public class MinioFileManager implements FileManager {
 
+    public static final long DefaultSpoolThreshold = 16 * 1024 * 1024;
+
     private static final String Separator = "/";
 
     private final String bucket;
 
     private final MinioClient minioClient;
 
+    private final long spoolThreshold;
+
+    private volatile boolean bucketInitialized;
+
     public MinioFileManager(MinioClient minioClient, String bucket) {
+        this(minioClient, bucket, DefaultSpoolThreshold);
+    }
+
+    public MinioFileManager(MinioClient minioClient, String bucket, long spoolThreshold) {
         this.minioClient = minioClient;
         this.bucket = bucket;
+        this.spoolThreshold = spoolThreshold;
     }
 
     /**
@@ -57,10 +74,6 @@ public class MinioFileManager implements FileManager {
     @Override
     public boolean exist(Pathable... objs) {
         try {
-            if (!minioClient.bucketExists(bucket)) {
-                return false;
-            }
-
             String objectName = getObjectName(objs);
             minioClient.statObject(bucket, objectName);
             return true;
@@ -72,10 +85,6 @@ public class MinioFileManager implements FileManager {
     @Override
     public boolean exist(String fileName, Pathable... objs) {
         try {
-            if (!minioClient.bucketExists(bucket)) {
-                return false;
-            }
-
             String objectName = getObjectName(objs) + fileName;
             minioClient.statObject(bucket, objectName);
             return true;
@@ -86,10 +95,21 @@ public class MinioFileManager implements FileManager {
 
     @Override
     public String save(String fileName, InputStream data, Pathable... objs) throws IOException {
+        return save(fileName, data, -1, objs);
+    }
+
+    @Override
+    public String save(String fileName, InputStream data, long size, Pathable... objs) throws IOException {
         try {
             String bucketName = initBucket();
             String objectName = getObjectName(objs) + fileName;
-            minioClient.putObject(bucketName, objectName, data, null, null, null, null);
+
+            if (size >= 0) {
+                minioClient.putObject(bucketName, objectName, data, size, null, null, null);
+            } else {
+                putWithUnknownSize(bucketName, objectName, data);
+            }
+
             return bucketName + Separator + objectName;
         } catch (Exception e) {
             throw new IOException(e.getMessage());
@@ -106,6 +126,29 @@ public class MinioFileManager implements FileManager {
         }
     }
 
+    /**
+     * Read by ranged GET, the rest of object will not be transferred
+     */
+    @Override
+    public InputStream read(String fileName, long offset, long length, Pathable... objs) throws IOException {
+        try {
+            String objectName = getObjectName(objs) + fileName;
+            return minioClient.getObject(bucket, objectName, offset, length);
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public long size(String fileName, Pathable... objs) throws IOException {
+        try {
+            String objectName = getObjectName(objs) + fileName;
+            return minioClient.statObject(bucket, objectName).length();
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
     @Override
     public String remove(String fileName, Pathable... objs) throws IOException {
         try {
@@ -127,13 +170,50 @@ public class MinioFileManager implements FileManager {
         }
     }
 
+    /**
+     * Check and create bucket once
+     */
     private String initBucket() throws Exception {
-        if (!minioClient.bucketExists(bucket)) {
-            minioClient.makeBucket(bucket);
+        if (bucketInitialized) {
+            return bucket;
+        }
+
+        synchronized (this) {
+            if (!bucketInitialized) {
+                if (!minioClient.bucketExists(bucket)) {
+                    minioClient.makeBucket(bucket);
+                }
+                bucketInitialized = true;
+            }
         }
+
         return bucket;
     }
 
+    private void putWithUnknownSize(String bucketName, String objectName, InputStream data) throws Exception {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(8 * 1024);
+        long read = ByteStreams.copy(ByteStreams.limit(data, spoolThreshold), head);
+
+        if (read < spoolThreshold) {
+            minioClient.putObject(bucketName, objectName, new ByteArrayInputStream(head.toByteArray()), read, null, null, null);
+            return;
+        }
+
+        Path tmp = Files.createTempFile("minio-", ".upload");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                head.writeTo(out);
+                ByteStreams.copy(data, out);
+            }
+
+            try (InputStream in = Files.newInputStream(tmp)) {
+                minioClient.putObject(bucketName, objectName, in, Files.size(tmp), null, null, null);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
     private static String getObjectName(Pathable... objs) {
         StringBuilder builder = new StringBuilder();
         for (Pathable item : objs) {
@@ -77,6 +77,24 @@ public class LocalFileManagerTest {
         Assert.assertFalse(exist);
     }
 
+    @Test
+    public void should_read_range_of_object() throws IOException {
+        final String fileName = "range.log";
+        final Pathable[] dir = {flow, job, logDir};
+        fileManager.save(fileName, StringHelper.toInputStream("0123456789"), dir);
+
+        Assert.assertEquals(10, fileManager.size(fileName, dir));
+
+        try (InputStream range = fileManager.read(fileName, 3, 4, dir)) {
+            Assert.assertEquals("3456", StringHelper.toString(range));
+        }
+
+        // then: range should be cut at the end of file
+        try (InputStream tail = fileManager.read(fileName, 8, 100, dir)) {
+            Assert.assertEquals("89", StringHelper.toString(tail));
+        }
+    }
+
     @Test(expected = IOException.class)
     public void should_throw_exception_if_not_found() throws IOException {
         fileManager.read("hello", flow, job, logDir);
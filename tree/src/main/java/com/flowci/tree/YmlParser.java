@@ -43,11 +43,18 @@ public class YmlParser {
         .put("steps", 6)
         .build();
 
+    /**
+     * Yaml instance is not thread safe, but can be reused by the same thread
+     */
+    private static final ThreadLocal<Yaml> Loader = ThreadLocal.withInitial(() -> YamlHelper.create(FlowYml.class));
+
+    private static final ThreadLocal<Yaml> Dumper = ThreadLocal.withInitial(() -> YamlHelper.create(FieldsOrder, FlowYml.class));
+
     /**
      * Create Node instance from yml
      */
-    public static synchronized FlowNode load(String defaultName, String yml) {
-        Yaml yaml = YamlHelper.create(FlowYml.class);
+    public static FlowNode load(String defaultName, String yml) {
+        Yaml yaml = Loader.get();
 
         try {
             FlowYml root = yaml.load(yml);
@@ -63,9 +70,9 @@ public class YmlParser {
         }
     }
 
-    public static synchronized String parse(FlowNode root) {
+    public static String parse(FlowNode root) {
         FlowYml flow = new FlowYml(root);
-        Yaml yaml = YamlHelper.create(FieldsOrder, FlowYml.class);
+        Yaml yaml = Dumper.get();
         String dump = yaml.dump(flow);
         dump = dump.substring(dump.indexOf(LINE_BREAK.getString()) + 1);
         return dump;
@@ -28,7 +28,11 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author yang
@@ -167,6 +171,24 @@ public class YmlParserTest {
         YmlParser.load("default", content);
     }
 
+    @Test
+    public void should_load_and_parse_concurrently() throws Exception {
+        String expected = YmlParser.parse(YmlParser.load("root", content));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new LinkedList<>();
+
+        for (int i = 0; i < 100; i++) {
+            results.add(executor.submit(() -> YmlParser.parse(YmlParser.load("root", content))));
+        }
+
+        for (Future<String> result : results) {
+            Assert.assertEquals(expected, result.get());
+        }
+
+        executor.shutdown();
+    }
+
     private String loadContent(String resource) throws IOException {
         ClassLoader classLoader = YmlParserTest.class.getClassLoader();
         URL url = classLoader.getResource(resource);
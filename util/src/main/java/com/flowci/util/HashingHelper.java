@@ -16,7 +16,15 @@
 
 package com.flowci.util;
 
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author yang
@@ -26,4 +34,18 @@ public abstract class HashingHelper {
     public static String md5(String value) {
         return Hashing.md5().hashBytes(value.getBytes()).toString();
     }
+
+    public static String sha256(String value) {
+        return Hashing.sha256().hashString(value, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Sha256 of all remaining bytes of stream, the stream will not be closed
+     */
+    public static String sha256(InputStream stream) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        OutputStream out = Funnels.asOutputStream(hasher);
+        ByteStreams.copy(stream, out);
+        return hasher.hash().toString();
+    }
 }
@@ -24,16 +24,23 @@ import org.apache.curator.framework.api.DeleteBuilder;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
 import org.apache.curator.framework.recipes.cache.PathChildrenCache;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
 import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.curator.retry.RetryNTimes;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -89,6 +96,25 @@ public class ZookeeperClient implements AutoCloseable {
         }
     }
 
+    /**
+     * Get node stat, or empty if not existed
+     */
+    public Optional<Stat> stat(String path) {
+        try {
+            return Optional.ofNullable(client.checkExists().forPath(path));
+        } catch (Throwable e) {
+            throw new ZookeeperException("Cannot get stat for path: {0}", e.getMessage());
+        }
+    }
+
+    public long getSessionId() {
+        try {
+            return client.getZookeeperClient().getZooKeeper().getSessionId();
+        } catch (Exception e) {
+            throw new ZookeeperException("Cannot get session id: {0}", e.getMessage());
+        }
+    }
+
     public String create(CreateMode mode, String path, byte[] data) {
         if (data == null) {
             data = new byte[0];
@@ -103,6 +129,100 @@ public class ZookeeperClient implements AutoCloseable {
         }
     }
 
+    /**
+     * Create node with parents if it's not existed
+     *
+     * @return stat of created node, or empty if node already existed
+     */
+    public Optional<Stat> tryCreate(CreateMode mode, String path, byte[] data) {
+        if (data == null) {
+            data = new byte[0];
+        }
+
+        try {
+            Stat stat = new Stat();
+            client.create()
+                    .storingStatIn(stat)
+                    .creatingParentContainersIfNeeded()
+                    .withMode(mode)
+                    .forPath(path, data);
+            return Optional.of(stat);
+        } catch (KeeperException.NodeExistsException e) {
+            return Optional.empty();
+        } catch (Throwable e) {
+            throw new ZookeeperException("Fail to create node: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Block until node deleted or timeout
+     *
+     * @return true if node not existed
+     */
+    public boolean waitForDeleted(String path, long timeoutInMillis) {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        try {
+            Stat stat = client.checkExists()
+                    .usingWatcher((Watcher) event -> latch.countDown())
+                    .forPath(path);
+
+            if (stat == null) {
+                return true;
+            }
+
+            latch.await(timeoutInMillis, TimeUnit.MILLISECONDS);
+            return !exist(path);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Throwable e) {
+            throw new ZookeeperException("Cannot watch node {0}: {1}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Get node data and watch the next change of it, listener will be invoked on watch executor
+     *
+     * @return data of node, or empty if not existed
+     */
+    public Optional<byte[]> watchData(String path, Runnable onChanged) {
+        try {
+            byte[] data = client.getData()
+                    .usingWatcher((Watcher) event -> {
+                        if (event.getType() == Watcher.Event.EventType.NodeDataChanged) {
+                            watchExecutor.execute(onChanged);
+                        }
+                    })
+                    .forPath(path);
+            return Optional.of(data);
+        } catch (KeeperException.NoNodeException e) {
+            return Optional.empty();
+        } catch (Throwable e) {
+            throw new ZookeeperException("Cannot watch data of node {0}: {1}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Set data of node if it's existed
+     *
+     * @return false if node not existed
+     */
+    public boolean trySet(String path, byte[] data) {
+        try {
+            client.setData().forPath(path, data);
+            return true;
+        } catch (KeeperException.NoNodeException e) {
+            return false;
+        } catch (Throwable e) {
+            throw new ZookeeperException("Fail to set data for node: {0}", e.getMessage());
+        }
+    }
+
+    public void addConnectionListener(ConnectionStateListener listener) {
+        client.getConnectionStateListenable().addListener(listener);
+    }
+
     public List<String> children(String root) {
         try {
             return client.getChildren().forPath(root);
@@ -197,6 +317,22 @@ public class ZookeeperClient implements AutoCloseable {
         }
     }
 
+    /**
+     * Join leader election on the path, listener will be invoked on watch executor
+     * once leadership acquired or lost, close the latch to leave the election
+     */
+    public LeaderLatch leaderLatch(String path, String id, LeaderLatchListener listener) {
+        LeaderLatch latch = new LeaderLatch(client, path, id, LeaderLatch.CloseMode.NOTIFY_LEADER);
+        latch.addListener(listener, watchExecutor);
+
+        try {
+            latch.start();
+            return latch;
+        } catch (Exception e) {
+            throw new ZookeeperException("Unable to start leader latch on {0}: {1}", path, e.getMessage());
+        }
+    }
+
     public boolean watchChildren(String rootPath, PathChildrenCacheListener listener) {
         if (!exist(rootPath)) {
             return false;